@@ -3,8 +3,11 @@ package com.lobosoft.api.auth;
 import com.lobosoft.auth.grpc.AuthGrpcServiceGrpc;
 import com.lobosoft.auth.grpc.ValidateTokenRequest;
 import com.lobosoft.auth.grpc.ValidateTokenResponse;
+import com.lobosoft.auth.grpc.ValidateTokensRequest;
+import com.lobosoft.auth.grpc.ValidateTokensResponse;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
@@ -12,15 +15,132 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validates tokens with the auth service. Concurrent checks of the same token share one result,
+ * and checks of different tokens that arrive while a call is in flight are sent together through
+ * {@code ValidateTokens} once it returns, so the batch grows with load and a lone check is sent
+ * straight away.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AuthGrpcClient {
 
+    // tokens per ValidateTokens call; the auth service resolves their users in one lookup
+    private static final int MAX_BATCH = 100;
+    // calls in flight at once; more concurrent checks wait for the next batch
+    private static final int MAX_SENDERS = 4;
+
     @GrpcClient("authService")
     private AuthGrpcServiceGrpc.AuthGrpcServiceBlockingStub stub;
 
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<Pending> queued = new ArrayDeque<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    // guarded by queued
+    private int sending;
+    private boolean closed;
+
     public String validateTokenAndGetUserId(String token) {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(token, call);
+        if (existing != null) {
+            log.debug("Joining in-flight validateToken call");
+            return join(existing);
+        }
+
+        try {
+            enqueue(new Pending(token, call));
+            return join(call);
+        } finally {
+            inFlight.remove(token, call);
+        }
+    }
+
+    private void enqueue(Pending pending) {
+        synchronized (queued) {
+            if (closed) {
+                pending.result().completeExceptionally(shuttingDown());
+                return;
+            }
+            queued.add(pending);
+            if (sending >= MAX_SENDERS) {
+                return;
+            }
+            sending++;
+        }
+        try {
+            senders.execute(this::sendQueued);
+        } catch (RejectedExecutionException e) {
+            // shut down in between; shutdown() fails whatever is still queued
+            failQueued();
+        }
+    }
+
+    private void sendQueued() {
+        while (true) {
+            List<Pending> batch = new ArrayList<>();
+            synchronized (queued) {
+                while (batch.size() < MAX_BATCH && !queued.isEmpty()) {
+                    batch.add(queued.poll());
+                }
+                if (batch.isEmpty()) {
+                    sending--;
+                    return;
+                }
+            }
+            send(batch);
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        try {
+            if (batch.size() == 1) {
+                Pending only = batch.getFirst();
+                only.result().complete(validate(only.token()));
+                return;
+            }
+
+            List<ValidateTokenResponse> results = validateAll(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                ValidateTokenResponse res = i < results.size() ? results.get(i) : null;
+                if (res != null && res.getValid()) {
+                    batch.get(i).result().complete(res.getUserId());
+                } else {
+                    batch.get(i).result().completeExceptionally(
+                            new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+                }
+            }
+        } catch (Throwable e) {
+            // whatever went wrong, no caller may be left waiting in join()
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private String join(CompletableFuture<String> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String validate(String token) {
         log.debug("AuthGrpcClient.validateTokenAndGetUserId called");
         try {
             ValidateTokenRequest req = ValidateTokenRequest.newBuilder()
@@ -39,22 +159,72 @@ public class AuthGrpcClient {
 
             return res.getUserId();
         } catch (StatusRuntimeException e) {
-            Status.Code code = e.getStatus().getCode();
-
-            if (code == Status.Code.UNAUTHENTICATED) {
-                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
-            }
+            throw toResponseStatus(e);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error in AuthGrpcClient", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Auth error", e);
+        }
+    }
 
-            if (code == Status.Code.UNAVAILABLE) {
-                log.error("Auth service unavailable: {}", e.getStatus(), e);
-                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Auth service unavailable", e);
-            }
+    // results come back in request order; invalid tokens as valid = false
+    private List<ValidateTokenResponse> validateAll(List<Pending> batch) {
+        try {
+            ValidateTokensRequest.Builder req = ValidateTokensRequest.newBuilder();
+            batch.forEach(pending -> req.addAccessTokens(pending.token()));
 
-            log.error("Error talking to auth service: {}", e.getStatus(), e);
-            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Auth service error: " + code, e);
+            log.debug("Sending gRPC validateTokens request for {} tokens", batch.size());
+            ValidateTokensResponse res = stub.validateTokens(req.build());
+            return res.getResultsList();
+        } catch (StatusRuntimeException e) {
+            throw toResponseStatus(e);
         } catch (Exception e) {
             log.error("Unexpected error in AuthGrpcClient", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Auth error", e);
         }
     }
+
+    private static ResponseStatusException toResponseStatus(StatusRuntimeException e) {
+        Status.Code code = e.getStatus().getCode();
+
+        if (code == Status.Code.UNAUTHENTICATED) {
+            return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+
+        if (code == Status.Code.UNAVAILABLE) {
+            log.error("Auth service unavailable: {}", e.getStatus(), e);
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Auth service unavailable", e);
+        }
+
+        log.error("Error talking to auth service: {}", e.getStatus(), e);
+        return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Auth service error: " + code, e);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (queued) {
+            closed = true;
+        }
+        senders.shutdownNow();
+        failQueued();
+        // batches cut short by the interrupt fail on their own; this catches any call still waiting
+        inFlight.values().forEach(call -> call.completeExceptionally(shuttingDown()));
+    }
+
+    private void failQueued() {
+        List<Pending> dropped;
+        synchronized (queued) {
+            dropped = new ArrayList<>(queued);
+            queued.clear();
+        }
+        dropped.forEach(pending -> pending.result().completeExceptionally(shuttingDown()));
+    }
+
+    private static ResponseStatusException shuttingDown() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Auth client is shutting down");
+    }
+
+    private record Pending(String token, CompletableFuture<String> result) {
+    }
 }
@@ -0,0 +1,10 @@
+package com.lobosoft.api.auth;
+
+import java.time.Instant;
+
+public record JwtClaims(
+        String subject,
+        Instant issuedAt,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,106 @@
+package com.lobosoft.api.auth;
+
+import com.lobosoft.api.config.TokenCacheProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Reads the claims of the auth service's HMAC-signed JWTs without a network hop.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocalJwtVerifier {
+
+    private final TokenCacheProperties props;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Decodes the payload without checking the signature. Only use the result to bound
+     * how long an already validated token may be cached.
+     */
+    public JwtClaims readUnverified(String token) {
+        String[] parts = split(token);
+        return parseClaims(parts[1]);
+    }
+
+    /**
+     * Checks the signature against the configured secret and the exp claim.
+     *
+     * @return the claims, or null when the token is not valid
+     */
+    public JwtClaims verify(String token) {
+        if (props.getJwtSecret() == null || props.getJwtSecret().isBlank()) {
+            throw new IllegalStateException("auth.token-cache.jwt-secret is required for local verification");
+        }
+
+        String[] parts = split(token);
+        String algorithm = macAlgorithm(parts[0]);
+        if (algorithm == null) {
+            return null;
+        }
+
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(props.getJwtSecret().getBytes(), algorithm));
+            byte[] expected = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            byte[] actual = Base64.getUrlDecoder().decode(parts[2]);
+
+            if (!MessageDigest.isEqual(expected, actual)) {
+                return null;
+            }
+        } catch (Exception e) {
+            return null;
+        }
+
+        JwtClaims claims = parseClaims(parts[1]);
+        if (claims.subject() == null || claims.expiresAt() == null || !claims.expiresAt().isAfter(Instant.now())) {
+            return null;
+        }
+        return claims;
+    }
+
+    private String macAlgorithm(String encodedHeader) {
+        JsonNode header = decode(encodedHeader);
+        // jjwt picks HS256/384/512 from the key length of the auth service's secret
+        return switch (header.path("alg").asText("")) {
+            case "HS256" -> "HmacSHA256";
+            case "HS384" -> "HmacSHA384";
+            case "HS512" -> "HmacSHA512";
+            default -> null;
+        };
+    }
+
+    private JwtClaims parseClaims(String encodedPayload) {
+        JsonNode payload = decode(encodedPayload);
+        String subject = payload.path("sub").asText(null);
+        Instant issuedAt = payload.has("iat") ? Instant.ofEpochSecond(payload.get("iat").asLong()) : null;
+        Instant expiresAt = payload.has("exp") ? Instant.ofEpochSecond(payload.get("exp").asLong()) : null;
+        return new JwtClaims(subject, issuedAt, expiresAt);
+    }
+
+    private JsonNode decode(String part) {
+        try {
+            return objectMapper.readTree(Base64.getUrlDecoder().decode(part));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JWT", e);
+        }
+    }
+
+    private static String[] split(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed JWT");
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,72 @@
+package com.lobosoft.api.auth;
+
+import com.lobosoft.api.config.TokenCacheProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Resolves a bearer token to a user id, serving repeat requests from {@link ValidatedTokenCache}
+ * and only calling the auth service (or verifying locally) on a miss.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenValidator {
+
+    private final AuthGrpcClient authGrpcClient;
+    private final ValidatedTokenCache tokenCache;
+    private final LocalJwtVerifier jwtVerifier;
+    private final TokenCacheProperties props;
+
+    public String validateTokenAndGetUserId(String token) {
+        if (tokenCache.isRevoked(token)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token revoked");
+        }
+        if (!props.isEnabled()) {
+            return authGrpcClient.validateTokenAndGetUserId(token);
+        }
+
+        JwtClaims claims = readClaims(token);
+        String cached = tokenCache.getUserId(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        String userId;
+        if (props.isLocalVerification()) {
+            JwtClaims verified = jwtVerifier.verify(token);
+            if (verified == null) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+            }
+            userId = verified.subject();
+        } else {
+            userId = authGrpcClient.validateTokenAndGetUserId(token);
+        }
+
+        tokenCache.put(token, userId, claims.expiresAt());
+        return userId;
+    }
+
+    /**
+     * Logs the token out: this instance rejects it from now until its exp. Only a valid token is
+     * revoked, so callers cannot fill the revocation list with made-up ones. The auth service is not
+     * told, so other replicas, a restarted instance and direct gRPC validation still accept the token.
+     */
+    public String revoke(String token) {
+        String userId = validateTokenAndGetUserId(token);
+        tokenCache.revokeToken(token, readClaims(token).expiresAt());
+        return userId;
+    }
+
+    private JwtClaims readClaims(String token) {
+        try {
+            return jwtVerifier.readUnverified(token);
+        } catch (Exception e) {
+            log.debug("Could not decode JWT claims", e);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.lobosoft.api.auth;
+
+import com.lobosoft.api.config.TokenCacheProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of tokens the auth service already accepted, keyed by the SHA-256 of the token
+ * so raw bearer tokens are never kept in memory. An entry never outlives its JWT exp.
+ * Tokens revoked on logout stay rejected until their exp, when they would be rejected anyway.
+ * Revocations live only in this instance's memory: they are lost on restart and unknown to other
+ * replicas and to the auth service, which keeps accepting the token until its exp.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ValidatedTokenCache {
+
+    private final TokenCacheProperties props;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // token hash -> exp, so a revoked token stays rejected until it would have expired anyway
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+
+    public String getUserId(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.expiresAt().isAfter(Instant.now())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.userId();
+    }
+
+    public void put(String token, String userId, Instant jwtExpiresAt) {
+        Instant expiresAt = Instant.now().plus(props.getTtl());
+        if (jwtExpiresAt != null && jwtExpiresAt.isBefore(expiresAt)) {
+            expiresAt = jwtExpiresAt;
+        }
+        if (!expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+
+        if (entries.size() >= props.getMaxEntries()) {
+            evict();
+        }
+        entries.put(hash(token), new Entry(userId, expiresAt));
+    }
+
+    public boolean isRevoked(String token) {
+        if (revokedTokens.isEmpty()) {
+            return false;
+        }
+        String key = hash(token);
+        Instant until = revokedTokens.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (!until.isAfter(Instant.now())) {
+            revokedTokens.remove(key, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the token from the cache and rejects it from now on, e.g. on logout. Best effort: only
+     * this instance rejects it, and only until it restarts.
+     */
+    public void revokeToken(String token, Instant jwtExpiresAt) {
+        String key = hash(token);
+        entries.remove(key);
+        if (jwtExpiresAt != null && !jwtExpiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        revokedTokens.values().removeIf(exp -> !exp.isAfter(Instant.now()));
+        revokedTokens.put(key, jwtExpiresAt != null ? jwtExpiresAt : Instant.now().plus(props.getTtl()));
+        log.info("Revoked cached token");
+    }
+
+    private void evict() {
+        Instant now = Instant.now();
+        entries.values().removeIf(e -> !e.expiresAt().isAfter(now));
+
+        int overflow = entries.size() - props.getMaxEntries() + 1;
+        if (overflow <= 0) {
+            return;
+        }
+
+        // still full of live tokens: drop the tenth that expires soonest
+        int toDrop = Math.max(overflow, props.getMaxEntries() / 10);
+        entries.entrySet().stream()
+                .sorted(Comparator.comparing(e -> e.getValue().expiresAt()))
+                .limit(toDrop)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(String userId, Instant expiresAt) {
+    }
+}
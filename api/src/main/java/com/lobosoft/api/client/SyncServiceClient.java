@@ -1,22 +1,34 @@
 package com.lobosoft.api.client;
 
-import com.lobosoft.api.dto.TransactionsPage;
+import com.lobosoft.api.dto.SyncJobDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.util.UUID;
+
 @Component
 @RequiredArgsConstructor
 public class SyncServiceClient {
 
     private final WebClient syncWebClient;
 
-    public TransactionsPage requestNextPage(Long accountId, String userId) {
+    // Only enqueues the job: sync answers as soon as it is recorded, without calling the provider.
+    public SyncJobDto startFetchAll(Long accountId, String userId) {
         return syncWebClient.post()
-                .uri("/internal/sync/accounts/{id}/transactions/next-page", accountId)
+                .uri("/internal/sync/accounts/{id}/transactions/fetch-all", accountId)
+                .header("X-User-Id", userId)
+                .retrieve()
+                .bodyToMono(SyncJobDto.class)
+                .block();
+    }
+
+    public SyncJobDto getJob(UUID jobId, String userId) {
+        return syncWebClient.get()
+                .uri("/internal/sync/jobs/{id}", jobId)
                 .header("X-User-Id", userId)
                 .retrieve()
-                .bodyToMono(TransactionsPage.class)
+                .bodyToMono(SyncJobDto.class)
                 .block();
     }
 
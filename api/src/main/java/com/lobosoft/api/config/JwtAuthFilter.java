@@ -1,6 +1,6 @@
 package com.lobosoft.api.config;
 
-import com.lobosoft.api.auth.AuthGrpcClient;
+import com.lobosoft.api.auth.TokenValidator;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -24,12 +24,13 @@ import java.util.List;
 @Slf4j
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final AuthGrpcClient authGrpcClient;
+    private final TokenValidator tokenValidator;
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getServletPath();
-        return path.startsWith("/api/auth/") || path.startsWith("/actuator/");
+        // logout is authenticated like any other call, it revokes the token it came with
+        return path.equals("/api/auth/login") || path.equals("/api/auth/register") || path.startsWith("/actuator/");
     }
 
     @Override
@@ -62,7 +63,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         String token = authHeader.substring(7).trim();
 
         try {
-            String userId = authGrpcClient.validateTokenAndGetUserId(token);
+            String userId = tokenValidator.validateTokenAndGetUserId(token);
             log.debug("Authenticated userId={} for path={}", userId, path);
 
             UsernamePasswordAuthenticationToken authentication =
@@ -0,0 +1,26 @@
+package com.lobosoft.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "auth.token-cache")
+public class TokenCacheProperties {
+    private boolean enabled = true;
+
+    // upper bound on cached tokens, entries are also dropped at the JWT exp
+    private int maxEntries = 10_000;
+
+    // how long a validation result is trusted before asking the auth service again
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // verify the HMAC signature in-process instead of calling the auth service on a cache miss
+    private boolean localVerification = false;
+
+    // shared secret of the auth service, only needed for localVerification
+    private String jwtSecret;
+}
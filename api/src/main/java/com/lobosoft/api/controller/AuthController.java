@@ -1,5 +1,6 @@
 package com.lobosoft.api.controller;
 
+import com.lobosoft.api.auth.TokenValidator;
 import com.lobosoft.api.dto.auth.LoginRequest;
 import com.lobosoft.api.dto.auth.LoginResponse;
 import com.lobosoft.api.dto.auth.RegisterRequest;
@@ -8,6 +9,8 @@ import com.lobosoft.api.service.AuthGatewayService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
@@ -18,6 +21,7 @@ import reactor.core.publisher.Mono;
 public class AuthController {
 
     private final AuthGatewayService authGatewayService;
+    private final TokenValidator tokenValidator;
 
     @PostMapping("/register")
     public Mono<@NonNull RegisterResponse> register(@RequestBody RegisterRequest request) {
@@ -30,4 +34,17 @@ public class AuthController {
         log.info("API -> POST /api/auth/login email={}", request.email());
         return authGatewayService.login(request);
     }
+
+    /**
+     * Per-instance, best-effort logout: the api instance that serves it rejects the token until its exp
+     * or until it restarts. Tokens are stateless JWTs the auth service cannot revoke, so clients must
+     * still discard the token themselves.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<@NonNull Void> logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader) {
+        // the JWT filter already accepted the bearer token
+        String userId = tokenValidator.revoke(authHeader.substring(7).trim());
+        log.info("API -> POST /api/auth/logout userId={}", userId);
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -1,17 +1,19 @@
 package com.lobosoft.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lobosoft.api.client.SyncServiceClient;
 import com.lobosoft.api.dto.TransactionCategoryDto;
 import com.lobosoft.api.dto.TransactionDto;
+import com.lobosoft.api.dto.SyncJobDto;
 import com.lobosoft.api.dto.TransactionsPage;
 import com.lobosoft.api.dto.UpdateTransactionCategoriesRequest;
 import com.lobosoft.api.dto.UpdateTransactionDescriptionRequest;
 import com.lobosoft.api.dto.UpdateTransactionsDescriptionRequest;
 import com.lobosoft.api.dto.TotalSpentResponse;
 import com.lobosoft.api.repository.BankAccountRepository;
-import com.lobosoft.api.service.BankAccountService;
 import com.lobosoft.api.service.TransactionCategoryService;
 import com.lobosoft.api.service.TransactionService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,10 +21,18 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api")
@@ -30,11 +40,15 @@ import java.util.List;
 @Slf4j
 public class TransactionController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int NDJSON_FLUSH_EVERY = 500;
+
     private final TransactionService transactionService;
     private final SyncServiceClient syncServiceClient;
     private final BankAccountRepository bankAccountRepository;
     private final TransactionCategoryService transactionCategoryService;
-    private final BankAccountService bankAccountService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/accounts/{accountId}/transactions")
     public List<TransactionDto> getAccountTransactions(
@@ -47,6 +61,36 @@ public class TransactionController {
         return transactionService.getTransactionsForAccount(userId, accountId);
     }
 
+    @GetMapping(value = "/accounts/{accountId}/transactions", produces = NDJSON)
+    public void streamAccountTransactions(
+            @PathVariable("accountId") Long accountId,
+            Authentication authentication,
+            HttpServletResponse response
+    ) throws IOException {
+        String userId = getUserId(authentication);
+        assertAccountOwnership(accountId, userId);
+        log.info("User {} -> GET /accounts/{}/transactions (ndjson)", userId, accountId);
+
+        writeNdjson(response, sink -> transactionService.streamTransactionsForAccount(userId, accountId, sink));
+    }
+
+    @GetMapping("/accounts/{accountId}/transactions/page")
+    public TransactionsPage getAccountTransactionsPage(
+            @PathVariable("accountId") Long accountId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            Authentication authentication
+    ) {
+        String userId = getUserId(authentication);
+        assertAccountOwnership(accountId, userId);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        log.info("User {} -> GET /accounts/{}/transactions/page (size={})", userId, accountId, size);
+        return transactionService.getTransactionsPageForAccount(userId, accountId, cursor, size);
+    }
+
     @GetMapping("/transactions")
     public List<TransactionDto> getAllUserTransactions(Authentication auth) {
         if (auth == null || auth.getPrincipal() == null) {
@@ -63,6 +107,14 @@ public class TransactionController {
         return transactionService.getAllTransactionsForUser(userId);
     }
 
+    @GetMapping(value = "/transactions", produces = NDJSON)
+    public void streamAllUserTransactions(Authentication auth, HttpServletResponse response) throws IOException {
+        String userId = getUserId(auth);
+        log.info("User {} -> GET /transactions (ndjson)", userId);
+
+        writeNdjson(response, sink -> transactionService.streamAllTransactionsForUser(userId, sink));
+    }
+
     @GetMapping("/categories/{categoryId}/transactions")
     public List<TransactionDto> getTransactionsByCategory(
             @PathVariable Long categoryId,
@@ -207,7 +259,7 @@ public class TransactionController {
     }
 
     @PostMapping("/accounts/{accountId}/transactions/fetch-all")
-    public List<TransactionDto> fetchAll(
+    public ResponseEntity<SyncJobDto> fetchAll(
             @PathVariable Long accountId,
             Authentication auth
     ) {
@@ -216,26 +268,25 @@ public class TransactionController {
 
         log.info("User {} -> POST /accounts/{}/transactions/fetch-all (reset continuation and full fetch)", userId, accountId);
 
-        bankAccountService.resetAccountSync(userId, accountId);
-
-        TransactionsPage page;
-        do {
-            String continuationKey = bankAccountService.getContinuationKey(userId, accountId);
-            log.info("User {} -> fetching next page for account {} (continuationKey={})", userId, accountId, continuationKey);
-
-            page = syncServiceClient.requestNextPage(accountId, userId);
-
-            if (page == null) {
-                log.warn("User {} -> sync returned null page for account {}", userId, accountId);
-                break;
-            }
+        SyncJobDto job = syncServiceClient.startFetchAll(accountId, userId);
+        log.info("User {} -> fetch-all job {} is {} for account {}", userId, job.jobId(), job.status(), accountId);
 
-            log.info("User {} -> received {} transactions, nextCursor={}", userId,
-                    page.getTransactions() == null ? 0 : page.getTransactions().size(),
-                    page.getNextCursor());
-        } while (page.getNextCursor() != null);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/sync-jobs/" + job.jobId()))
+                .body(job);
+    }
 
-        return transactionService.getTransactionsForAccount(userId, accountId);
+    @GetMapping("/sync-jobs/{jobId}")
+    public SyncJobDto getSyncJob(
+            @PathVariable UUID jobId,
+            Authentication auth
+    ) {
+        String userId = getUserId(auth);
+        try {
+            return syncServiceClient.getJob(jobId, userId);
+        } catch (WebClientResponseException.NotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found");
+        }
     }
 
     @PostMapping("/accounts/{accountId}/transactions/full-sync")
@@ -281,6 +332,34 @@ public class TransactionController {
         );
     }
 
+    /**
+     * Writes one JSON document per line straight to the response while the service walks its
+     * database cursor, so memory stays flat however many transactions the user has.
+     */
+    private void writeNdjson(HttpServletResponse response, Consumer<Consumer<TransactionDto>> producer) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        Writer writer = response.getWriter();
+        int[] written = {0};
+        try {
+            producer.accept(dto -> {
+                try {
+                    writer.write(objectMapper.writeValueAsString(dto));
+                    writer.write('\n');
+                    if (++written[0] % NDJSON_FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
     private String getUserId(Authentication auth) {
         if (auth == null || auth.getPrincipal() == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No authentication");
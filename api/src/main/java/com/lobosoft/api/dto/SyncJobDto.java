@@ -0,0 +1,18 @@
+package com.lobosoft.api.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record SyncJobDto(
+        UUID jobId,
+        Long accountId,
+        String kind,
+        String status,
+        int pages,
+        int inserted,
+        int updated,
+        String error,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt
+) {}
@@ -1,6 +1,5 @@
 package com.lobosoft.api.dto;
 
-import com.lobosoft.api.model.BankTransaction;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -10,7 +9,7 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 public class TransactionsPage {
-    private List<BankTransaction> transactions;
+    private List<TransactionDto> transactions;
     private String nextCursor;
 
     @Data
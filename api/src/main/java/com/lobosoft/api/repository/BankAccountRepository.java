@@ -27,12 +27,8 @@ public interface BankAccountRepository extends JpaRepository<@NonNull BankAccoun
     int clearContinuationKey(@Param("accountId") Long accountId,
                              @Param("userId") String userId);
 
-    @Query("""
-        SELECT b.ebContinuationKey
-          FROM BankAccount b
-         WHERE b.id = :accountId
-           AND b.userId = :userId
-        """)
-    String findContinuationKey(@Param("accountId") Long accountId,
-                               @Param("userId") String userId);
+    // resume points of interrupted syncs, see db/init/12_sync_checkpoints.sql
+    @Modifying
+    @Query(value = "DELETE FROM sync_checkpoints WHERE bank_account_id = :accountId", nativeQuery = true)
+    int deleteSyncCheckpoints(@Param("accountId") Long accountId);
 }
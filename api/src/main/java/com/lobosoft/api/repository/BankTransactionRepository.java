@@ -1,31 +1,111 @@
 package com.lobosoft.api.repository;
 
 import com.lobosoft.api.model.BankTransaction;
+import jakarta.persistence.QueryHint;
 import lombok.NonNull;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BankTransactionRepository extends JpaRepository<@NonNull BankTransaction, @NonNull Long> {
 
     @EntityGraph(attributePaths = "merchant")
     List<BankTransaction> findByUserIdAndBankAccountIdOrderByBookingDateDescIdDesc(String userId, Long bankAccountId);
 
+    // Keyset pages over (booking_date DESC NULLS FIRST, id DESC), backed by ix_transactions_account_keyset.
+    // The Pageable only carries the limit: a List return type means no COUNT query is issued.
+
+    @EntityGraph(attributePaths = "merchant")
+    @Query("""
+        SELECT t
+        FROM BankTransaction t
+        WHERE t.userId = :userId
+          AND t.bankAccountId = :bankAccountId
+        ORDER BY t.bookingDate DESC NULLS FIRST, t.id DESC
+        """)
+    List<BankTransaction> findFirstKeysetPage(@Param("userId") String userId,
+                                              @Param("bankAccountId") Long bankAccountId,
+                                              Pageable pageable);
+
+    // the redundant bookingDate bound gives the planner an index range to start from; the OR alone
+    // is only applied as a filter over the account's rows
+    @EntityGraph(attributePaths = "merchant")
+    @Query("""
+        SELECT t
+        FROM BankTransaction t
+        WHERE t.userId = :userId
+          AND t.bankAccountId = :bankAccountId
+          AND t.bookingDate IS NOT NULL
+          AND t.bookingDate <= :bookingDate
+          AND (t.bookingDate < :bookingDate OR (t.bookingDate = :bookingDate AND t.id < :id))
+        ORDER BY t.bookingDate DESC NULLS FIRST, t.id DESC
+        """)
+    List<BankTransaction> findKeysetPageAfter(@Param("userId") String userId,
+                                              @Param("bankAccountId") Long bankAccountId,
+                                              @Param("bookingDate") LocalDate bookingDate,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
+    // cursor still inside the leading undated rows: the rest of them, then every dated row
     @EntityGraph(attributePaths = "merchant")
-    Page<BankTransaction> findByUserIdAndBankAccountIdOrderByBookingDateDescIdDesc(String userId, Long bankAccountId, Pageable pageable);
+    @Query("""
+        SELECT t
+        FROM BankTransaction t
+        WHERE t.userId = :userId
+          AND t.bankAccountId = :bankAccountId
+          AND (t.bookingDate IS NOT NULL OR t.id < :id)
+        ORDER BY t.bookingDate DESC NULLS FIRST, t.id DESC
+        """)
+    List<BankTransaction> findKeysetPageAfterUndated(@Param("userId") String userId,
+                                                     @Param("bankAccountId") Long bankAccountId,
+                                                     @Param("id") Long id,
+                                                     Pageable pageable);
 
     @EntityGraph(attributePaths = "merchant")
     List<BankTransaction> findByUserIdOrderByBookingDateDescIdDesc(String userId);
 
+    // Streaming variants for NDJSON exports: rows are pulled from a server-side cursor in
+    // fetch-size batches instead of materialising the whole history. Callers must be transactional.
+
+    @EntityGraph(attributePaths = "merchant")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        SELECT t
+        FROM BankTransaction t
+        WHERE t.userId = :userId
+        ORDER BY t.bookingDate DESC, t.id DESC
+        """)
+    Stream<BankTransaction> streamByUserId(@Param("userId") String userId);
+
+    @EntityGraph(attributePaths = "merchant")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        SELECT t
+        FROM BankTransaction t
+        WHERE t.userId = :userId
+          AND t.bankAccountId = :bankAccountId
+        ORDER BY t.bookingDate DESC, t.id DESC
+        """)
+    Stream<BankTransaction> streamByUserIdAndBankAccountId(@Param("userId") String userId,
+                                                           @Param("bankAccountId") Long bankAccountId);
+
     boolean existsByIdAndUserId(Long id, String userId);
 
     @EntityGraph(attributePaths = "merchant")
@@ -47,19 +127,15 @@ public interface BankTransactionRepository extends JpaRepository<@NonNull BankTr
                                                                 @Param("fromDate") LocalDate fromDate,
                                                                 @Param("toDate") LocalDate toDate);
 
-    @Query("""
-        SELECT COALESCE(SUM(
-            CASE
-                WHEN t.amount < 0 THEN t.amount
-                WHEN UPPER(t.direction) IN ('OUT', 'OUTGOING', 'DEBIT') THEN -t.amount
-                ELSE t.amount
-            END
-        ), 0)
-        FROM BankTransaction t
-        JOIN TransactionCategory tc ON tc.transactionId = t.id
-        WHERE t.userId = :userId
-          AND tc.categoryId = :categoryId
-        """)
+    // Totals read the per-month spend_rollups kept up to date by triggers (db/init/04_spend_rollups.sql)
+    // instead of scanning every matching transaction.
+    @Query(value = """
+        SELECT COALESCE(SUM(r.total), 0)
+        FROM spend_rollups r
+        WHERE r.user_id = :userId
+          AND r.dimension = 'CATEGORY'
+          AND r.dimension_key = CAST(:categoryId AS text)
+        """, nativeQuery = true)
     BigDecimal calculateTotalSpentForCategory(@Param("userId") String userId,
                                               @Param("categoryId") Long categoryId);
 
@@ -78,18 +154,13 @@ public interface BankTransactionRepository extends JpaRepository<@NonNull BankTr
                                                                 @Param("fromDate") LocalDate fromDate,
                                                                 @Param("toDate") LocalDate toDate);
 
-    @Query("""
-        SELECT COALESCE(SUM(
-            CASE
-                WHEN t.amount < 0 THEN t.amount
-                WHEN UPPER(t.direction) IN ('OUT', 'OUTGOING', 'DEBIT') THEN -t.amount
-                ELSE t.amount
-            END
-        ), 0)
-        FROM BankTransaction t
-        WHERE t.userId = :userId
-          AND t.merchant.id = :merchantId
-        """)
+    @Query(value = """
+        SELECT COALESCE(SUM(r.total), 0)
+        FROM spend_rollups r
+        WHERE r.user_id = :userId
+          AND r.dimension = 'MERCHANT'
+          AND r.dimension_key = CAST(:merchantId AS text)
+        """, nativeQuery = true)
     BigDecimal calculateTotalSpentForMerchant(@Param("userId") String userId,
                                               @Param("merchantId") Long merchantId);
 
@@ -108,18 +179,13 @@ public interface BankTransactionRepository extends JpaRepository<@NonNull BankTr
                                                                     @Param("fromDate") LocalDate fromDate,
                                                                     @Param("toDate") LocalDate toDate);
 
-    @Query("""
-        SELECT COALESCE(SUM(
-            CASE
-                WHEN t.amount < 0 THEN t.amount
-                WHEN UPPER(t.direction) IN ('OUT', 'OUTGOING', 'DEBIT') THEN -t.amount
-                ELSE t.amount
-            END
-        ), 0)
-        FROM BankTransaction t
-        WHERE t.userId = :userId
-          AND t.descriptionRaw = :descriptionRaw
-        """)
+    @Query(value = """
+        SELECT COALESCE(SUM(r.total), 0)
+        FROM spend_rollups r
+        WHERE r.user_id = :userId
+          AND r.dimension = 'DESCRIPTION'
+          AND r.dimension_key = :descriptionRaw
+        """, nativeQuery = true)
     BigDecimal calculateTotalSpentForDescription(@Param("userId") String userId,
                                                  @Param("descriptionRaw") String descriptionRaw);
 
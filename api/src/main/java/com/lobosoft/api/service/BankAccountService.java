@@ -28,11 +28,6 @@ public class BankAccountService {
                 .toList();
     }
 
-    @Transactional(readOnly = true)
-    public String getContinuationKey(String userId, Long accountId) {
-        return bankAccountRepository.findContinuationKey(accountId, userId);
-    }
-
     @Transactional
     public void resetAccountSync(String userId, Long accountId) {
         int updated = bankAccountRepository.clearContinuationKey(accountId, userId);
@@ -40,6 +35,7 @@ public class BankAccountService {
             throw new IllegalArgumentException("Account not found for this user");
         }
 
+        bankAccountRepository.deleteSyncCheckpoints(accountId);
         bankTransactionRepository.deleteByAccountIdAndUserId(accountId, userId);
     }
 }
@@ -0,0 +1,34 @@
+package com.lobosoft.api.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position in the (booking_date DESC NULLS FIRST, id DESC) ordering of an account's transactions,
+ * handed to clients as an opaque string.
+ */
+record TransactionCursor(LocalDate bookingDate, long id) {
+
+    private static final String UNDATED = "-";
+
+    String encode() {
+        String raw = (bookingDate == null ? UNDATED : bookingDate.toString()) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf(':');
+            String date = raw.substring(0, sep);
+            long id = Long.parseLong(raw.substring(sep + 1));
+            return new TransactionCursor(UNDATED.equals(date) ? null : LocalDate.parse(date), id);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.lobosoft.api.model.Merchant;
 import com.lobosoft.api.repository.CategoryRepository;
 import com.lobosoft.api.repository.BankTransactionRepository;
 import com.lobosoft.api.repository.MerchantRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -16,10 +17,11 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Page;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -29,6 +31,7 @@ public class TransactionService {
     private final BankTransactionRepository transactionRepository;
     private final CategoryRepository categoryRepository;
     private final MerchantRepository merchantRepository;
+    private final EntityManager entityManager;
 
     public List<TransactionDto> getTransactionsForAccount(String userId, Long bankAccountId) {
         List<BankTransaction> txs =
@@ -39,13 +42,29 @@ public class TransactionService {
                 .toList();
     }
 
-    public TransactionsPage getTransactionsPageForAccount(String userId, Long bankAccountId, int page, int size) {
-        Page<BankTransaction> txPage =
-                transactionRepository.findByUserIdAndBankAccountIdOrderByBookingDateDescIdDesc(
-                        userId, bankAccountId, PageRequest.of(page, size));
+    public TransactionsPage getTransactionsPageForAccount(String userId, Long bankAccountId, String cursor, int size) {
+        // one extra row tells us whether there is a next page without a COUNT query
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<BankTransaction> txs;
+        if (cursor == null || cursor.isBlank()) {
+            txs = transactionRepository.findFirstKeysetPage(userId, bankAccountId, limit);
+        } else {
+            TransactionCursor after = TransactionCursor.decode(cursor);
+            txs = after.bookingDate() == null
+                    ? transactionRepository.findKeysetPageAfterUndated(userId, bankAccountId, after.id(), limit)
+                    : transactionRepository.findKeysetPageAfter(
+                            userId, bankAccountId, after.bookingDate(), after.id(), limit);
+        }
+
+        String nextCursor = null;
+        if (txs.size() > size) {
+            txs = txs.subList(0, size);
+            BankTransaction last = txs.get(size - 1);
+            nextCursor = new TransactionCursor(last.getBookingDate(), last.getId()).encode();
+        }
 
-        String nextCursor = txPage.hasNext() ? String.valueOf(txPage.getNumber() + 1) : null;
-        return new TransactionsPage(txPage.getContent(), nextCursor);
+        return new TransactionsPage(txs.stream().map(this::toDto).toList(), nextCursor);
     }
 
     public List<TransactionDto> getAllTransactionsForUser(String userId) {
@@ -56,6 +75,22 @@ public class TransactionService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
+    public void streamAllTransactionsForUser(String userId, Consumer<TransactionDto> sink) {
+        log.info("Streaming ALL transactions for userId={}", userId);
+
+        try (Stream<BankTransaction> txs = transactionRepository.streamByUserId(userId)) {
+            txs.forEach(tx -> emit(tx, sink));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamTransactionsForAccount(String userId, Long bankAccountId, Consumer<TransactionDto> sink) {
+        try (Stream<BankTransaction> txs = transactionRepository.streamByUserIdAndBankAccountId(userId, bankAccountId)) {
+            txs.forEach(tx -> emit(tx, sink));
+        }
+    }
+
     public List<TransactionDto> getTransactionsForCategory(String userId,
                                                            Long categoryId,
                                                            LocalDate fromDate,
@@ -147,6 +182,12 @@ public class TransactionService {
                 .toList();
     }
 
+    private void emit(BankTransaction tx, Consumer<TransactionDto> sink) {
+        sink.accept(toDto(tx));
+        // keep the persistence context flat so memory does not grow with the history size
+        entityManager.detach(tx);
+    }
+
     private TransactionDto toDto(BankTransaction tx) {
         Merchant merchant = tx.getMerchant();
         MerchantDto merchantDto = merchant == null ? null : new MerchantDto(
@@ -0,0 +1,294 @@
+package com.lobosoft.api.auth;
+
+import com.lobosoft.auth.grpc.AuthGrpcServiceGrpc;
+import com.lobosoft.auth.grpc.ValidateTokenRequest;
+import com.lobosoft.auth.grpc.ValidateTokenResponse;
+import com.lobosoft.auth.grpc.ValidateTokensRequest;
+import com.lobosoft.auth.grpc.ValidateTokensResponse;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthGrpcClientTest {
+
+    // the client's MAX_SENDERS and MAX_BATCH
+    private static final int SENDERS = 4;
+    private static final int BATCH = 100;
+
+    private final AuthGrpcServiceGrpc.AuthGrpcServiceBlockingStub stub =
+            mock(AuthGrpcServiceGrpc.AuthGrpcServiceBlockingStub.class);
+    private final AuthGrpcClient client = new AuthGrpcClient();
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    // single calls block here until released, so the queue fills behind them
+    private final Semaphore singleCallsEntered = new Semaphore(0);
+    private final CountDownLatch releaseSingleCalls = new CountDownLatch(1);
+    private final List<ValidateTokensRequest> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(client, "stub", stub);
+        when(stub.validateToken(any())).thenAnswer(inv -> {
+            ValidateTokenRequest req = inv.getArgument(0);
+            singleCallsEntered.release();
+            releaseSingleCalls.await();
+            return answer(req.getAccessToken());
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSingleCalls.countDown();
+        callers.shutdownNow();
+        client.shutdown();
+    }
+
+    @Test
+    void loneCheckIsSentStraightAway() throws Exception {
+        releaseSingleCalls.countDown();
+
+        assertThat(client.validateTokenAndGetUserId("tok-1")).isEqualTo("user-1");
+        verify(stub, never()).validateTokens(any());
+    }
+
+    @Test
+    void concurrentChecksOfOneTokenShareACall() throws Exception {
+        Future<String> first = callers.submit(() -> client.validateTokenAndGetUserId("tok-1"));
+        assertThat(singleCallsEntered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        List<Future<String>> joined = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            joined.add(callers.submit(() -> client.validateTokenAndGetUserId("tok-1")));
+        }
+        awaitJoined("tok-1", 11);
+
+        releaseSingleCalls.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+        for (Future<String> f : joined) {
+            assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+        }
+        verify(stub).validateToken(any());
+        assertThat(singleCallsEntered.availablePermits()).isZero();
+    }
+
+    @Test
+    void queuedChecksAreSplitIntoBatchesAndMatchedToTheirCallers() throws Exception {
+        stubBatches();
+        occupySenders();
+
+        int queued = 2 * BATCH + 50;
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < queued; i++) {
+            String token = "tok-" + i;
+            results.add(callers.submit(() -> client.validateTokenAndGetUserId(token)));
+        }
+        awaitQueued(queued);
+
+        releaseSingleCalls.countDown();
+
+        for (int i = 0; i < queued; i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("user-" + i);
+        }
+        assertThat(batches).hasSizeGreaterThanOrEqualTo(3)
+                .allSatisfy(b -> assertThat(b.getAccessTokensCount()).isBetween(1, BATCH));
+        assertThat(batches.stream().mapToInt(ValidateTokensRequest::getAccessTokensCount).sum())
+                .isEqualTo(queued);
+    }
+
+    @Test
+    void invalidTokensInABatchFailOnlyTheirCallers() throws Exception {
+        stubBatches();
+        occupySenders();
+
+        // queued one by one, so a result missing from the response is the last one's
+        Future<String> valid = callers.submit(() -> client.validateTokenAndGetUserId("tok-1"));
+        awaitQueued(1);
+        Future<String> invalid = callers.submit(() -> client.validateTokenAndGetUserId("bad-1"));
+        awaitQueued(2);
+        Future<String> unanswered = callers.submit(() -> client.validateTokenAndGetUserId("drop-1"));
+        awaitQueued(3);
+
+        releaseSingleCalls.countDown();
+
+        assertThat(valid.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+        assertStatus(invalid, HttpStatus.UNAUTHORIZED);
+        assertStatus(unanswered, HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void failedBatchCallReachesEveryCallerInIt() throws Exception {
+        when(stub.validateTokens(any())).thenThrow(Status.UNAVAILABLE.asRuntimeException());
+        occupySenders();
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String token = "tok-" + i;
+            results.add(callers.submit(() -> client.validateTokenAndGetUserId(token)));
+        }
+        awaitQueued(5);
+
+        releaseSingleCalls.countDown();
+
+        for (Future<String> f : results) {
+            assertStatus(f, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @Test
+    void clientRecoversAfterAFailedBatch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(stub.validateTokens(any())).thenAnswer(inv -> {
+            if (calls.getAndIncrement() == 0) {
+                throw Status.UNAVAILABLE.asRuntimeException();
+            }
+            return answerAll(inv.getArgument(0));
+        });
+        occupySenders();
+        Future<String> failed = callers.submit(() -> client.validateTokenAndGetUserId("tok-1"));
+        Future<String> failedToo = callers.submit(() -> client.validateTokenAndGetUserId("tok-2"));
+        awaitQueued(2);
+        releaseSingleCalls.countDown();
+        assertStatus(failed, HttpStatus.SERVICE_UNAVAILABLE);
+        assertStatus(failedToo, HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThat(client.validateTokenAndGetUserId("tok-3")).isEqualTo("user-3");
+    }
+
+    @Test
+    void errorInABatchCallStillReachesItsCallers() throws Exception {
+        when(stub.validateTokens(any())).thenThrow(new LinkageError("broken stub"));
+        occupySenders();
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String token = "tok-" + i;
+            results.add(callers.submit(() -> client.validateTokenAndGetUserId(token)));
+        }
+        awaitQueued(3);
+
+        releaseSingleCalls.countDown();
+
+        for (Future<String> f : results) {
+            assertThatThrownBy(() -> f.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .rootCause()
+                    .isInstanceOf(LinkageError.class);
+        }
+    }
+
+    @Test
+    void shutdownFailsEveryWaitingCaller() throws Exception {
+        occupySenders();
+        List<Future<String>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String token = "tok-" + i;
+            queued.add(callers.submit(() -> client.validateTokenAndGetUserId(token)));
+        }
+        awaitQueued(3);
+
+        client.shutdown();
+
+        for (Future<String> f : queued) {
+            assertStatus(f, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        assertThatThrownBy(() -> client.validateTokenAndGetUserId("tok-late"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    // parks one single call on each sender, so later checks wait in the queue
+    private void occupySenders() throws InterruptedException {
+        for (int i = 0; i < SENDERS; i++) {
+            String token = "busy-" + i;
+            callers.submit(() -> client.validateTokenAndGetUserId(token));
+            assertThat(singleCallsEntered.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    private void stubBatches() {
+        when(stub.validateTokens(any())).thenAnswer(inv -> {
+            ValidateTokensRequest req = inv.getArgument(0);
+            batches.add(req);
+            return answerAll(req);
+        });
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        Queue<?> queued = (Queue<?>) ReflectionTestUtils.getField(client, "queued");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            synchronized (queued) {
+                if (queued.size() >= count) {
+                    return;
+                }
+            }
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    // waits until the callers of a token have joined its in-flight call
+    private void awaitJoined(String token, int callers) throws InterruptedException {
+        Map<?, ?> inFlight = (Map<?, ?>) ReflectionTestUtils.getField(client, "inFlight");
+        CompletableFuture<?> call = (CompletableFuture<?>) inFlight.get(token);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (call.getNumberOfDependents() < callers) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void assertStatus(Future<String> result, HttpStatus status) {
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(status));
+    }
+
+    // tok-N belongs to user-N, bad-* is invalid and drop-* gets no result at all
+    private static ValidateTokensResponse answerAll(ValidateTokensRequest req) {
+        ValidateTokensResponse.Builder res = ValidateTokensResponse.newBuilder();
+        req.getAccessTokensList().stream()
+                .filter(token -> !token.startsWith("drop-"))
+                .forEach(token -> res.addResults(answer(token)));
+        return res.build();
+    }
+
+    private static ValidateTokenResponse answer(String token) {
+        if (token.startsWith("bad-")) {
+            return ValidateTokenResponse.newBuilder().setValid(false).build();
+        }
+        return ValidateTokenResponse.newBuilder()
+                .setValid(true)
+                .setUserId(token.replace("tok-", "user-").replace("busy-", "busy-user-"))
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.lobosoft.api.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lobosoft.api.config.TokenCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalJwtVerifierTest {
+
+    private static final String SECRET = "a-test-secret-of-at-least-thirty-two-bytes!";
+
+    private final TokenCacheProperties props = new TokenCacheProperties();
+    private final LocalJwtVerifier verifier = new LocalJwtVerifier(props, new ObjectMapper());
+
+    @BeforeEach
+    void setUp() {
+        props.setJwtSecret(SECRET);
+    }
+
+    @Test
+    void verify_acceptsTokenSignedWithTheAuthServiceSecret() {
+        Instant exp = Instant.now().plusSeconds(600);
+        String token = token("HS256", "HmacSHA256", SECRET, "user-1", exp);
+
+        JwtClaims claims = verifier.verify(token);
+
+        assertThat(claims).isNotNull();
+        assertThat(claims.subject()).isEqualTo("user-1");
+        assertThat(claims.expiresAt()).isEqualTo(Instant.ofEpochSecond(exp.getEpochSecond()));
+    }
+
+    @Test
+    void verify_picksTheMacFromTheHeader() {
+        String token = token("HS512", "HmacSHA512", SECRET, "user-1", Instant.now().plusSeconds(600));
+
+        assertThat(verifier.verify(token)).isNotNull();
+    }
+
+    @Test
+    void verify_rejectsExpiredToken() {
+        String token = token("HS256", "HmacSHA256", SECRET, "user-1", Instant.now().minusSeconds(1));
+
+        assertThat(verifier.verify(token)).isNull();
+    }
+
+    @Test
+    void verify_rejectsBadSignature() {
+        String token = token("HS256", "HmacSHA256", "another-secret-of-at-least-thirty-two-bytes", "user-1",
+                Instant.now().plusSeconds(600));
+
+        assertThat(verifier.verify(token)).isNull();
+    }
+
+    @Test
+    void verify_rejectsTamperedPayload() {
+        String token = token("HS256", "HmacSHA256", SECRET, "user-1", Instant.now().plusSeconds(600));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + payload("user-2", Instant.now().plusSeconds(600)) + "." + parts[2];
+
+        assertThat(verifier.verify(forged)).isNull();
+    }
+
+    @Test
+    void verify_rejectsUnsignedToken() {
+        String token = encode("{\"alg\":\"none\"}") + "." + payload("user-1", Instant.now().plusSeconds(600)) + ".";
+
+        assertThatThrownBy(() -> verifier.verify(token)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(verifier.verify(token + "c2ln")).isNull();
+    }
+
+    @Test
+    void verify_requiresTheSecret() {
+        props.setJwtSecret(" ");
+        String token = token("HS256", "HmacSHA256", SECRET, "user-1", Instant.now().plusSeconds(600));
+
+        assertThatThrownBy(() -> verifier.verify(token)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void readUnverified_readsClaimsOfAnySignature() {
+        Instant exp = Instant.now().plusSeconds(600);
+        String token = token("HS256", "HmacSHA256", "another-secret-of-at-least-thirty-two-bytes", "user-1", exp);
+
+        JwtClaims claims = verifier.readUnverified(token);
+
+        assertThat(claims.subject()).isEqualTo("user-1");
+        assertThat(claims.expiresAt()).isEqualTo(Instant.ofEpochSecond(exp.getEpochSecond()));
+    }
+
+    @Test
+    void readUnverified_rejectsMalformedToken() {
+        assertThatThrownBy(() -> verifier.readUnverified("not-a-jwt")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> verifier.readUnverified("e30.bm90LWpzb24.c2ln")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // signed the way the auth service's JwtService does, with the secret's platform bytes
+    static String token(String alg, String macAlgorithm, String secret, String subject, Instant exp) {
+        String signingInput = encode("{\"alg\":\"" + alg + "\"}") + "." + payload(subject, exp);
+        try {
+            Mac mac = Mac.getInstance(macAlgorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(), macAlgorithm));
+            byte[] signature = mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String payload(String subject, Instant exp) {
+        long now = Instant.now().getEpochSecond();
+        return encode("{\"sub\":\"" + subject + "\",\"iat\":" + now + ",\"exp\":" + exp.getEpochSecond() + "}");
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
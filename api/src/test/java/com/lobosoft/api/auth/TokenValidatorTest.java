@@ -0,0 +1,112 @@
+package com.lobosoft.api.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lobosoft.api.config.TokenCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+
+import static com.lobosoft.api.auth.LocalJwtVerifierTest.token;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenValidatorTest {
+
+    private static final String SECRET = "a-test-secret-of-at-least-thirty-two-bytes!";
+
+    @Mock
+    private AuthGrpcClient authGrpcClient;
+
+    private final TokenCacheProperties props = new TokenCacheProperties();
+    private final ValidatedTokenCache tokenCache = new ValidatedTokenCache(props);
+    private TokenValidator validator;
+
+    private final String token = token("HS256", "HmacSHA256", SECRET, "user-1", Instant.now().plusSeconds(600));
+
+    @BeforeEach
+    void setUp() {
+        props.setJwtSecret(SECRET);
+        validator = new TokenValidator(authGrpcClient, tokenCache,
+                new LocalJwtVerifier(props, new ObjectMapper()), props);
+    }
+
+    @Test
+    void repeatedValidationIsServedFromTheCache() {
+        when(authGrpcClient.validateTokenAndGetUserId(token)).thenReturn("user-1");
+
+        assertThat(validator.validateTokenAndGetUserId(token)).isEqualTo("user-1");
+        assertThat(validator.validateTokenAndGetUserId(token)).isEqualTo("user-1");
+
+        verify(authGrpcClient, times(1)).validateTokenAndGetUserId(token);
+    }
+
+    @Test
+    void localVerificationNeverCallsTheAuthService() {
+        props.setLocalVerification(true);
+
+        assertThat(validator.validateTokenAndGetUserId(token)).isEqualTo("user-1");
+        verifyNoInteractions(authGrpcClient);
+    }
+
+    @Test
+    void localVerificationRejectsBadSignature() {
+        props.setLocalVerification(true);
+        String forged = token("HS256", "HmacSHA256", "another-secret-of-at-least-thirty-two-bytes", "user-1",
+                Instant.now().plusSeconds(600));
+
+        assertThatThrownBy(() -> validator.validateTokenAndGetUserId(forged))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED));
+    }
+
+    @Test
+    void malformedTokenIsUnauthorized() {
+        assertThatThrownBy(() -> validator.validateTokenAndGetUserId("not-a-jwt"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED));
+        verifyNoInteractions(authGrpcClient);
+    }
+
+    @Test
+    void revokedTokenIsRejectedAlthoughItWasCached() {
+        when(authGrpcClient.validateTokenAndGetUserId(token)).thenReturn("user-1");
+        validator.validateTokenAndGetUserId(token);
+
+        assertThat(validator.revoke(token)).isEqualTo("user-1");
+
+        assertThatThrownBy(() -> validator.validateTokenAndGetUserId(token))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getReason()).isEqualTo("Token revoked"));
+        verify(authGrpcClient, times(1)).validateTokenAndGetUserId(token);
+    }
+
+    @Test
+    void revokedTokenIsRejectedWithTheCacheDisabled() {
+        when(authGrpcClient.validateTokenAndGetUserId(token)).thenReturn("user-1");
+        validator.revoke(token);
+        props.setEnabled(false);
+
+        assertThatThrownBy(() -> validator.validateTokenAndGetUserId(token))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void onlyValidTokensCanBeRevoked() {
+        when(authGrpcClient.validateTokenAndGetUserId(token))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+
+        assertThatThrownBy(() -> validator.revoke(token)).isInstanceOf(ResponseStatusException.class);
+        assertThat(tokenCache.isRevoked(token)).isFalse();
+    }
+}
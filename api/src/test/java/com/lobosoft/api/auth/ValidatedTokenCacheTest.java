@@ -0,0 +1,118 @@
+package com.lobosoft.api.auth;
+
+import com.lobosoft.api.config.TokenCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValidatedTokenCacheTest {
+
+    private final TokenCacheProperties props = new TokenCacheProperties();
+    private final ValidatedTokenCache cache = new ValidatedTokenCache(props);
+
+    @Test
+    void put_servesTheUserUntilTheTtl() throws Exception {
+        props.setTtl(Duration.ofMillis(100));
+        cache.put("token", "user-1", Instant.now().plusSeconds(600));
+
+        assertThat(cache.getUserId("token")).isEqualTo("user-1");
+        Thread.sleep(150);
+        assertThat(cache.getUserId("token")).isNull();
+    }
+
+    @Test
+    void put_capsTheTtlAtTheJwtExp() throws Exception {
+        props.setTtl(Duration.ofMinutes(5));
+        cache.put("token", "user-1", Instant.now().plusMillis(100));
+
+        assertThat(cache.getUserId("token")).isEqualTo("user-1");
+        Thread.sleep(150);
+        assertThat(cache.getUserId("token")).isNull();
+    }
+
+    @Test
+    void put_skipsExpiredToken() {
+        cache.put("token", "user-1", Instant.now().minusSeconds(1));
+
+        assertThat(cache.getUserId("token")).isNull();
+        assertThat(entries()).isEmpty();
+    }
+
+    @Test
+    void entriesAreKeyedByTheTokensSha256() throws Exception {
+        cache.put("raw-bearer-token", "user-1", Instant.now().plusSeconds(600));
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("raw-bearer-token".getBytes(StandardCharsets.UTF_8)));
+        assertThat(entries().keySet()).containsExactly(sha256);
+    }
+
+    @Test
+    void fullCacheEvictsTheTenthThatExpiresSoonest() {
+        props.setMaxEntries(20);
+        Instant now = Instant.now();
+        for (int i = 0; i < 20; i++) {
+            cache.put("token-" + i, "user-" + i, now.plusSeconds(60 + i));
+        }
+
+        cache.put("token-new", "user-new", now.plusSeconds(30));
+
+        assertThat(cache.getUserId("token-0")).isNull();
+        assertThat(cache.getUserId("token-1")).isNull();
+        for (int i = 2; i < 20; i++) {
+            assertThat(cache.getUserId("token-" + i)).isEqualTo("user-" + i);
+        }
+        assertThat(cache.getUserId("token-new")).isEqualTo("user-new");
+        assertThat(entries()).hasSize(19);
+    }
+
+    @Test
+    void fullCacheDropsExpiredEntriesFirst() throws Exception {
+        props.setMaxEntries(20);
+        Instant now = Instant.now();
+        cache.put("short-lived", "user-0", now.plusMillis(50));
+        for (int i = 1; i < 20; i++) {
+            cache.put("token-" + i, "user-" + i, now.plusSeconds(60 + i));
+        }
+        Thread.sleep(100);
+
+        cache.put("token-new", "user-new", now.plusSeconds(30));
+
+        assertThat(entries()).hasSize(20);
+        assertThat(cache.getUserId("token-1")).isEqualTo("user-1");
+    }
+
+    @Test
+    void revokedTokenIsDroppedAndRejectedUntilItsExp() throws Exception {
+        cache.put("token", "user-1", Instant.now().plusSeconds(600));
+
+        cache.revokeToken("token", Instant.now().plusMillis(100));
+
+        assertThat(cache.getUserId("token")).isNull();
+        assertThat(cache.isRevoked("token")).isTrue();
+        assertThat(cache.isRevoked("other-token")).isFalse();
+        Thread.sleep(150);
+        assertThat(cache.isRevoked("token")).isFalse();
+    }
+
+    @Test
+    void revokingAnExpiredTokenKeepsNothing() {
+        cache.revokeToken("token", Instant.now().minusSeconds(1));
+
+        assertThat(cache.isRevoked("token")).isFalse();
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(cache, "revokedTokens")).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> entries() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(cache, "entries");
+    }
+}
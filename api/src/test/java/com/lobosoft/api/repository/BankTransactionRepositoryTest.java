@@ -0,0 +1,101 @@
+package com.lobosoft.api.repository;
+
+import com.lobosoft.api.model.BankTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class BankTransactionRepositoryTest {
+
+    private static final String USER = "user-1";
+    private static final long ACCOUNT = 1L;
+    private static final LocalDate BUSY_DAY = LocalDate.of(2024, 1, 10);
+
+    @Autowired
+    private BankTransactionRepository repository;
+
+    // the account's rows in (booking_date DESC NULLS FIRST, id DESC) order
+    private List<Long> expected;
+
+    @BeforeEach
+    void setUp() {
+        List<BankTransaction> rows = new ArrayList<>();
+        // dates deliberately out of insertion order, so ids and dates disagree
+        for (LocalDate date : new LocalDate[]{BUSY_DAY, null, LocalDate.of(2024, 1, 9), BUSY_DAY, null,
+                BUSY_DAY, LocalDate.of(2024, 1, 11), BUSY_DAY, null, BUSY_DAY, LocalDate.of(2024, 1, 9)}) {
+            rows.add(repository.save(transaction(USER, ACCOUNT, date)));
+        }
+        // neighbours that must never show up
+        repository.save(transaction(USER, 2L, BUSY_DAY));
+        repository.save(transaction("user-2", ACCOUNT, BUSY_DAY));
+
+        expected = rows.stream()
+                .sorted(Comparator.comparing(BankTransaction::getBookingDate,
+                                Comparator.nullsFirst(Comparator.<LocalDate>reverseOrder()))
+                        .thenComparing(BankTransaction::getId, Comparator.reverseOrder()))
+                .map(BankTransaction::getId)
+                .toList();
+    }
+
+    @Test
+    void keysetPagesNeitherSkipNorRepeatRowsOfTheSameDay() {
+        for (int size = 1; size <= expected.size() + 1; size++) {
+            assertThat(pageThrough(size)).as("page size %d", size).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void firstPageStartsWithTheUndatedRows() {
+        List<BankTransaction> page = repository.findFirstKeysetPage(USER, ACCOUNT, PageRequest.of(0, 3));
+
+        assertThat(page).extracting(BankTransaction::getBookingDate).containsOnlyNulls();
+        assertThat(page).extracting(BankTransaction::getId).isEqualTo(expected.subList(0, 3));
+    }
+
+    @Test
+    void pageAfterADatedRowContinuesWithinItsDay() {
+        BankTransaction firstOfBusyDay = repository.findById(expected.get(4)).orElseThrow();
+        assertThat(firstOfBusyDay.getBookingDate()).isEqualTo(BUSY_DAY);
+
+        List<BankTransaction> page = repository.findKeysetPageAfter(
+                USER, ACCOUNT, BUSY_DAY, firstOfBusyDay.getId(), PageRequest.of(0, 4));
+
+        assertThat(page).extracting(BankTransaction::getId).isEqualTo(expected.subList(5, 9));
+        assertThat(page).extracting(BankTransaction::getBookingDate).containsOnly(BUSY_DAY);
+    }
+
+    // pages the way TransactionService does: one row more than asked tells whether another page follows
+    private List<Long> pageThrough(int size) {
+        List<Long> seen = new ArrayList<>();
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<BankTransaction> page = repository.findFirstKeysetPage(USER, ACCOUNT, limit);
+        while (true) {
+            page.stream().limit(size).map(BankTransaction::getId).forEach(seen::add);
+            if (page.size() <= size) {
+                return seen;
+            }
+            BankTransaction last = page.get(size - 1);
+            page = last.getBookingDate() == null
+                    ? repository.findKeysetPageAfterUndated(USER, ACCOUNT, last.getId(), limit)
+                    : repository.findKeysetPageAfter(USER, ACCOUNT, last.getBookingDate(), last.getId(), limit);
+        }
+    }
+
+    private static BankTransaction transaction(String userId, long accountId, LocalDate bookingDate) {
+        BankTransaction t = new BankTransaction();
+        t.setUserId(userId);
+        t.setBankAccountId(accountId);
+        t.setBookingDate(bookingDate);
+        return t;
+    }
+}
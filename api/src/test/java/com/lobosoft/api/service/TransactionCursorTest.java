@@ -0,0 +1,57 @@
+package com.lobosoft.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionCursorTest {
+
+    @Test
+    void datedCursorRoundTrips() {
+        TransactionCursor cursor = new TransactionCursor(LocalDate.of(2024, 1, 31), 42L);
+
+        assertThat(TransactionCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void undatedCursorRoundTrips() {
+        TransactionCursor cursor = new TransactionCursor(null, 7L);
+
+        assertThat(TransactionCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = new TransactionCursor(LocalDate.of(2024, 12, 1), Long.MAX_VALUE).encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void malformedCursorsAreBadRequests() {
+        assertBadRequest("not base64!");
+        assertBadRequest(encode("no-separator"));
+        assertBadRequest(encode("2024-13-01:5"));
+        assertBadRequest(encode("2024-01-01:"));
+        assertBadRequest(encode("2024-01-01:five"));
+        assertBadRequest(encode(":5"));
+        assertBadRequest("");
+    }
+
+    private static void assertBadRequest(String cursor) {
+        assertThatThrownBy(() -> TransactionCursor.decode(cursor))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,21 +1,28 @@
 // grpc/AuthGrpcServiceImpl.java
 package com.lobosoft.auth.grpc;
 
-import com.lobosoft.auth.domain.UserRepository;
 import com.lobosoft.auth.security.JwtService;
+import com.lobosoft.auth.service.UserExistenceCache;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import net.devh.boot.grpc.server.service.GrpcService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @GrpcService
 @RequiredArgsConstructor
 public class AuthGrpcServiceImpl extends AuthGrpcServiceGrpc.AuthGrpcServiceImplBase {
 
+    private static final ValidateTokenResponse INVALID = ValidateTokenResponse.newBuilder()
+            .setValid(false)
+            .build();
+
     private final JwtService jwtService;
-    private final UserRepository userRepository;
+    private final UserExistenceCache userExistenceCache;
 
     @Override
     public void validateToken(ValidateTokenRequest request,
@@ -24,21 +31,15 @@ public class AuthGrpcServiceImpl extends AuthGrpcServiceGrpc.AuthGrpcServiceImpl
         try {
             UUID userId = jwtService.parseUserId(token);
 
-            var userOpt = userRepository.findById(userId);
-            if (userOpt.isEmpty()) {
-                var resp = ValidateTokenResponse.newBuilder()
-                        .setValid(false)
-                        .build();
-                responseObserver.onNext(resp);
+            if (!userExistenceCache.exists(userId)) {
+                responseObserver.onNext(INVALID);
                 responseObserver.onCompleted();
                 return;
             }
 
-            var user = userOpt.get();
-
             var resp = ValidateTokenResponse.newBuilder()
                     .setValid(true)
-                    .setUserId(user.getId().toString())
+                    .setUserId(userId.toString())
                     .build();
 
             responseObserver.onNext(resp);
@@ -50,4 +51,47 @@ public class AuthGrpcServiceImpl extends AuthGrpcServiceGrpc.AuthGrpcServiceImpl
                     .asRuntimeException());
         }
     }
+
+    @Override
+    public void validateTokens(ValidateTokensRequest request,
+                               StreamObserver<ValidateTokensResponse> responseObserver) {
+        try {
+            // signature check for every token first, then one existence lookup for the whole batch
+            List<UUID> userIds = new ArrayList<>(request.getAccessTokensCount());
+            for (String token : request.getAccessTokensList()) {
+                userIds.add(parseOrNull(token));
+            }
+
+            Set<UUID> existing = userExistenceCache.existing(
+                    userIds.stream().filter(id -> id != null).distinct().toList());
+
+            ValidateTokensResponse.Builder resp = ValidateTokensResponse.newBuilder();
+            for (UUID userId : userIds) {
+                if (userId != null && existing.contains(userId)) {
+                    resp.addResults(ValidateTokenResponse.newBuilder()
+                            .setValid(true)
+                            .setUserId(userId.toString())
+                            .build());
+                } else {
+                    resp.addResults(INVALID);
+                }
+            }
+
+            responseObserver.onNext(resp.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("validate_tokens_failed")
+                    .withCause(e)
+                    .asRuntimeException());
+        }
+    }
+
+    private UUID parseOrNull(String token) {
+        try {
+            return jwtService.parseUserId(token);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.lobosoft.auth.security;
 
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -28,10 +29,15 @@ public class JwtService {
     private long expirationSeconds;
 
     private SecretKey key;
+    private JwtParser parser;
 
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        // parsers are immutable and thread-safe, no need to rebuild one per token
+        this.parser = Jwts.parser()
+                .verifyWith(key)
+                .build();
     }
 
     @Bean
@@ -70,10 +76,7 @@ public class JwtService {
     }
 
     public UUID parseUserId(String token) {
-        var jwt = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token);
+        var jwt = parser.parseSignedClaims(token);
 
         return UUID.fromString(jwt.getPayload().getSubject());
     }
@@ -20,6 +20,7 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final JwtService jwtService;
+    private final UserExistenceCache userExistenceCache;
 
     public AuthResponse register(RegisterRequest req) {
         userRepository.findByEmail(req.getEmail())
@@ -32,6 +33,7 @@ public class AuthService {
         user.setPasswordHash(hash);
 
         user = userRepository.save(user);
+        userExistenceCache.onRegistered(user.getId());
 
         String token = jwtService.generateToken(user.getId(), user.getEmail());
 
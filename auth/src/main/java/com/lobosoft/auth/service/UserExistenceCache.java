@@ -0,0 +1,104 @@
+package com.lobosoft.auth.service;
+
+import com.lobosoft.auth.domain.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process set of user ids known to exist, so token validation only reaches Postgres the first
+ * time a user is seen by this instance. Users are added on register; every entry is rechecked
+ * after {@code security.user-cache.ttl}, so a user removed from the database stops validating
+ * on every instance within that time.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserExistenceCache {
+
+    private final UserRepository userRepository;
+
+    // user id -> when the entry must be rechecked
+    private final Map<UUID, Instant> knownUsers = new ConcurrentHashMap<>();
+
+    @Value("${security.user-cache.max-entries:1000000}")
+    private int maxEntries;
+
+    @Value("${security.user-cache.ttl:PT10M}")
+    private Duration ttl;
+
+    public boolean exists(UUID userId) {
+        if (isKnown(userId)) {
+            return true;
+        }
+
+        // registered on another instance, not seen since startup, or due for a recheck
+        boolean exists = userRepository.existsById(userId);
+        if (exists) {
+            remember(userId);
+        }
+        return exists;
+    }
+
+    /**
+     * Resolves many ids with at most one query for the ones not cached yet.
+     */
+    public Set<UUID> existing(Collection<UUID> userIds) {
+        Set<UUID> found = new HashSet<>();
+        List<UUID> unknown = new ArrayList<>();
+
+        for (UUID id : userIds) {
+            if (isKnown(id)) {
+                found.add(id);
+            } else {
+                unknown.add(id);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            userRepository.findAllById(unknown).forEach(user -> {
+                found.add(user.getId());
+                remember(user.getId());
+            });
+        }
+
+        return found;
+    }
+
+    public void onRegistered(UUID userId) {
+        remember(userId);
+    }
+
+    private boolean isKnown(UUID userId) {
+        Instant until = knownUsers.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (!until.isAfter(Instant.now())) {
+            knownUsers.remove(userId, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void remember(UUID userId) {
+        Instant now = Instant.now();
+        if (knownUsers.size() >= maxEntries) {
+            knownUsers.values().removeIf(until -> !until.isAfter(now));
+        }
+        // past the bound we simply stop caching; lookups stay correct, just slower
+        if (knownUsers.size() < maxEntries) {
+            knownUsers.put(userId, now.plus(ttl));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.lobosoft.auth.grpc;
+
+import com.lobosoft.auth.domain.User;
+import com.lobosoft.auth.domain.UserRepository;
+import com.lobosoft.auth.security.JwtService;
+import com.lobosoft.auth.service.UserExistenceCache;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuthGrpcServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private JwtService jwtService;
+    private UserExistenceCache userExistenceCache;
+    private AuthGrpcServiceImpl grpc;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "a-test-secret-of-at-least-thirty-two-bytes!");
+        ReflectionTestUtils.setField(jwtService, "expirationSeconds", 3600L);
+        jwtService.init();
+
+        userExistenceCache = new UserExistenceCache(userRepository);
+        ReflectionTestUtils.setField(userExistenceCache, "maxEntries", 1000);
+        ReflectionTestUtils.setField(userExistenceCache, "ttl", Duration.ofMinutes(10));
+
+        grpc = new AuthGrpcServiceImpl(jwtService, userExistenceCache);
+    }
+
+    @Test
+    void validateTokens_answersInRequestOrderWithOneLookup() {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        UUID gone = UUID.randomUUID();
+        when(userRepository.findAllById(anyCollection())).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            return ids.stream().filter(id -> !id.equals(gone)).map(AuthGrpcServiceImplTest::user).toList();
+        });
+
+        ValidateTokensResponse response = validateTokens(
+                token(alice), "not-a-jwt", token(bob), token(gone), token(alice));
+
+        assertThat(response.getResultsList())
+                .extracting(ValidateTokenResponse::getValid, ValidateTokenResponse::getUserId)
+                .containsExactly(
+                        tuple(true, alice.toString()),
+                        tuple(false, ""),
+                        tuple(true, bob.toString()),
+                        tuple(false, ""),
+                        tuple(true, alice.toString()));
+        verify(userRepository, times(1)).findAllById(anyCollection());
+    }
+
+    @Test
+    void validateTokens_cachedUsersNeedNoLookup() {
+        UUID alice = UUID.randomUUID();
+        userExistenceCache.onRegistered(alice);
+
+        ValidateTokensResponse response = validateTokens(token(alice));
+
+        assertThat(response.getResults(0).getValid()).isTrue();
+        verify(userRepository, times(0)).findAllById(anyCollection());
+    }
+
+    @Test
+    void validateTokens_removedUserIsInvalidOnceRechecked() throws Exception {
+        ReflectionTestUtils.setField(userExistenceCache, "ttl", Duration.ofMillis(50));
+        UUID alice = UUID.randomUUID();
+        userExistenceCache.onRegistered(alice);
+        Thread.sleep(100);
+        when(userRepository.findAllById(anyCollection())).thenReturn(List.of());
+
+        ValidateTokensResponse response = validateTokens(token(alice));
+
+        assertThat(response.getResults(0).getValid()).isFalse();
+    }
+
+    @Test
+    void validateToken_removedUserIsInvalidOnceRechecked() throws Exception {
+        ReflectionTestUtils.setField(userExistenceCache, "ttl", Duration.ofMillis(50));
+        UUID alice = UUID.randomUUID();
+        userExistenceCache.onRegistered(alice);
+        Thread.sleep(100);
+        when(userRepository.existsById(alice)).thenReturn(false);
+
+        CapturingObserver<ValidateTokenResponse> observer = new CapturingObserver<>();
+        grpc.validateToken(ValidateTokenRequest.newBuilder().setAccessToken(token(alice)).build(), observer);
+
+        assertThat(observer.values).singleElement().extracting(ValidateTokenResponse::getValid).isEqualTo(false);
+    }
+
+    private ValidateTokensResponse validateTokens(String... tokens) {
+        CapturingObserver<ValidateTokensResponse> observer = new CapturingObserver<>();
+        grpc.validateTokens(ValidateTokensRequest.newBuilder().addAllAccessTokens(List.of(tokens)).build(), observer);
+
+        assertThat(observer.error).isNull();
+        assertThat(observer.completed).isTrue();
+        return observer.values.getFirst();
+    }
+
+    private String token(UUID userId) {
+        return jwtService.generateToken(userId, userId + "@example.com");
+    }
+
+    private static User user(UUID id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static class CapturingObserver<T> implements StreamObserver<T> {
+        final List<T> values = new ArrayList<>();
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            this.error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            this.completed = true;
+        }
+    }
+}
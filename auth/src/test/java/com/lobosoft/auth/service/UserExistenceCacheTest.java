@@ -0,0 +1,64 @@
+package com.lobosoft.auth.service;
+
+import com.lobosoft.auth.domain.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserExistenceCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserExistenceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserExistenceCache(userRepository);
+        ReflectionTestUtils.setField(cache, "maxEntries", 1000);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+    }
+
+    @Test
+    void registeredUserExistsWithoutAQuery() {
+        UUID userId = UUID.randomUUID();
+        cache.onRegistered(userId);
+
+        assertThat(cache.exists(userId)).isTrue();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void userFoundInTheDatabaseIsOnlyLookedUpOnce() {
+        UUID userId = UUID.randomUUID();
+        when(userRepository.existsById(userId)).thenReturn(true);
+
+        assertThat(cache.exists(userId)).isTrue();
+        assertThat(cache.exists(userId)).isTrue();
+        verify(userRepository, times(1)).existsById(userId);
+    }
+
+    @Test
+    void entriesAreRecheckedAfterTheTtl() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMillis(50));
+        UUID userId = UUID.randomUUID();
+        cache.onRegistered(userId);
+        Thread.sleep(100);
+
+        when(userRepository.existsById(userId)).thenReturn(false);
+        assertThat(cache.exists(userId)).isFalse();
+    }
+}
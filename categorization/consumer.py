@@ -1,5 +1,4 @@
 import os
-import json
 import signal
 import threading
 from dotenv import load_dotenv
@@ -7,6 +6,7 @@ from confluent_kafka import Consumer
 
 from categorize import categorize_transaction
 from db import get_category_id_by_key, is_db_healthy, upsert_category
+from events import decode_event
 from health_server import HealthServer
 from merchants import (
     fetch_merchants,
@@ -18,6 +18,8 @@ load_dotenv()
 
 KAFKA_BOOTSTRAP_SERVERS = os.getenv("KAFKA_BOOTSTRAP_SERVERS", "localhost:9092")
 KAFKA_TOPIC = os.getenv("KAFKA_TOPIC", "transactions.upserted")
+# replays of stored transactions (sync's /replays) land here unless they target the live topic
+KAFKA_REPLAY_TOPIC = os.getenv("KAFKA_REPLAY_TOPIC", "transactions.replay")
 KAFKA_GROUP_ID = os.getenv("KAFKA_GROUP_ID", "categorizer-service")
 HEALTH_HOST = os.getenv("HEALTH_HOST", "0.0.0.0")
 HEALTH_PORT = int(os.getenv("HEALTH_PORT", "8080"))
@@ -87,12 +89,13 @@ def main():
     health.start()
 
     consumer = create_consumer()
-    consumer.subscribe([KAFKA_TOPIC])
+    topics = [t for t in (KAFKA_TOPIC, KAFKA_REPLAY_TOPIC) if t]
+    consumer.subscribe(topics)
 
     merchants = fetch_merchants()
     print(f"Loaded {len(merchants)} merchants.")
 
-    print(f"Categorizer listening on topic '{KAFKA_TOPIC}'...")
+    print(f"Categorizer listening on topics {topics}...")
 
     try:
         while not stop_event.is_set():
@@ -104,7 +107,7 @@ def main():
                 continue
 
             try:
-                event = json.loads(msg.value().decode("utf-8"))
+                event = decode_event(msg.value(), msg.headers())
             except Exception as e:
                 print(f"[ERROR] Failed to parse message: {e}")
                 continue
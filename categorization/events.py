@@ -0,0 +1,120 @@
+"""
+Decoding of transactions.upserted events.
+
+The sync service tags every record with a content-type header. Protobuf payloads
+follow sync/src/main/proto/transaction_events.proto (events.TransactionUpserted v1).
+Records with no header, or with application/json, are the legacy JSON format.
+
+The protobuf message is flat, so it is decoded here straight from the wire format
+rather than pulling in protoc-generated code.
+"""
+import json
+from datetime import date, timedelta
+from decimal import Decimal
+
+CONTENT_TYPE_HEADER = "content-type"
+PROTOBUF_PREFIX = "application/x-protobuf"
+
+_EPOCH = date(1970, 1, 1)
+
+# field number -> (event key, kind)
+_FIELDS = {
+    1: ("transactionId", "int64"),
+    2: ("userId", "string"),
+    3: ("accountId", "int64"),
+    4: ("amountUnscaled", "bytes"),
+    5: ("amountScale", "int32"),
+    6: ("currency", "string"),
+    7: ("direction", "string"),
+    8: ("bookingEpochDay", "int32"),
+    9: ("descriptionRaw", "string"),
+    10: ("descriptionDisplay", "string"),
+}
+
+
+def decode_event(value: bytes, headers) -> dict:
+    """Returns the event as the same dict the JSON format produces."""
+    content_type = _header(headers, CONTENT_TYPE_HEADER)
+    if content_type and content_type.startswith(PROTOBUF_PREFIX):
+        return decode_transaction_upserted(value)
+    return json.loads(value.decode("utf-8"))
+
+
+def decode_transaction_upserted(data: bytes) -> dict:
+    raw = {}
+    pos = 0
+    end = len(data)
+    while pos < end:
+        tag, pos = _varint(data, pos)
+        field, wire_type = tag >> 3, tag & 0x7
+
+        if wire_type == 0:
+            value, pos = _varint(data, pos)
+        elif wire_type == 2:
+            length, pos = _varint(data, pos)
+            value = data[pos:pos + length]
+            pos += length
+        elif wire_type == 1:
+            pos += 8
+            continue
+        elif wire_type == 5:
+            pos += 4
+            continue
+        else:
+            raise ValueError(f"unsupported wire type {wire_type}")
+
+        spec = _FIELDS.get(field)
+        if spec is None:
+            continue  # field from a newer schema version
+        name, kind = spec
+        if kind == "string":
+            raw[name] = value.decode("utf-8")
+        elif kind == "bytes":
+            raw[name] = bytes(value)
+        else:
+            raw[name] = _signed(value, 64 if kind == "int64" else 32)
+
+    unscaled = int.from_bytes(raw.get("amountUnscaled", b""), "big", signed=True)
+    amount = Decimal(unscaled).scaleb(-raw.get("amountScale", 0))
+
+    booking_day = raw.get("bookingEpochDay")
+    return {
+        "transactionId": raw.get("transactionId", 0),
+        "userId": raw.get("userId", ""),
+        "accountId": raw.get("accountId", 0),
+        "amount": amount,
+        "currency": raw.get("currency") or None,
+        "direction": raw.get("direction") or None,
+        "bookingDate": (_EPOCH + timedelta(days=booking_day)).isoformat() if booking_day is not None else None,
+        "descriptionRaw": raw.get("descriptionRaw"),
+        "descriptionDisplay": raw.get("descriptionDisplay"),
+    }
+
+
+def _varint(data: bytes, pos: int) -> tuple[int, int]:
+    result = 0
+    shift = 0
+    while True:
+        b = data[pos]
+        pos += 1
+        result |= (b & 0x7F) << shift
+        if not b & 0x80:
+            return result, pos
+        shift += 7
+
+
+def _signed(value: int, bits: int) -> int:
+    # negative int32/int64 values are sent as 10-byte two's complement varints
+    value &= (1 << 64) - 1
+    if value >= 1 << 63:
+        value -= 1 << 64
+    if bits == 32:
+        value = ((value + (1 << 31)) % (1 << 32)) - (1 << 31)
+    return value
+
+
+def _header(headers, name: str):
+    for key, value in headers or []:
+        if key.lower() == name and value is not None:
+            return value.decode("utf-8") if isinstance(value, bytes) else value
+    return None
@@ -0,0 +1,42 @@
+"""
+Decodes the bytes the sync service's protobuf serializer writes. The fixture is
+shared with sync's TransactionEventWireFormatTest, which checks that Java still
+produces exactly these bytes.
+
+Run with: python -m unittest test_events
+"""
+import json
+import unittest
+from pathlib import Path
+
+from events import CONTENT_TYPE_HEADER, decode_event, decode_transaction_upserted
+
+FIXTURE = Path(__file__).resolve().parent.parent / "sync/src/test/resources/events/transaction_upserted_v1.json"
+PROTOBUF_HEADERS = [(CONTENT_TYPE_HEADER, b"application/x-protobuf;message=events.TransactionUpserted;v=1")]
+
+
+class DecodeTransactionUpsertedTest(unittest.TestCase):
+
+    def test_decodes_java_serializer_bytes(self):
+        for case in json.loads(FIXTURE.read_text(encoding="utf-8")):
+            with self.subTest(case["name"]):
+                expected = case["event"]
+                event = decode_transaction_upserted(bytes.fromhex(case["hex"]))
+
+                self.assertEqual(str(event.pop("amount")), expected.pop("amount"))
+                self.assertEqual(event, expected)
+
+    def test_content_type_header_selects_protobuf(self):
+        case = json.loads(FIXTURE.read_text(encoding="utf-8"))[0]
+        event = decode_event(bytes.fromhex(case["hex"]), PROTOBUF_HEADERS)
+
+        self.assertEqual(event["transactionId"], case["event"]["transactionId"])
+
+    def test_headerless_record_is_legacy_json(self):
+        event = decode_event(b'{"transactionId": 1, "amount": -4.2}', None)
+
+        self.assertEqual(event, {"transactionId": 1, "amount": -4.2})
+
+
+if __name__ == "__main__":
+    unittest.main()
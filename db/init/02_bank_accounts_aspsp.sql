@@ -0,0 +1,14 @@
+--
+-- ASPSP (bank) an account was linked through, used by the sync scheduler
+-- to cap concurrent provider calls per bank.
+--
+
+ALTER TABLE public.bank_accounts
+    ADD COLUMN IF NOT EXISTS aspsp_name character varying(255);
+
+UPDATE public.bank_accounts a
+SET aspsp_name = s.aspsp_name
+FROM public.bank_sessions s
+WHERE a.aspsp_name IS NULL
+  AND s.user_id = a.user_id
+  AND (SELECT count(*) FROM public.bank_sessions s2 WHERE s2.user_id = a.user_id) = 1;
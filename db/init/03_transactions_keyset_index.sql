@@ -0,0 +1,7 @@
+--
+-- Keyset pagination of an account's transactions, ordered by
+-- (booking_date DESC NULLS FIRST, id DESC).
+--
+
+CREATE INDEX IF NOT EXISTS ix_transactions_account_keyset
+    ON public.transactions USING btree (bank_account_id, user_id, booking_date DESC NULLS FIRST, id DESC);
@@ -0,0 +1,180 @@
+--
+-- Monthly signed spend per (user, dimension, key), kept in step with
+-- transactions and transaction_categories by triggers so every writer
+-- (sync upserts, the categorizer, the api) maintains it without extra code.
+--
+-- dimension: 'CATEGORY' (key = category id), 'MERCHANT' (key = merchant id)
+--            or 'DESCRIPTION' (key = description_raw)
+-- month:     first day of the booking month, 0001-01-01 for undated rows
+--
+
+CREATE TABLE IF NOT EXISTS public.spend_rollups (
+    user_id character varying(255) NOT NULL,
+    dimension text NOT NULL,
+    dimension_key text NOT NULL,
+    month date NOT NULL,
+    total numeric(38,2) DEFAULT 0 NOT NULL,
+    tx_count bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT spend_rollups_pkey PRIMARY KEY (user_id, dimension, dimension_key, month)
+);
+
+ALTER TABLE public.spend_rollups OWNER TO henriquelobo;
+
+
+--
+-- Same sign rules as the original total-spent queries; a missing amount counts as 0.
+--
+
+CREATE OR REPLACE FUNCTION public.signed_amount(amount numeric, direction text) RETURNS numeric
+    LANGUAGE sql IMMUTABLE
+    AS $$
+    SELECT CASE
+               WHEN amount IS NULL THEN 0
+               WHEN amount < 0 THEN amount
+               WHEN upper(direction) IN ('OUT', 'OUTGOING', 'DEBIT') THEN -amount
+               ELSE amount
+           END
+$$;
+
+CREATE OR REPLACE FUNCTION public.rollup_month(booking_date date) RETURNS date
+    LANGUAGE sql IMMUTABLE
+    AS $$
+    SELECT COALESCE(date_trunc('month', booking_date)::date, DATE '0001-01-01')
+$$;
+
+CREATE OR REPLACE FUNCTION public.spend_rollup_add(
+    p_user_id text, p_dimension text, p_key text, p_booking_date date, p_amount numeric, p_count integer
+) RETURNS void
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF p_key IS NULL OR p_user_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO public.spend_rollups AS r (user_id, dimension, dimension_key, month, total, tx_count)
+    VALUES (p_user_id, p_dimension, p_key, public.rollup_month(p_booking_date), p_amount, p_count)
+    ON CONFLICT (user_id, dimension, dimension_key, month) DO UPDATE
+        SET total    = r.total + EXCLUDED.total,
+            tx_count = r.tx_count + EXCLUDED.tx_count;
+END;
+$$;
+
+-- adds (sign = 1) or removes (sign = -1) one transaction's contribution to its
+-- description and merchant buckets, plus its category bucket when it has one
+CREATE OR REPLACE FUNCTION public.spend_rollup_apply_transaction(t public.transactions, sign integer) RETURNS void
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    delta numeric := sign * public.signed_amount(t.amount, t.direction);
+    cat_id bigint;
+BEGIN
+    PERFORM public.spend_rollup_add(t.user_id, 'DESCRIPTION', t.description_raw, t.booking_date, delta, sign);
+    PERFORM public.spend_rollup_add(t.user_id, 'MERCHANT', t.merchant_id::text, t.booking_date, delta, sign);
+
+    FOR cat_id IN SELECT tc.category_id FROM public.transaction_categories tc WHERE tc.transaction_id = t.id LOOP
+        PERFORM public.spend_rollup_add(t.user_id, 'CATEGORY', cat_id::text, t.booking_date, delta, sign);
+    END LOOP;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.trg_transactions_spend_rollup() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+        AND NEW.amount IS NOT DISTINCT FROM OLD.amount
+        AND NEW.direction IS NOT DISTINCT FROM OLD.direction
+        AND NEW.booking_date IS NOT DISTINCT FROM OLD.booking_date
+        AND NEW.user_id IS NOT DISTINCT FROM OLD.user_id
+        AND NEW.merchant_id IS NOT DISTINCT FROM OLD.merchant_id
+        AND NEW.description_raw IS NOT DISTINCT FROM OLD.description_raw THEN
+        RETURN NEW;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM public.spend_rollup_apply_transaction(OLD, -1);
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM public.spend_rollup_apply_transaction(NEW, 1);
+        RETURN NEW;
+    END IF;
+
+    RETURN OLD;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.trg_transaction_categories_spend_rollup() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    t public.transactions;
+BEGIN
+    IF TG_OP = 'UPDATE'
+        AND NEW.category_id IS NOT DISTINCT FROM OLD.category_id
+        AND NEW.transaction_id IS NOT DISTINCT FROM OLD.transaction_id THEN
+        RETURN NEW;
+    END IF;
+
+    -- a cascading delete from transactions finds no row here: the BEFORE DELETE
+    -- trigger on transactions already removed the category contribution
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        SELECT * INTO t FROM public.transactions WHERE id = OLD.transaction_id;
+        IF FOUND THEN
+            PERFORM public.spend_rollup_add(t.user_id, 'CATEGORY', OLD.category_id::text, t.booking_date,
+                                            -public.signed_amount(t.amount, t.direction), -1);
+        END IF;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        SELECT * INTO t FROM public.transactions WHERE id = NEW.transaction_id;
+        IF FOUND THEN
+            PERFORM public.spend_rollup_add(t.user_id, 'CATEGORY', NEW.category_id::text, t.booking_date,
+                                            public.signed_amount(t.amount, t.direction), 1);
+        END IF;
+        RETURN NEW;
+    END IF;
+
+    RETURN OLD;
+END;
+$$;
+
+-- BEFORE DELETE so the category rows are still there when the transaction goes away
+CREATE TRIGGER trg_transactions_spend_rollup_delete BEFORE DELETE ON public.transactions
+    FOR EACH ROW EXECUTE FUNCTION public.trg_transactions_spend_rollup();
+
+CREATE TRIGGER trg_transactions_spend_rollup_upsert AFTER INSERT OR UPDATE ON public.transactions
+    FOR EACH ROW EXECUTE FUNCTION public.trg_transactions_spend_rollup();
+
+CREATE TRIGGER trg_transaction_categories_spend_rollup AFTER INSERT OR UPDATE OR DELETE ON public.transaction_categories
+    FOR EACH ROW EXECUTE FUNCTION public.trg_transaction_categories_spend_rollup();
+
+
+--
+-- Backfill from existing data.
+--
+
+INSERT INTO public.spend_rollups (user_id, dimension, dimension_key, month, total, tx_count)
+SELECT t.user_id, 'DESCRIPTION', t.description_raw, public.rollup_month(t.booking_date),
+       SUM(public.signed_amount(t.amount, t.direction)), count(*)
+FROM public.transactions t
+WHERE t.description_raw IS NOT NULL
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
+
+INSERT INTO public.spend_rollups (user_id, dimension, dimension_key, month, total, tx_count)
+SELECT t.user_id, 'MERCHANT', t.merchant_id::text, public.rollup_month(t.booking_date),
+       SUM(public.signed_amount(t.amount, t.direction)), count(*)
+FROM public.transactions t
+WHERE t.merchant_id IS NOT NULL
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
+
+INSERT INTO public.spend_rollups (user_id, dimension, dimension_key, month, total, tx_count)
+SELECT t.user_id, 'CATEGORY', tc.category_id::text, public.rollup_month(t.booking_date),
+       SUM(public.signed_amount(t.amount, t.direction)), count(*)
+FROM public.transactions t
+JOIN public.transaction_categories tc ON tc.transaction_id = t.id
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,25 @@
+--
+-- Background sync jobs (fetch-all) started from the api and run by the sync
+-- service. The api only polls this state; it never waits on the provider.
+--
+
+CREATE TABLE IF NOT EXISTS public.sync_jobs (
+    id uuid NOT NULL,
+    user_id character varying(255) NOT NULL,
+    bank_account_id bigint NOT NULL,
+    kind character varying(32) NOT NULL,
+    status character varying(32) NOT NULL,
+    pages integer DEFAULT 0 NOT NULL,
+    inserted integer DEFAULT 0 NOT NULL,
+    updated integer DEFAULT 0 NOT NULL,
+    error text,
+    created_at timestamp with time zone DEFAULT now() NOT NULL,
+    started_at timestamp with time zone,
+    finished_at timestamp with time zone,
+    CONSTRAINT sync_jobs_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE public.sync_jobs OWNER TO henriquelobo;
+
+CREATE INDEX IF NOT EXISTS ix_sync_jobs_account_status
+    ON public.sync_jobs (bank_account_id, status);
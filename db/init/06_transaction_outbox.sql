@@ -0,0 +1,16 @@
+--
+-- Outbox for events the sync service publishes. Rows are written in the same
+-- transaction as the data they describe and removed by the relay once Kafka
+-- has acknowledged them.
+--
+
+CREATE TABLE IF NOT EXISTS public.event_outbox (
+    id bigint GENERATED ALWAYS AS IDENTITY,
+    topic character varying(255) NOT NULL,
+    message_key character varying(255),
+    payload bytea NOT NULL,
+    created_at timestamp with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT event_outbox_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE public.event_outbox OWNER TO henriquelobo;
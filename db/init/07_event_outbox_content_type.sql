@@ -0,0 +1,7 @@
+--
+-- Content type of each outbox payload, forwarded as the Kafka content-type
+-- header so consumers can tell protobuf events from legacy JSON ones.
+--
+
+ALTER TABLE public.event_outbox
+    ADD COLUMN IF NOT EXISTS content_type character varying(255);
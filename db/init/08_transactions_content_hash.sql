@@ -0,0 +1,9 @@
+--
+-- SHA-256 of the provider fields each transaction was last written with. The
+-- sync upsert skips rows whose hash is unchanged, so re-fetched overlap costs
+-- neither a row rewrite nor a downstream event. Existing rows start NULL and
+-- are hashed the next time they are fetched.
+--
+
+ALTER TABLE public.transactions
+    ADD COLUMN IF NOT EXISTS content_hash bytea;
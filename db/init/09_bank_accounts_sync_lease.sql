@@ -0,0 +1,14 @@
+--
+-- Work-queue columns for syncing accounts across several sync replicas.
+-- A replica owns an account while sync_lease_expires_at is in the future and
+-- keeps extending it while it works; a crashed replica's lease simply runs out.
+--
+
+ALTER TABLE public.bank_accounts
+    ADD COLUMN IF NOT EXISTS sync_lease_owner character varying(255),
+    ADD COLUMN IF NOT EXISTS sync_lease_expires_at timestamp with time zone,
+    ADD COLUMN IF NOT EXISTS last_sync_attempt_at timestamp with time zone;
+
+CREATE INDEX IF NOT EXISTS ix_bank_accounts_sync_due
+    ON public.bank_accounts (last_sync_attempt_at NULLS FIRST)
+    WHERE status = 'ACTIVE';
@@ -0,0 +1,16 @@
+--
+-- Per-account sync cadence. next_sync_at is derived after every attempt from the
+-- account's recent insert rate, the time of day and consecutive failures; the
+-- sync work queue runs accounts in next_sync_at order as they come due.
+--
+
+ALTER TABLE public.bank_accounts
+    ADD COLUMN IF NOT EXISTS next_sync_at timestamp with time zone,
+    ADD COLUMN IF NOT EXISTS sync_insert_rate double precision DEFAULT 0 NOT NULL,
+    ADD COLUMN IF NOT EXISTS sync_failures integer DEFAULT 0 NOT NULL;
+
+DROP INDEX IF EXISTS public.ix_bank_accounts_sync_due;
+
+CREATE INDEX IF NOT EXISTS ix_bank_accounts_next_sync
+    ON public.bank_accounts (next_sync_at NULLS FIRST)
+    WHERE status = 'ACTIVE';
@@ -0,0 +1,19 @@
+--
+-- Ledger of provider account-information accesses per provider account and UTC day.
+-- PSD2 lets an ASPSP cap unattended access (typically 4 per day per account);
+-- the enable-banking service refuses accesses locally once the budget is spent.
+-- One sync is one access: its first page is booked, its continuation pages are not.
+-- Provider account ids belong to one consent session, so this is also per session.
+--
+
+CREATE TABLE IF NOT EXISTS public.provider_quota_usage (
+    provider_account_id character varying(255) NOT NULL,
+    usage_date date NOT NULL,
+    daily_limit integer NOT NULL,
+    user_reserve integer NOT NULL,
+    scheduled_calls integer DEFAULT 0 NOT NULL,
+    user_calls integer DEFAULT 0 NOT NULL,
+    CONSTRAINT provider_quota_usage_pkey PRIMARY KEY (provider_account_id, usage_date)
+);
+
+ALTER TABLE public.provider_quota_usage OWNER TO henriquelobo;
@@ -0,0 +1,26 @@
+--
+-- Resumable sync state. A sync writes one row per date window it fetches (one for an
+-- incremental sync, one per shard for a backfill) and advances it in the same
+-- transaction as each page it stores, so after a crash or redeploy the next sync of the
+-- account picks up after the last committed page instead of starting over.
+-- Rows are removed once the whole sync has finished.
+--
+-- kind: 'INCREMENTAL' or 'BACKFILL'
+--
+
+CREATE TABLE IF NOT EXISTS public.sync_checkpoints (
+    bank_account_id bigint NOT NULL,
+    window_from date NOT NULL,
+    kind text NOT NULL,
+    window_to date NOT NULL,
+    continuation_key text,
+    pages_done integer DEFAULT 0 NOT NULL,
+    done boolean DEFAULT false NOT NULL,
+    started_at timestamp with time zone DEFAULT now() NOT NULL,
+    updated_at timestamp with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT sync_checkpoints_pkey PRIMARY KEY (bank_account_id, window_from),
+    CONSTRAINT sync_checkpoints_account_fkey FOREIGN KEY (bank_account_id)
+        REFERENCES public.bank_accounts(id) ON DELETE CASCADE
+);
+
+ALTER TABLE public.sync_checkpoints OWNER TO henriquelobo;
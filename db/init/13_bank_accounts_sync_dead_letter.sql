@@ -0,0 +1,21 @@
+--
+-- Failure tracking for account syncs. Every failed attempt records how it failed
+-- (TRANSIENT, AUTH_EXPIRED or PERMANENT) and the error; an account that keeps
+-- failing is dead-lettered and left out of the sync work queue until an operator
+-- requeues it or a user-initiated sync succeeds.
+--
+
+ALTER TABLE public.bank_accounts
+    ADD COLUMN IF NOT EXISTS sync_failure_class character varying(32),
+    ADD COLUMN IF NOT EXISTS sync_last_error text,
+    ADD COLUMN IF NOT EXISTS sync_dead_lettered_at timestamp with time zone;
+
+DROP INDEX IF EXISTS public.ix_bank_accounts_next_sync;
+
+CREATE INDEX IF NOT EXISTS ix_bank_accounts_next_sync
+    ON public.bank_accounts (next_sync_at NULLS FIRST)
+    WHERE status = 'ACTIVE' AND sync_dead_lettered_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS ix_bank_accounts_sync_dead_lettered
+    ON public.bank_accounts (sync_dead_lettered_at)
+    WHERE sync_dead_lettered_at IS NOT NULL;
@@ -0,0 +1,15 @@
+--
+-- Consent validity for the sync work queue. Accounts are linked to their consent
+-- session by (user_id, aspsp_name); the sync service only claims accounts with an
+-- AUTHORIZED session that has not run out, and a sweeper marks sessions past
+-- valid_until and their accounts EXPIRED. Re-linking the bank makes both
+-- AUTHORIZED/ACTIVE again.
+--
+
+CREATE INDEX IF NOT EXISTS ix_bank_sessions_user_aspsp_valid
+    ON public.bank_sessions (user_id, aspsp_name, valid_until)
+    WHERE status = 'AUTHORIZED';
+
+CREATE INDEX IF NOT EXISTS ix_bank_sessions_authorized_valid_until
+    ON public.bank_sessions (valid_until)
+    WHERE status = 'AUTHORIZED';
@@ -0,0 +1,45 @@
+--
+-- Replays of stored transactions as transactions.upserted events, e.g. after the
+-- categorization rules changed. A replay splits the matching id range into
+-- partitions streamed in parallel; each partition checkpoints the last id whose
+-- events Kafka acknowledged, so a failed or interrupted replay resumes there.
+--
+
+CREATE TABLE IF NOT EXISTS public.replay_jobs (
+    id uuid NOT NULL,
+    status character varying(32) NOT NULL,
+    topic character varying(255) NOT NULL,
+    user_id character varying(255),
+    bank_account_id bigint,
+    from_date date,
+    to_date date,
+    published bigint DEFAULT 0 NOT NULL,
+    error text,
+    created_at timestamp with time zone DEFAULT now() NOT NULL,
+    started_at timestamp with time zone,
+    finished_at timestamp with time zone,
+    updated_at timestamp with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT replay_jobs_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE public.replay_jobs OWNER TO henriquelobo;
+
+CREATE TABLE IF NOT EXISTS public.replay_job_partitions (
+    job_id uuid NOT NULL,
+    partition_no integer NOT NULL,
+    -- exclusive lower / inclusive upper bound of transactions.id
+    from_id bigint NOT NULL,
+    to_id bigint NOT NULL,
+    last_id bigint NOT NULL,
+    published bigint DEFAULT 0 NOT NULL,
+    done boolean DEFAULT false NOT NULL,
+    CONSTRAINT replay_job_partitions_pkey PRIMARY KEY (job_id, partition_no),
+    CONSTRAINT replay_job_partitions_job_fkey FOREIGN KEY (job_id)
+        REFERENCES public.replay_jobs (id) ON DELETE CASCADE
+);
+
+ALTER TABLE public.replay_job_partitions OWNER TO henriquelobo;
+
+-- replays filtered by user walk that user's rows in id order
+CREATE INDEX IF NOT EXISTS ix_transactions_user_id_id
+    ON public.transactions (user_id, id);
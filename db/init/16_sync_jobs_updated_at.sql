@@ -0,0 +1,7 @@
+--
+-- Last write to a fetch-all job. A QUEUED or RUNNING job not touched for a while
+-- is taken to have died with its replica, so a new fetch-all can replace it.
+--
+
+ALTER TABLE public.sync_jobs
+    ADD COLUMN IF NOT EXISTS updated_at timestamp with time zone DEFAULT now() NOT NULL;
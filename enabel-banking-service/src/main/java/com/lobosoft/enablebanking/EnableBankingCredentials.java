@@ -0,0 +1,130 @@
+package com.lobosoft.enablebanking;
+
+import com.lobosoft.enablebanking.EnableBankingJwtFactory.SignedJwt;
+import com.lobosoft.enablebanking.config.EnableBankingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the signed client token sent with every Enable Banking call. It is signed once and
+ * then read from an atomic reference, so requests no longer pay for an RS256 signature; a
+ * replacement is signed in the background {@code tokenRefreshAhead} before expiry.
+ */
+@Component
+@Slf4j
+public class EnableBankingCredentials {
+
+    // an iat this far in our future means the clock went back since signing
+    private static final Duration CLOCK_TOLERANCE = Duration.ofSeconds(30);
+
+    // never hand out a token that could expire while its request is in flight
+    private static final Duration EXPIRY_MARGIN = Duration.ofMinutes(1);
+
+    private static final Duration REFRESH_RETRY = Duration.ofMinutes(1);
+
+    private final EnableBankingJwtFactory jwtFactory;
+    private final EnableBankingProperties props;
+
+    private final AtomicReference<SignedJwt> current = new AtomicReference<>();
+    private final Disposable.Swap refresh = Disposables.swap();
+
+    private final Timer signTimer;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EnableBankingCredentials(EnableBankingJwtFactory jwtFactory,
+                                    EnableBankingProperties props,
+                                    MeterRegistry meterRegistry) {
+        // a token expiring within the refresh window would be re-signed as soon as it was signed, forever
+        if (props.getTokenRefreshAhead().isNegative()
+                || props.getTokenRefreshAhead().compareTo(props.getTokenTtl()) >= 0) {
+            throw new IllegalStateException("enablebanking.token-refresh-ahead (" + props.getTokenRefreshAhead()
+                    + ") must be shorter than enablebanking.token-ttl (" + props.getTokenTtl() + ")");
+        }
+        this.jwtFactory = jwtFactory;
+        this.props = props;
+        this.signTimer = Timer.builder("enablebanking.jwt.sign")
+                .description("Time spent signing the Enable Banking client token")
+                .register(meterRegistry);
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+    }
+
+    public String token() {
+        SignedJwt jwt = current.get();
+        if (jwt != null && usable(jwt, Instant.now())) {
+            hits.increment();
+            return jwt.token();
+        }
+        misses.increment();
+        return replace(jwt).token();
+    }
+
+    /**
+     * Called when the provider answered 401 to {@code rejected}: signs a new token unless
+     * another request already did.
+     */
+    public String tokenAfterRejection(String rejected) {
+        SignedJwt jwt = current.get();
+        if (jwt != null && !jwt.token().equals(rejected)) {
+            return jwt.token();
+        }
+        log.warn("[EB] Provider rejected the client token, signing a new one");
+        misses.increment();
+        return replace(jwt).token();
+    }
+
+    private boolean usable(SignedJwt jwt, Instant now) {
+        return !jwt.issuedAt().isAfter(now.plus(CLOCK_TOLERANCE))
+                && now.isBefore(jwt.expiresAt().minus(EXPIRY_MARGIN));
+    }
+
+    // swaps in a fresh token unless another caller replaced `expected` first, in which case theirs wins
+    private SignedJwt replace(SignedJwt expected) {
+        SignedJwt fresh = signTimer.record(jwtFactory::createToken);
+        if (current.compareAndSet(expected, fresh)) {
+            scheduleRefresh(fresh, Duration.between(Instant.now(),
+                    fresh.expiresAt().minus(props.getTokenRefreshAhead())));
+            return fresh;
+        }
+        return current.get();
+    }
+
+    private void scheduleRefresh(SignedJwt jwt, Duration delay) {
+        long millis = Math.max(0, delay.toMillis());
+        refresh.update(Schedulers.boundedElastic().schedule(() -> {
+            try {
+                replace(jwt);
+                log.debug("[EB] Client token re-signed ahead of expiry");
+            } catch (Exception e) {
+                // callers keep the current token until it is no longer usable, then sign in the foreground
+                log.error("[EB] Could not re-sign the client token, retrying in {}", REFRESH_RETRY, e);
+                scheduleRefresh(jwt, REFRESH_RETRY);
+            }
+        }, millis, TimeUnit.MILLISECONDS));
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("enablebanking.jwt.cache")
+                .description("Client token lookups served from the cache or needing a signature")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresh.dispose();
+    }
+}
@@ -6,7 +6,6 @@ import io.jsonwebtoken.Jwts;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 
@@ -18,10 +17,14 @@ public class EnableBankingJwtFactory {
     private final EnableBankingProperties props;
 
     public String createJwt() {
+        return createToken().token();
+    }
+
+    public SignedJwt createToken() {
         Instant now = Instant.now();
-        Instant exp = now.plus(Duration.ofDays(1));
+        Instant exp = now.plus(props.getTokenTtl());
 
-        return Jwts.builder()
+        String token = Jwts.builder()
                 .header()
                     .add("typ", "JWT")
                     .add("alg", "RS256")
@@ -38,5 +41,10 @@ public class EnableBankingJwtFactory {
 
                 .signWith(keyProvider.getPrivateKey(), Jwts.SIG.RS256)
                 .compact();
+
+        return new SignedJwt(token, now, exp);
+    }
+
+    public record SignedJwt(String token, Instant issuedAt, Instant expiresAt) {
     }
 }
@@ -1,17 +1,22 @@
 package com.lobosoft.enablebanking.api;
 
+import com.lobosoft.enablebanking.client.ProviderAccess;
+import com.lobosoft.enablebanking.client.ProviderQuotaExhaustedException;
 import com.lobosoft.enablebanking.dto.AspspDto;
 import com.lobosoft.enablebanking.dto.StartAuthResponse;
 import com.lobosoft.enablebanking.service.EnableBankingService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tools.jackson.databind.JsonNode;
 
@@ -88,7 +93,7 @@ public class EnableBankingController {
     }
 
     @GetMapping("/accounts/{providerAccountId}/transactions")
-    public Mono<@NonNull ResponseEntity<@NonNull JsonNode>> getAccountTransactions (
+    public ResponseEntity<Flux<@NonNull DataBuffer>> getAccountTransactions (
             @PathVariable String providerAccountId,
             @RequestParam(required = false) String from,
             @RequestParam(required = false) String to
@@ -96,8 +101,14 @@ public class EnableBankingController {
         log.info("GET /banking/accounts/{}/transactions from={} to={}",
                 providerAccountId, from, to);
 
-        return service.getAccountTransactions(providerAccountId, from, to)
-                .map(ResponseEntity::ok);
+        // the provider's page is passed through as-is, buffer by buffer; a refused call fails
+        // before the first buffer, while the status can still be changed
+        Flux<@NonNull DataBuffer> body = service.getAccountTransactions(providerAccountId, from, to, ProviderAccess.USER)
+                .onErrorMap(ProviderQuotaExhaustedException.class,
+                        e -> new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage()))
+                .onErrorMap(WebClientResponseException.TooManyRequests.class,
+                        e -> new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Provider is throttling, retry later"));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     private URI buildAppRedirectUri(
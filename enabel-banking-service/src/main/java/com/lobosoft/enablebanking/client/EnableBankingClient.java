@@ -1,25 +1,50 @@
 package com.lobosoft.enablebanking.client;
 
+import com.lobosoft.enablebanking.domain.Account;
+import com.lobosoft.enablebanking.domain.AccountRepository;
 import com.lobosoft.enablebanking.dto.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import tools.jackson.databind.JsonNode;
 
+import java.net.URI;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class EnableBankingClient {
 
+    private static final String UNKNOWN_ASPSP = "UNKNOWN";
+
+    // accounts whose ASPSP is remembered; beyond this many the least recently used go first
+    private static final int MAX_CACHED_ASPSPS = 10_000;
+
     private final WebClient enableBankingWebClient;
+    private final ProviderQuotaLedger quotaLedger;
+    private final AccountRepository accountRepository;
+
+    // an account's ASPSP never changes, so the lookup for the rate limiter is done once per account
+    // while it keeps syncing; in access order and guarded by itself
+    private final Map<String, String> aspspByAccount = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_ASPSPS;
+        }
+    };
 
     public Mono<@NonNull List<AspspDto>> getAspsps(String country) {
         return enableBankingWebClient.get()
@@ -53,34 +78,97 @@ public class EnableBankingClient {
                 .bodyToMono(JsonNode.class);
     }
 
-    public Mono<@NonNull JsonNode> getAccountTransactions(
+    // Account-information accesses below are booked against the account's daily quota first.
+    // Transaction pages are handed on as the provider's buffers, unjoined: callers parse them as they
+    // arrive or pass them through, so a page is never held in memory as a whole.
+
+    public Flux<@NonNull DataBuffer> getAccountTransactions(
             String providerAccountId,
             String dateFrom,
-            String dateTo
+            String dateTo,
+            ProviderAccess access
     ) {
-        return enableBankingWebClient.get()
-                .uri(uriBuilder -> uriBuilder
+        return quotaLedger.guardMany(providerAccountId, access, () -> transactionsBody(providerAccountId,
+                uriBuilder -> uriBuilder
                         .path("/accounts/{id}/transactions")
                         .queryParamIfPresent("date_from", Optional.ofNullable(dateFrom))
                         .queryParamIfPresent("date_to", Optional.ofNullable(dateTo))
-                        .build(providerAccountId))
-                .retrieve()
-                .bodyToMono(JsonNode.class);
+                        .build(providerAccountId)));
+    }
+
+    // a continuation page belongs to the access its first page booked
+    public Flux<@NonNull DataBuffer> getAccountTransactionsPage(
+            String providerAccountId,
+            String continuationKey
+    ) {
+        return transactionsPage(providerAccountId, continuationKey);
+    }
+
+    // a sync picking up a saved continuation key opens a new access, even though it starts mid-chain
+    public Flux<@NonNull DataBuffer> resumeAccountTransactions(
+            String providerAccountId,
+            String continuationKey,
+            ProviderAccess access
+    ) {
+        return quotaLedger.guardMany(providerAccountId, access,
+                () -> transactionsPage(providerAccountId, continuationKey));
+    }
+
+    private Flux<@NonNull DataBuffer> transactionsPage(String providerAccountId, String continuationKey) {
+        return transactionsBody(providerAccountId, uriBuilder -> uriBuilder
+                .path("/accounts/{id}/transactions")
+                .queryParam("continuation_key", continuationKey)
+                .build(providerAccountId));
+    }
+
+    private Flux<@NonNull DataBuffer> transactionsBody(String providerAccountId, Function<UriBuilder, URI> uri) {
+        return aspspOf(providerAccountId)
+                .flatMapMany(aspsp -> enableBankingWebClient.get()
+                        .uri(uri)
+                        .attribute(ProviderRateLimiter.ASPSP_ATTRIBUTE, aspsp)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class));
     }
 
     public Mono<@NonNull EnableBankingTransactionsResponse> fetchTransactions(
             String providerAccountId,
-            @Nullable String continuationKey
+            @Nullable String continuationKey,
+            ProviderAccess access
     ) {
-        return enableBankingWebClient.get()
-                .uri(uriBuilder ->
-                        uriBuilder
-                                .path("/accounts/{id}/transactions")
-                                .queryParamIfPresent("continuation_key", Optional.ofNullable(continuationKey))
-                                .build(providerAccountId)
-                )
-                .retrieve()
-                .bodyToMono(EnableBankingTransactionsResponse.class);
+        Mono<@NonNull EnableBankingTransactionsResponse> page = aspspOf(providerAccountId)
+                .flatMap(aspsp -> enableBankingWebClient.get()
+                        .uri(uriBuilder ->
+                                uriBuilder
+                                        .path("/accounts/{id}/transactions")
+                                        .queryParamIfPresent("continuation_key", Optional.ofNullable(continuationKey))
+                                        .build(providerAccountId)
+                        )
+                        .attribute(ProviderRateLimiter.ASPSP_ATTRIBUTE, aspsp)
+                        .retrieve()
+                        .bodyToMono(EnableBankingTransactionsResponse.class));
+        return continuationKey == null ? quotaLedger.guard(providerAccountId, access, () -> page) : page;
+    }
+
+    private Mono<@NonNull String> aspspOf(String providerAccountId) {
+        String cached;
+        synchronized (aspspByAccount) {
+            cached = aspspByAccount.get(providerAccountId);
+        }
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> accountRepository.findFirstByProviderAccountId(providerAccountId)
+                        .map(Account::getAspspName)
+                        .filter(name -> !name.isBlank())
+                        .map(name -> {
+                            synchronized (aspspByAccount) {
+                                aspspByAccount.put(providerAccountId, name);
+                            }
+                            return name;
+                        })
+                        // not remembered: the account row may not be stored yet
+                        .orElse(UNKNOWN_ASPSP))
+                .subscribeOn(Schedulers.boundedElastic());
     }
 
 }
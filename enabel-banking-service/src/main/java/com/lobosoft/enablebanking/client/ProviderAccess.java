@@ -0,0 +1,11 @@
+package com.lobosoft.enablebanking.client;
+
+/**
+ * Who a provider call is made for, which decides the share of the daily quota it may use.
+ */
+public enum ProviderAccess {
+    // unattended background sync
+    SCHEDULED,
+    // a sync the user explicitly asked for
+    USER
+}
@@ -0,0 +1,7 @@
+package com.lobosoft.enablebanking.client;
+
+public class ProviderQuotaExhaustedException extends RuntimeException {
+    public ProviderQuotaExhaustedException(String providerAccountId, ProviderAccess access) {
+        super("Daily provider quota exhausted for account " + providerAccountId + " (" + access + ")");
+    }
+}
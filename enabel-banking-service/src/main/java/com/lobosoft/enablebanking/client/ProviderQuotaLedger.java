@@ -0,0 +1,63 @@
+package com.lobosoft.enablebanking.client;
+
+import com.lobosoft.enablebanking.config.ProviderQuotaProperties;
+import com.lobosoft.enablebanking.domain.ProviderQuotaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Supplier;
+
+/**
+ * Books every account-information access against the account's daily PSD2 quota before it is
+ * sent, so accesses the ASPSP would reject are refused here instead of failing at the provider.
+ * An access is one sync of the account: its first page is booked, the continuation pages that
+ * follow belong to it and are not.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderQuotaLedger {
+
+    private final ProviderQuotaRepository repository;
+    private final ProviderQuotaProperties props;
+
+    public <T> Mono<T> guard(String providerAccountId, ProviderAccess access, Supplier<Mono<T>> call) {
+        return guardMany(providerAccountId, access, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    /**
+     * Like {@link #guard} for a call whose response is streamed, e.g. a transaction page read buffer by buffer.
+     */
+    public <T> Flux<T> guardMany(String providerAccountId, ProviderAccess access, Supplier<Flux<T>> call) {
+        if (!props.isEnabled()) {
+            return call.get();
+        }
+
+        boolean userCall = access == ProviderAccess.USER;
+        return Mono.fromCallable(() -> repository.tryConsume(
+                        providerAccountId, userCall, props.getDailyLimit(), props.getUserReserve()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(booked -> {
+                    if (!booked) {
+                        log.info("[EB] Quota exhausted for account={} ({}), not calling the provider",
+                                providerAccountId, access);
+                        return Flux.error(new ProviderQuotaExhaustedException(providerAccountId, access));
+                    }
+                    return call.get()
+                            .onErrorResume(WebClientResponseException.TooManyRequests.class, e -> {
+                                // a 429 left after the retry filter is throttling, not a spent quota: the
+                                // access did not happen, so it is handed back and the caller retries later
+                                log.warn("[EB] Provider kept rejecting account={} with 429, returning the booked access",
+                                        providerAccountId);
+                                return Mono.fromRunnable(() -> repository.refund(providerAccountId, userCall))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .then(Mono.<T>error(e));
+                            });
+                });
+    }
+}
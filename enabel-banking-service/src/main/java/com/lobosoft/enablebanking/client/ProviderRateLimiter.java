@@ -0,0 +1,76 @@
+package com.lobosoft.enablebanking.client;
+
+import com.lobosoft.enablebanking.config.ProviderTrafficProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paces requests to Enable Banking with a global token bucket and one per ASPSP. Requests
+ * over the rate are delayed on a timer rather than a thread, so a burst of parallel syncs
+ * queues up here instead of tripping provider throttling.
+ */
+@Component
+@Slf4j
+public class ProviderRateLimiter implements ExchangeFilterFunction {
+
+    /**
+     * Request attribute naming the ASPSP a call is for; requests without it only count globally.
+     */
+    public static final String ASPSP_ATTRIBUTE = ProviderRateLimiter.class.getName() + ".aspsp";
+
+    private final ProviderTrafficProperties props;
+    private final MeterRegistry meterRegistry;
+
+    private final TokenBucket global;
+    private final Map<String, TokenBucket> perAspsp = new ConcurrentHashMap<>();
+
+    public ProviderRateLimiter(ProviderTrafficProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.meterRegistry = meterRegistry;
+        this.global = new TokenBucket(props.getGlobalRate(), props.getGlobalBurst());
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            String aspsp = request.attribute(ASPSP_ATTRIBUTE).map(Object::toString).orElse(null);
+
+            Duration wait = global.reserve();
+            if (aspsp != null) {
+                Duration aspspWait = perAspsp
+                        .computeIfAbsent(aspsp, name -> new TokenBucket(props.rateFor(name), props.getPerAspspBurst()))
+                        .reserve();
+                if (aspspWait.compareTo(wait) > 0) {
+                    wait = aspspWait;
+                }
+            }
+
+            if (wait.isZero()) {
+                return next.exchange(request);
+            }
+
+            throttled(aspsp).increment();
+            log.debug("[EB] Delaying {} {} by {}ms (aspsp={})", request.method(), request.url().getPath(),
+                    wait.toMillis(), aspsp);
+            return Mono.delay(wait).then(next.exchange(request));
+        });
+    }
+
+    private Counter throttled(String aspsp) {
+        return Counter.builder("enablebanking.provider.throttled")
+                .description("Provider requests delayed by the local rate limiter")
+                .tag("aspsp", aspsp == null ? "none" : aspsp)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,124 @@
+package com.lobosoft.enablebanking.client;
+
+import com.lobosoft.enablebanking.config.ProviderTrafficProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries GETs that hit a 429, a 502/503/504 or a connection failure, waiting as long as
+ * the provider's {@code Retry-After} asks or, without one, a decorrelated-jitter backoff.
+ * Writes to the provider (authorisation, session creation) are never retried.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderRetryFilter implements ExchangeFilterFunction {
+
+    private final ProviderTrafficProperties props;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (request.method() != HttpMethod.GET) {
+            return next.exchange(request);
+        }
+        return attempt(request, next, 1, props.getBaseBackoff());
+    }
+
+    private Mono<ClientResponse> attempt(ClientRequest request, ExchangeFunction next, int attempt, Duration previous) {
+        boolean lastAttempt = attempt >= props.getMaxAttempts();
+
+        return Mono.defer(() -> next.exchange(request))
+                .flatMap(response -> {
+                    if (lastAttempt || !isRetryable(response.statusCode())) {
+                        return Mono.just(response);
+                    }
+
+                    Optional<Duration> retryAfter = retryAfter(response.headers().asHttpHeaders());
+                    if (retryAfter.isPresent() && retryAfter.get().compareTo(props.getMaxRetryAfter()) > 0) {
+                        return Mono.just(response);
+                    }
+
+                    Duration delay = retryAfter.orElseGet(() -> backoff(previous));
+                    String reason = String.valueOf(response.statusCode().value());
+                    return response.releaseBody()
+                            .then(retryLater(request, next, attempt, delay, reason));
+                })
+                .onErrorResume(WebClientRequestException.class, e -> {
+                    if (lastAttempt) {
+                        return Mono.error(e);
+                    }
+                    return retryLater(request, next, attempt, backoff(previous), "connection");
+                });
+    }
+
+    private Mono<ClientResponse> retryLater(ClientRequest request, ExchangeFunction next,
+                                            int attempt, Duration delay, String reason) {
+        retries(request, reason).increment();
+        log.warn("[EB] {} {} failed ({}), retry {} of {} in {}ms", request.method(), request.url().getPath(),
+                reason, attempt, props.getMaxAttempts() - 1, delay.toMillis());
+        return Mono.delay(delay).then(attempt(request, next, attempt + 1, delay));
+    }
+
+    private static boolean isRetryable(HttpStatusCode status) {
+        return status.value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || status.value() == HttpStatus.BAD_GATEWAY.value()
+                || status.value() == HttpStatus.SERVICE_UNAVAILABLE.value()
+                || status.value() == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+    // sleep = min(cap, random(base, previous * 3)), which spreads retries of callers that failed together
+    private Duration backoff(Duration previous) {
+        long base = props.getBaseBackoff().toMillis();
+        long upper = Math.max(base + 1, previous.toMillis() * 3);
+        long millis = ThreadLocalRandom.current().nextLong(base, upper);
+        return Duration.ofMillis(Math.min(millis, props.getMaxBackoff().toMillis()));
+    }
+
+    // Retry-After is either delta-seconds or an HTTP date
+    private static Optional<Duration> retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                Instant at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration until = Duration.between(Instant.now(), at);
+                return Optional.of(until.isNegative() ? Duration.ZERO : until);
+            } catch (Exception ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private Counter retries(ClientRequest request, String reason) {
+        return Counter.builder("enablebanking.provider.retries")
+                .description("Provider requests retried after a throttling response or transient failure")
+                .tag("aspsp", request.attribute(ProviderRateLimiter.ASPSP_ATTRIBUTE).map(Object::toString).orElse("none"))
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.lobosoft.enablebanking.client;
+
+import java.time.Duration;
+
+/**
+ * Token bucket that hands out reservations instead of blocking: a caller takes a token
+ * straight away and is told how long to wait before using it. Tokens may go negative,
+ * which queues callers in arrival order without holding a thread.
+ */
+class TokenBucket {
+
+    private final double ratePerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerNano = Math.max(ratePerSecond, 0.001) / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    synchronized Duration reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+        refilledAt = now;
+
+        tokens -= 1;
+        return tokens >= 0 ? Duration.ZERO : Duration.ofNanos((long) (-tokens / ratePerNano));
+    }
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "enablebanking")
@@ -13,4 +15,8 @@ public class EnableBankingProperties {
     private String redirectUrl;
     private String appId;
     private String audience;
+
+    // lifetime of the signed client token, and how long before expiry a replacement is signed
+    private Duration tokenTtl = Duration.ofDays(1);
+    private Duration tokenRefreshAhead = Duration.ofHours(1);
 }
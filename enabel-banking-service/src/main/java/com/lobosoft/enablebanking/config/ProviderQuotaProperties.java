@@ -0,0 +1,18 @@
+package com.lobosoft.enablebanking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "enablebanking.quota")
+public class ProviderQuotaProperties {
+    private boolean enabled = true;
+
+    // account-information accesses (syncs, not pages) the ASPSP allows per account and UTC day
+    private int dailyLimit = 4;
+
+    // accesses per day that scheduled syncs leave for user-initiated ones
+    private int userReserve = 1;
+}
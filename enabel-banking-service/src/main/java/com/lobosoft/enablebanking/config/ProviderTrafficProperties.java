@@ -0,0 +1,39 @@
+package com.lobosoft.enablebanking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "enablebanking.traffic")
+public class ProviderTrafficProperties {
+    // requests per second to Enable Banking across all ASPSPs, and how many may go out back to back
+    private double globalRate = 20;
+    private int globalBurst = 40;
+
+    // requests per second for the accounts of a single ASPSP
+    private double perAspspRate = 5;
+    private int perAspspBurst = 10;
+
+    // per-ASPSP overrides of perAspspRate, keyed by ASPSP name
+    private Map<String, Double> aspspRates = new HashMap<>();
+
+    // attempts per GET, the first one included; other methods are never retried
+    private int maxAttempts = 4;
+
+    // decorrelated jitter: each wait is random between baseBackoff and three times the previous one
+    private Duration baseBackoff = Duration.ofMillis(200);
+    private Duration maxBackoff = Duration.ofSeconds(10);
+
+    // a Retry-After longer than this is not waited out; the response goes back to the caller
+    private Duration maxRetryAfter = Duration.ofSeconds(30);
+
+    public double rateFor(String aspspName) {
+        return aspspRates.getOrDefault(aspspName, perAspspRate);
+    }
+}
@@ -1,46 +1,72 @@
 package com.lobosoft.enablebanking.config;
 
-import com.lobosoft.enablebanking.EnableBankingJwtFactory;
+import com.lobosoft.enablebanking.EnableBankingCredentials;
+import com.lobosoft.enablebanking.client.ProviderRateLimiter;
+import com.lobosoft.enablebanking.client.ProviderRetryFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 @Configuration
 @RequiredArgsConstructor
 public class WebClientConfig {
 
+    // largest provider body decoded in memory; transaction pages are parsed as they arrive
+    // and never held whole, so their size is not bounded here
+    private static final int MAX_IN_MEMORY_SIZE = 2 * 1024 * 1024; // 2MB
+
     private final EnableBankingProperties props;
-    private final EnableBankingJwtFactory jwtFactory;
+    private final EnableBankingCredentials credentials;
+    private final ProviderRetryFilter retryFilter;
+    private final ProviderRateLimiter rateLimiter;
 
     @Bean
     public WebClient enableBankingWebClient() {
         var strategies = ExchangeStrategies.builder()
                 .codecs(configurer -> configurer
                         .defaultCodecs()
-                        .maxInMemorySize(10 * 1024 * 1024) // 10MB
+                        // only small bodies (ASPSP lists, sessions) are decoded in memory;
+                        // transaction pages are read as raw buffers and stream-parsed
+                        .maxInMemorySize(MAX_IN_MEMORY_SIZE)
                 )
                 .build();
 
         return WebClient.builder()
                 .baseUrl(props.getBaseUrl())
                 .exchangeStrategies(strategies)
+                // outermost first: every retry is paced again and signed with a fresh token
+                .filter(retryFilter)
+                .filter(rateLimiter)
                 .filter(authorizationFilter())
                 .build();
     }
 
     private ExchangeFilterFunction authorizationFilter() {
         return (request, next) -> {
-            String jwt = jwtFactory.createJwt();
-
-            ClientRequest newRequest = ClientRequest.from(request)
-                    .headers(httpHeaders -> httpHeaders.setBearerAuth(jwt))
-                    .build();
+            String jwt = credentials.token();
 
-            return next.exchange(newRequest);
+            return next.exchange(withBearer(request, jwt))
+                    .flatMap(response -> {
+                        if (response.statusCode().value() != HttpStatus.UNAUTHORIZED.value()) {
+                            return Mono.just(response);
+                        }
+                        // e.g. our clock drifted since signing: try once more with a freshly signed token
+                        String fresh = credentials.tokenAfterRejection(jwt);
+                        return response.releaseBody()
+                                .then(next.exchange(withBearer(request, fresh)));
+                    });
         };
     }
+
+    private static ClientRequest withBearer(ClientRequest request, String jwt) {
+        return ClientRequest.from(request)
+                .headers(httpHeaders -> httpHeaders.setBearerAuth(jwt))
+                .build();
+    }
 }
@@ -25,6 +25,7 @@ public class Account {
     private String iban;
     private String name;
     private String status;
+    private String aspspName;
 
     private Instant createdAt;
     private Instant updatedAt;
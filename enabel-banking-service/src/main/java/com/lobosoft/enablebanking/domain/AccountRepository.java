@@ -11,4 +11,6 @@ public interface AccountRepository extends JpaRepository<@NonNull Account, @NonN
     Optional<Account> findByUserIdAndIban(String userId, String iban);
 
     Optional<Account> findByIdAndUserId(Long id, String userId);
+
+    Optional<Account> findFirstByProviderAccountId(String providerAccountId);
 }
@@ -0,0 +1,60 @@
+package com.lobosoft.enablebanking.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Atomic counters in {@code provider_quota_usage}. The day is taken from the database
+ * clock in UTC, so every replica books accesses against the same row.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProviderQuotaRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Books one access if the account still has budget for it today: user accesses may use the
+     * whole daily limit, scheduled ones stop {@code userReserve} short of it.
+     *
+     * @return whether the access was booked
+     */
+    public boolean tryConsume(String providerAccountId, boolean userCall, int dailyLimit, int userReserve) {
+        int scheduledLimit = dailyLimit - userReserve;
+        if (!userCall && scheduledLimit <= 0) {
+            return false;
+        }
+
+        return jdbcTemplate.update("""
+                        INSERT INTO provider_quota_usage AS q (
+                            provider_account_id, usage_date, daily_limit, user_reserve, scheduled_calls, user_calls
+                        ) VALUES (?, (now() AT TIME ZONE 'UTC')::date, ?, ?,
+                                  CASE WHEN ? THEN 0 ELSE 1 END,
+                                  CASE WHEN ? THEN 1 ELSE 0 END)
+                        ON CONFLICT (provider_account_id, usage_date) DO UPDATE
+                        SET scheduled_calls = q.scheduled_calls + EXCLUDED.scheduled_calls,
+                            user_calls      = q.user_calls + EXCLUDED.user_calls,
+                            daily_limit     = EXCLUDED.daily_limit,
+                            user_reserve    = EXCLUDED.user_reserve
+                        WHERE q.scheduled_calls + q.user_calls < CASE WHEN ? THEN ? ELSE ? END
+                        """,
+                providerAccountId, dailyLimit, userReserve,
+                userCall, userCall,
+                userCall, dailyLimit, scheduledLimit) == 1;
+    }
+
+    /**
+     * Hands back an access booked today that the provider turned away without serving it.
+     */
+    public void refund(String providerAccountId, boolean userCall) {
+        jdbcTemplate.update("""
+                        UPDATE provider_quota_usage
+                        SET scheduled_calls = CASE WHEN ? THEN scheduled_calls ELSE greatest(scheduled_calls - 1, 0) END,
+                            user_calls      = CASE WHEN ? THEN greatest(user_calls - 1, 0) ELSE user_calls END
+                        WHERE provider_account_id = ?
+                          AND usage_date = (now() AT TIME ZONE 'UTC')::date
+                        """,
+                userCall, userCall, providerAccountId);
+    }
+}
@@ -0,0 +1,171 @@
+package com.lobosoft.enablebanking.grpc;
+
+import com.lobosoft.enablebanking.client.ProviderAccess;
+import com.lobosoft.enablebanking.service.EnableBankingService;
+import io.grpc.Deadline;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import static com.lobosoft.enablebanking.grpc.ProviderTransactionMapper.emptyToNull;
+import static com.lobosoft.enablebanking.grpc.ProviderTransactionMapper.readPage;
+
+/**
+ * Drives one StreamAccountTransactions call: reads a provider page, writing each transaction as
+ * soon as it is parsed and only while the client is ready, and asks the provider for the next
+ * page once the previous one has been fully written. Parsing is pulled one event at a time, so a
+ * slow client leaves the rest of the page unread in the connection instead of buffered here.
+ */
+@Slf4j
+class AccountTransactionsStreamer {
+
+    private final EnableBankingService service;
+    private final ServerCallStreamObserver<AccountTransactionsEvent> observer;
+
+    private final String providerAccountId;
+    private final String fromDate;
+    private final String toDate;
+    private final ProviderAccess access;
+    private final Deadline deadline;
+
+    private String nextContinuationKey;
+    private boolean firstPage = true;
+    private boolean lastPageFetched;
+    private boolean done;
+    private int pages;
+    // the page being read, null between pages
+    private PageSubscriber page;
+
+    AccountTransactionsStreamer(
+            EnableBankingService service,
+            ServerCallStreamObserver<AccountTransactionsEvent> observer,
+            GetAccountTransactionsRequest request
+    ) {
+        this.service = service;
+        this.observer = observer;
+        this.providerAccountId = request.getProviderAccountId();
+        this.fromDate = emptyToNull(request.getFromDate());
+        this.toDate = emptyToNull(request.getToDate());
+        this.access = request.getUserInitiated() ? ProviderAccess.USER : ProviderAccess.SCHEDULED;
+        this.nextContinuationKey = emptyToNull(request.getContinuationKey());
+        this.deadline = GrpcDeadlines.current();
+    }
+
+    void start() {
+        observer.setOnCancelHandler(this::cancel);
+        observer.setOnReadyHandler(this::drain);
+        drain();
+    }
+
+    private synchronized void drain() {
+        if (done || !observer.isReady()) {
+            return;
+        }
+        if (page != null) {
+            page.requestNext();
+            return;
+        }
+        if (lastPageFetched) {
+            done = true;
+            log.info("[gRPC] Finished streaming {} page(s) for account={}", pages, providerAccountId);
+            observer.onCompleted();
+            return;
+        }
+        fetchNextPage();
+    }
+
+    private void fetchNextPage() {
+        // the stream's first request opens the access booked against the quota, also when it resumes
+        // from a saved key; the pages after it belong to that access
+        Flux<@NonNull DataBuffer> body;
+        if (firstPage && nextContinuationKey == null) {
+            body = service.getAccountTransactions(providerAccountId, fromDate, toDate, access);
+        } else if (firstPage) {
+            body = service.resumeAccountTransactions(providerAccountId, nextContinuationKey, access);
+        } else {
+            body = service.getAccountTransactionsPaged(providerAccountId, nextContinuationKey);
+        }
+        firstPage = false;
+
+        page = new PageSubscriber();
+        GrpcDeadlines.applyTo(readPage(body), deadline).subscribe(page);
+    }
+
+    private synchronized void onEvent(PageSubscriber from, AccountTransactionsEvent event) {
+        if (done || from != page) return;
+        from.requested = false;
+
+        if (event.hasPageEnd()) {
+            from.ended = true;
+            pages++;
+            nextContinuationKey = emptyToNull(event.getPageEnd().getContinuationKey());
+            log.info("[gRPC] Streamed page {} for account={} with {} transactions, continuationKey='{}'",
+                    pages, providerAccountId, event.getPageEnd().getTransactionCount(), nextContinuationKey);
+        }
+        observer.onNext(event);
+        from.requestNext();
+    }
+
+    // an empty body ends the page without a PageEnd: the provider had nothing more for us
+    private synchronized void onPageComplete(PageSubscriber from) {
+        if (done || from != page) return;
+        page = null;
+        lastPageFetched = !from.ended || nextContinuationKey == null;
+        drain();
+    }
+
+    private synchronized void onFailure(Throwable e) {
+        if (done) return;
+        done = true;
+        log.error("[gRPC] Error in StreamAccountTransactions for account={}", providerAccountId, e);
+        observer.onError(GrpcErrors.toStatus(e));
+    }
+
+    private synchronized void cancel() {
+        if (done) return;
+        done = true;
+        if (page != null) {
+            page.dispose();
+        }
+        log.info("[gRPC] StreamAccountTransactions cancelled by client for account={}", providerAccountId);
+    }
+
+    // pulls one event at a time, and only while the client can take it; guarded by the streamer's lock
+    private final class PageSubscriber extends BaseSubscriber<AccountTransactionsEvent> {
+        private boolean requested;
+        private boolean ended;
+
+        void requestNext() {
+            if (!requested && !isDisposed() && observer.isReady()) {
+                requested = true;
+                request(1);
+            }
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            synchronized (AccountTransactionsStreamer.this) {
+                requestNext();
+            }
+        }
+
+        @Override
+        protected void hookOnNext(AccountTransactionsEvent event) {
+            onEvent(this, event);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            onPageComplete(this);
+        }
+
+        @Override
+        protected void hookOnError(Throwable e) {
+            onFailure(e);
+        }
+    }
+}
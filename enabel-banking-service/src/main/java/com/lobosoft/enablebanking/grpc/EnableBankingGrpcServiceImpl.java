@@ -1,13 +1,22 @@
 package com.lobosoft.enablebanking.grpc;
 
+import com.lobosoft.enablebanking.client.ProviderAccess;
 import com.lobosoft.enablebanking.service.EnableBankingService;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
-import reactor.core.publisher.Mono;
-import tools.jackson.databind.JsonNode;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static com.lobosoft.enablebanking.grpc.ProviderTransactionMapper.emptyToNull;
+import static com.lobosoft.enablebanking.grpc.ProviderTransactionMapper.readPage;
 
 @GrpcService
 @RequiredArgsConstructor
@@ -29,114 +38,84 @@ public class EnableBankingGrpcServiceImpl extends EnableBankingGrpcServiceGrpc.E
         log.info("[gRPC] GetAccountTransactions for account={} from={} to={} continuationKey={}",
                 providerAccountId, from, to, continuationKeyFromSync);
 
-        try {
-            Mono<@NonNull JsonNode> mono;
-
-            if (continuationKeyFromSync != null) {
-                mono = service.getAccountTransactionsPaged(providerAccountId, continuationKeyFromSync);
-            } else {
-                mono = service.getAccountTransactions(providerAccountId, from, to);
-            }
-
-            JsonNode json = mono.block();
-            assert json != null;
-
-            JsonNode txArray = json.path("transactions");
-            String continuationKeyFromProvider = textOrNull(json, "continuation_key");
-
-            log.info("[gRPC] Provider returned {} transactions, continuationKey='{}'",
-                    txArray.isArray() ? txArray.size() : 0,
-                    continuationKeyFromProvider
-            );
-
-            GetAccountTransactionsResponse.Builder responseBuilder =
-                    GetAccountTransactionsResponse.newBuilder();
-
-            if (txArray.isArray()) {
-                for (JsonNode txNode : txArray) {
-                    responseBuilder.addTransactions(toProtoTransaction(txNode));
-                }
-            }
-
-            if (continuationKeyFromProvider != null && !continuationKeyFromProvider.isBlank()) {
-                responseBuilder.setContinuationKey(continuationKeyFromProvider);
-            }
-
-            GetAccountTransactionsResponse response = responseBuilder.build();
-
-            log.info("[gRPC] Sending gRPC response for account={} with {} transactions and continuationKey='{}'",
-                    providerAccountId,
-                    response.getTransactionsCount(),
-                    response.getContinuationKey()
-            );
-
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
+        ProviderAccess access = request.getUserInitiated() ? ProviderAccess.USER : ProviderAccess.SCHEDULED;
 
-        } catch (Exception e) {
-            log.error("[gRPC] Error in GetAccountTransactions", e);
-            responseObserver.onError(e);
+        Flux<@NonNull DataBuffer> body;
+        if (continuationKeyFromSync != null) {
+            body = service.getAccountTransactionsPaged(providerAccountId, continuationKeyFromSync);
+        } else {
+            body = service.getAccountTransactions(providerAccountId, from, to, access);
         }
-    }
 
-    private Transaction toProtoTransaction(JsonNode txNode) {
-        String transactionId = textOrNull(txNode, "transaction_id");
-        String entryRef = textOrNull(txNode, "entry_reference");
-
-        String providerTransactionId = transactionId != null && !transactionId.isBlank()
-                ? transactionId
-                : entryRef != null ? entryRef : "";
+        Disposable.Swap subscription = Disposables.swap();
+        if (responseObserver instanceof ServerCallStreamObserver<GetAccountTransactionsResponse> serverObserver) {
+            serverObserver.setOnCancelHandler(subscription::dispose);
+        }
 
-        JsonNode amountNode = txNode.path("transaction_amount");
-        String amount = textOrDefault(amountNode, "amount", "0.00");
-        String currency = textOrDefault(amountNode, "currency", "EUR");
+        // Completes the observer from the Reactor pipeline instead of blocking the gRPC executor
+        // thread, so in-flight provider calls are no longer bounded by the gRPC thread pool. The unary
+        // response carries the whole page, so its events are collected; the page's bytes never are.
+        subscription.update(GrpcDeadlines.applyTo(readPage(body).collectList(), GrpcDeadlines.current())
+                .filter(events -> !events.isEmpty())
+                .map(events -> toResponse(providerAccountId, events))
+                .defaultIfEmpty(GetAccountTransactionsResponse.getDefaultInstance())
+                .subscribe(
+                        response -> {
+                            responseObserver.onNext(response);
+                            responseObserver.onCompleted();
+                        },
+                        e -> {
+                            log.error("[gRPC] Error in GetAccountTransactions", e);
+                            responseObserver.onError(GrpcErrors.toStatus(e));
+                        }
+                ));
+    }
 
-        String creditDebit = textOrDefault(txNode, "credit_debit_indicator", "");
-        String direction;
-        if ("DBIT".equalsIgnoreCase(creditDebit)) {
-            direction = "DEBIT";
-        } else if ("CRDT".equalsIgnoreCase(creditDebit)) {
-            direction = "CREDIT";
-        } else {
-            direction = "";
+    // events are the page's transactions followed by its PageEnd
+    private GetAccountTransactionsResponse toResponse(String providerAccountId, List<AccountTransactionsEvent> events) {
+        GetAccountTransactionsResponse.Builder responseBuilder = GetAccountTransactionsResponse.newBuilder();
+        String continuationKeyFromProvider = null;
+        for (AccountTransactionsEvent event : events) {
+            if (event.hasTransaction()) {
+                responseBuilder.addTransactions(event.getTransaction());
+            } else if (event.hasPageEnd()) {
+                continuationKeyFromProvider = event.getPageEnd().getContinuationKey();
+            }
         }
 
-        String bookingDate = textOrDefault(txNode, "booking_date", "");
-        String valueDate   = textOrDefault(txNode, "value_date", "");
+        log.info("[gRPC] Provider returned {} transactions, continuationKey='{}'",
+                responseBuilder.getTransactionsCount(),
+                continuationKeyFromProvider
+        );
 
-        String description = "";
-        JsonNode remInfo = txNode.path("remittance_information");
-        if (remInfo.isArray() && !remInfo.isEmpty()) {
-            description = remInfo.get(0).asString("");
-        } else {
-            description = textOrDefault(txNode, "note", "");
+        if (continuationKeyFromProvider != null && !continuationKeyFromProvider.isBlank()) {
+            responseBuilder.setContinuationKey(continuationKeyFromProvider);
         }
 
-        return Transaction.newBuilder()
-                .setProviderTransactionId(providerTransactionId)
-                .setEntryReference(entryRef != null ? entryRef : "")
-                .setAmount(amount)
-                .setCurrency(currency)
-                .setDirection(direction)
-                .setBookingDate(bookingDate)
-                .setValueDate(valueDate)
-                .setDescription(description)
-                .setRawJson(txNode.toString())
-                .build();
-    }
+        GetAccountTransactionsResponse response = responseBuilder.build();
 
-    private String textOrNull(JsonNode node, String field) {
-        JsonNode v = node.get(field);
-        return (v == null || v.isNull()) ? null : v.asString();
-    }
+        log.info("[gRPC] Sending gRPC response for account={} with {} transactions and continuationKey='{}'",
+                providerAccountId,
+                response.getTransactionsCount(),
+                response.getContinuationKey()
+        );
 
-    private String textOrDefault(JsonNode node, String field, String def) {
-        String s = textOrNull(node, field);
-        return (s == null) ? def : s;
+        return response;
     }
 
-    private String emptyToNull(String s) {
-        return (s == null || s.isBlank()) ? null : s;
+    @Override
+    public void streamAccountTransactions(
+            GetAccountTransactionsRequest request,
+            StreamObserver<AccountTransactionsEvent> responseObserver
+    ) {
+        log.info("[gRPC] StreamAccountTransactions for account={} from={} to={} continuationKey={}",
+                request.getProviderAccountId(), request.getFromDate(), request.getToDate(),
+                request.getContinuationKey());
+
+        new AccountTransactionsStreamer(
+                service,
+                (ServerCallStreamObserver<AccountTransactionsEvent>) responseObserver,
+                request
+        ).start();
     }
-
 }
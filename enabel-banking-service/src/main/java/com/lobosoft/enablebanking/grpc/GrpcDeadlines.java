@@ -0,0 +1,74 @@
+package com.lobosoft.enablebanking.grpc;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Carries the caller's gRPC deadline into Reactor pipelines, so a provider call is abandoned
+ * (and its WebClient request cancelled) as soon as the client would stop waiting for it.
+ */
+final class GrpcDeadlines {
+
+    private GrpcDeadlines() {
+    }
+
+    /**
+     * Reads the deadline of the current gRPC call. Must be called on the handler thread,
+     * where the call's {@link Context} is attached.
+     */
+    static Deadline current() {
+        return Context.current().getDeadline();
+    }
+
+    static <T> Mono<T> applyTo(Mono<T> mono, Deadline deadline) {
+        if (deadline == null) {
+            return mono;
+        }
+
+        long remainingMillis = deadline.timeRemaining(TimeUnit.MILLISECONDS);
+        if (remainingMillis <= 0) {
+            return Mono.error(Status.DEADLINE_EXCEEDED
+                    .withDescription("Deadline expired before calling the provider")
+                    .asRuntimeException());
+        }
+
+        return mono
+                .timeout(Duration.ofMillis(remainingMillis))
+                .onErrorMap(TimeoutException.class, e -> Status.DEADLINE_EXCEEDED
+                        .withDescription("Provider call exceeded the caller's deadline")
+                        .withCause(e)
+                        .asRuntimeException());
+    }
+
+    /**
+     * Like {@link #applyTo(Mono, Deadline)} for a response read piece by piece: the deadline bounds
+     * the whole flux, not the wait for each element.
+     */
+    static <T> Flux<T> applyTo(Flux<T> flux, Deadline deadline) {
+        if (deadline == null) {
+            return flux;
+        }
+        if (deadline.isExpired()) {
+            return Flux.error(Status.DEADLINE_EXCEEDED
+                    .withDescription("Deadline expired before calling the provider")
+                    .asRuntimeException());
+        }
+
+        // re-subscribed after every element, always firing at the deadline itself
+        Mono<Long> expiry = Mono.defer(() ->
+                Mono.delay(Duration.ofMillis(Math.max(0, deadline.timeRemaining(TimeUnit.MILLISECONDS)))));
+        return flux
+                .timeout(expiry, element -> expiry)
+                .onErrorMap(TimeoutException.class, e -> Status.DEADLINE_EXCEEDED
+                        .withDescription("Provider call exceeded the caller's deadline")
+                        .withCause(e)
+                        .asRuntimeException());
+    }
+}
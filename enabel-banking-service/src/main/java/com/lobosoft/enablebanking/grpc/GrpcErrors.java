@@ -0,0 +1,61 @@
+package com.lobosoft.enablebanking.grpc;
+
+import com.lobosoft.enablebanking.client.ProviderQuotaExhaustedException;
+import io.grpc.Status;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Translates provider-side failures into gRPC statuses callers can act on: the status code says
+ * whether retrying can help, the description names the condition.
+ */
+final class GrpcErrors {
+
+    static final String PROVIDER_QUOTA_EXHAUSTED = "provider_quota_exhausted";
+    static final String PROVIDER_ACCESS_EXPIRED = "provider_access_expired";
+    static final String PROVIDER_REJECTED = "provider_rejected";
+    static final String PROVIDER_UNAVAILABLE = "provider_unavailable";
+
+    private GrpcErrors() {
+    }
+
+    static Throwable toStatus(Throwable e) {
+        if (e instanceof ProviderQuotaExhaustedException) {
+            return Status.RESOURCE_EXHAUSTED
+                    .withDescription(PROVIDER_QUOTA_EXHAUSTED)
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+        if (e instanceof WebClientResponseException response) {
+            return fromProviderResponse(response);
+        }
+        if (e instanceof WebClientRequestException) {
+            return Status.UNAVAILABLE
+                    .withDescription(PROVIDER_UNAVAILABLE)
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+        return e;
+    }
+
+    // the auth filter already retried a 401 with a fresh token, so what is left is the user's consent
+    private static Throwable fromProviderResponse(WebClientResponseException e) {
+        int code = e.getStatusCode().value();
+        if (code == 401 || code == 403 || (code == 422 && e.getResponseBodyAsString().contains("SESSION"))) {
+            return Status.PERMISSION_DENIED
+                    .withDescription(PROVIDER_ACCESS_EXPIRED)
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+        if (e.getStatusCode().is4xxClientError() && code != 408 && code != 429) {
+            return Status.FAILED_PRECONDITION
+                    .withDescription(PROVIDER_REJECTED + ": HTTP " + code)
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+        return Status.UNAVAILABLE
+                .withDescription(PROVIDER_UNAVAILABLE + ": HTTP " + code)
+                .withCause(e)
+                .asRuntimeException();
+    }
+}
@@ -0,0 +1,274 @@
+package com.lobosoft.enablebanking.grpc;
+
+import com.google.protobuf.ByteString;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.async.ByteArrayFeeder;
+import tools.jackson.core.json.JsonFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcodes an EnableBanking transactions page into the {@link AccountTransactionsEvent}s shared by
+ * the unary and streaming transaction RPCs. The page is fed buffer by buffer into a non-blocking
+ * parser and each transaction is emitted as soon as its closing brace arrives, so only the
+ * transaction being read is held, never the whole page. A transaction's {@code raw_json} is the
+ * slice of the original bytes it was read from.
+ */
+final class ProviderTransactionMapper {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ProviderTransactionMapper() {
+    }
+
+    /**
+     * Emits the page's transactions followed by one {@link PageEnd} carrying their count and the
+     * provider's continuation key. An empty body emits nothing.
+     */
+    static Flux<AccountTransactionsEvent> readPage(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            PageReader reader = new PageReader();
+            return body
+                    .concatMapIterable(buffer -> {
+                        try {
+                            return reader.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(reader.finish())))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doFinally(signal -> reader.close());
+        });
+    }
+
+    // Tracks where the parser is in the page: only the root object's "transactions" array and
+    // "continuation_key" matter, everything else is skipped token by token.
+    private static final class PageReader {
+        private final JsonParser parser = JSON.createNonBlockingByteArrayParser(ObjectReadContext.empty());
+        private final ByteArrayFeeder feeder = (ByteArrayFeeder) parser.nonBlockingInputFeeder();
+        // bytes from the start of the transaction being read up to the end of the last buffer
+        private final TransactionBytes transaction = new TransactionBytes();
+
+        private long fed;
+        private int depth;
+        private String field;
+        private boolean inTransactions;
+        private long transactionStart = -1;
+        private int count;
+        private String continuationKey;
+        private boolean ended;
+
+        List<AccountTransactionsEvent> feed(DataBuffer buffer) {
+            byte[] chunk = new byte[buffer.readableByteCount()];
+            buffer.read(chunk);
+
+            long chunkStart = fed;
+            fed += chunk.length;
+            // always fed from index 0, so token offsets count from the start of the page
+            feeder.feedInput(chunk, 0, chunk.length);
+            if (transactionStart >= 0) {
+                transaction.write(chunk, 0, chunk.length);
+            }
+            return drain(chunk, chunkStart);
+        }
+
+        List<AccountTransactionsEvent> finish() {
+            if (fed == 0) {
+                return List.of();
+            }
+            feeder.endOfInput();
+            List<AccountTransactionsEvent> events = drain(new byte[0], fed);
+            if (!ended) {
+                throw new IllegalStateException("Provider transactions page ended mid-document");
+            }
+
+            PageEnd.Builder pageEnd = PageEnd.newBuilder().setTransactionCount(count);
+            if (continuationKey != null) {
+                pageEnd.setContinuationKey(continuationKey);
+            }
+            events.add(AccountTransactionsEvent.newBuilder().setPageEnd(pageEnd).build());
+            return events;
+        }
+
+        // reads every token the input fed so far completes
+        private List<AccountTransactionsEvent> drain(byte[] chunk, long chunkStart) {
+            List<AccountTransactionsEvent> events = new ArrayList<>();
+            JsonToken t;
+            while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+                switch (t) {
+                    case START_OBJECT, START_ARRAY -> {
+                        if (depth == 1 && t == JsonToken.START_ARRAY && "transactions".equals(field)) {
+                            inTransactions = true;
+                        } else if (depth == 2 && t == JsonToken.START_OBJECT && inTransactions) {
+                            transactionStart = parser.currentTokenLocation().getByteOffset();
+                            int from = (int) (transactionStart - chunkStart);
+                            transaction.reset();
+                            transaction.write(chunk, from, chunk.length - from);
+                        }
+                        depth++;
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        depth--;
+                        if (depth == 2 && transactionStart >= 0) {
+                            long end = parser.currentTokenLocation().getByteOffset() + 1;
+                            Transaction tx = readTransaction(transaction.bytes(), (int) (end - transactionStart));
+                            events.add(AccountTransactionsEvent.newBuilder().setTransaction(tx).build());
+                            transactionStart = -1;
+                            count++;
+                        } else if (depth == 1) {
+                            inTransactions = false;
+                        }
+                        ended = depth == 0;
+                    }
+                    case PROPERTY_NAME -> {
+                        if (depth == 1) {
+                            field = parser.currentName();
+                        }
+                    }
+                    default -> {
+                        if (depth == 1 && "continuation_key".equals(field)) {
+                            continuationKey = t == JsonToken.VALUE_NULL ? null : parser.getString();
+                        }
+                        // a page that is not an object has no transactions
+                        ended = depth == 0;
+                    }
+                }
+            }
+            return events;
+        }
+
+        void close() {
+            parser.close();
+        }
+    }
+
+    private static final class TransactionBytes extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    // parses one complete transaction object, the first length bytes of json
+    private static Transaction readTransaction(byte[] json, int length) {
+        try (JsonParser p = JSON.createParser(ObjectReadContext.empty(), json, 0, length)) {
+            p.nextToken();
+            return readTransaction(p, ByteString.copyFrom(json, 0, length));
+        }
+    }
+
+    // expects the parser on the transaction's START_OBJECT and leaves it on the matching END_OBJECT
+    private static Transaction readTransaction(JsonParser p, ByteString rawJson) {
+
+        String transactionId = null;
+        String entryRef = null;
+        String amount = null;
+        String currency = null;
+        String creditDebit = null;
+        String bookingDate = null;
+        String valueDate = null;
+        String remittance = null;
+        boolean hasRemittance = false;
+        String note = null;
+
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            switch (name) {
+                case "transaction_id" -> transactionId = scalar(p);
+                case "entry_reference" -> entryRef = scalar(p);
+                case "credit_debit_indicator" -> creditDebit = scalar(p);
+                case "booking_date" -> bookingDate = scalar(p);
+                case "value_date" -> valueDate = scalar(p);
+                case "note" -> note = scalar(p);
+                case "transaction_amount" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+                        String field = p.currentName();
+                        p.nextToken();
+                        if ("amount".equals(field)) {
+                            amount = scalar(p);
+                        } else if ("currency".equals(field)) {
+                            currency = scalar(p);
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                }
+                case "remittance_information" -> {
+                    if (p.currentToken() != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        break;
+                    }
+                    // only the first line is used as the description
+                    if (p.nextToken() != JsonToken.END_ARRAY) {
+                        hasRemittance = true;
+                        remittance = scalar(p);
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        String providerTransactionId = transactionId != null && !transactionId.isBlank()
+                ? transactionId
+                : entryRef != null ? entryRef : "";
+
+        String direction;
+        if ("DBIT".equalsIgnoreCase(creditDebit)) {
+            direction = "DEBIT";
+        } else if ("CRDT".equalsIgnoreCase(creditDebit)) {
+            direction = "CREDIT";
+        } else {
+            direction = "";
+        }
+
+        String description = hasRemittance ? orEmpty(remittance) : orEmpty(note);
+
+        return Transaction.newBuilder()
+                .setProviderTransactionId(providerTransactionId)
+                .setEntryReference(orEmpty(entryRef))
+                .setAmount(amount != null ? amount : "0.00")
+                .setCurrency(currency != null ? currency : "EUR")
+                .setDirection(direction)
+                .setBookingDate(orEmpty(bookingDate))
+                .setValueDate(orEmpty(valueDate))
+                .setDescription(description)
+                .setRawJsonBytes(rawJson)
+                .build();
+    }
+
+    // text of a scalar value, null for JSON null; objects and arrays are skipped and read as null
+    private static String scalar(JsonParser p) {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (t.isScalarValue()) {
+            return p.getString();
+        }
+        p.skipChildren();
+        return null;
+    }
+
+    private static String orEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    static String emptyToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s;
+    }
+}
@@ -1,6 +1,7 @@
 package com.lobosoft.enablebanking.service;
 
 import com.lobosoft.enablebanking.client.EnableBankingClient;
+import com.lobosoft.enablebanking.client.ProviderAccess;
 import com.lobosoft.enablebanking.config.EnableBankingProperties;
 import com.lobosoft.enablebanking.domain.Account;
 import com.lobosoft.enablebanking.domain.AccountRepository;
@@ -10,9 +11,10 @@ import com.lobosoft.enablebanking.dto.*;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import tools.jackson.databind.JsonNode;
@@ -34,8 +36,6 @@ public class EnableBankingService {
     private final EnableBankingProperties props;
     private final ObjectMapper objectMapper;
 
-    private final WebClient enableBankingWebClient;
-
     private final BankSessionRepository bankSessionRepository;
     private final AccountRepository accountRepository;
 
@@ -252,6 +252,7 @@ public class EnableBankingService {
             account.setIdentificationHash(identificationHash);
             account.setIban(iban);
             account.setName(name);
+            account.setAspspName(session.getAspspName());
             account.setStatus("ACTIVE");
 
             try {
@@ -269,28 +270,31 @@ public class EnableBankingService {
     // Transactions passthrough
     // ----------------------------------------------------
 
-    public Mono<@NonNull JsonNode> getAccountTransactions(
+    // pages are returned as the provider's JSON buffers, see ProviderTransactionMapper for the decoding
+
+    public Flux<@NonNull DataBuffer> getAccountTransactions(
             String providerAccountId,
             String dateFrom,
-            String dateTo
+            String dateTo,
+            ProviderAccess access
     ) {
-        return client.getAccountTransactions(providerAccountId, dateFrom, dateTo)
-                .doOnNext(json -> {
-                    int count = json.path("transactions").size();
-                    log.info("Fetched {} transactions for providerAccountId={}", count, providerAccountId);
-                });
+        return client.getAccountTransactions(providerAccountId, dateFrom, dateTo, access)
+                .doOnComplete(() -> log.info("Fetched transactions page for providerAccountId={}", providerAccountId));
     }
 
-    public Mono<JsonNode> getAccountTransactionsPaged(String providerAccountId, String continuationKey) {
-        return enableBankingWebClient.get()
-                .uri(uriBuilder ->
-                        uriBuilder
-                                .path("/accounts/{id}/transactions")
-                                .queryParam("continuation_key", continuationKey)
-                                .build(providerAccountId)
-                )
-                .retrieve()
-                .bodyToMono(JsonNode.class);
+    public Flux<@NonNull DataBuffer> getAccountTransactionsPaged(
+            String providerAccountId,
+            String continuationKey
+    ) {
+        return client.getAccountTransactionsPage(providerAccountId, continuationKey);
+    }
+
+    public Flux<@NonNull DataBuffer> resumeAccountTransactions(
+            String providerAccountId,
+            String continuationKey,
+            ProviderAccess access
+    ) {
+        return client.resumeAccountTransactions(providerAccountId, continuationKey, access);
     }
 
     @Transactional
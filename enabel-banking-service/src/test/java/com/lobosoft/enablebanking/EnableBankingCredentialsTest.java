@@ -0,0 +1,93 @@
+package com.lobosoft.enablebanking;
+
+import com.lobosoft.enablebanking.EnableBankingJwtFactory.SignedJwt;
+import com.lobosoft.enablebanking.config.EnableBankingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EnableBankingCredentialsTest {
+
+    @Mock
+    private EnableBankingJwtFactory jwtFactory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EnableBankingCredentials credentials;
+
+    @BeforeEach
+    void setUp() {
+        credentials = new EnableBankingCredentials(jwtFactory, new EnableBankingProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        credentials.shutdown();
+    }
+
+    @Test
+    void token_signsOnceAndServesFromCache() {
+        when(jwtFactory.createToken()).thenReturn(jwt("a", Duration.ofDays(1)));
+
+        assertThat(credentials.token()).isEqualTo("a");
+        assertThat(credentials.token()).isEqualTo("a");
+        assertThat(credentials.token()).isEqualTo("a");
+
+        verify(jwtFactory, times(1)).createToken();
+        assertThat(meterRegistry.counter("enablebanking.jwt.cache", "result", "hit").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("enablebanking.jwt.cache", "result", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    void token_resignsWhenCachedTokenIsAboutToExpire() {
+        when(jwtFactory.createToken())
+                .thenReturn(jwt("short", Duration.ofSeconds(10)))
+                .thenReturn(jwt("long", Duration.ofDays(1)));
+
+        assertThat(credentials.token()).isEqualTo("short");
+        assertThat(credentials.token()).isEqualTo("long");
+    }
+
+    @Test
+    void tokenAfterRejection_resignsOnlyForTheRejectedToken() {
+        when(jwtFactory.createToken())
+                .thenReturn(jwt("a", Duration.ofDays(1)))
+                .thenReturn(jwt("b", Duration.ofDays(1)));
+
+        String first = credentials.token();
+
+        assertThat(credentials.tokenAfterRejection(first)).isEqualTo("b");
+        // a second request that was rejected with the old token reuses the replacement
+        assertThat(credentials.tokenAfterRejection(first)).isEqualTo("b");
+        verify(jwtFactory, times(2)).createToken();
+    }
+
+    @Test
+    void constructor_rejectsRefreshAheadNotShorterThanTtl() {
+        EnableBankingProperties props = new EnableBankingProperties();
+        props.setTokenTtl(Duration.ofHours(1));
+        props.setTokenRefreshAhead(Duration.ofHours(1));
+
+        assertThatThrownBy(() -> new EnableBankingCredentials(jwtFactory, props, meterRegistry))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("token-refresh-ahead");
+    }
+
+    private static SignedJwt jwt(String token, Duration ttl) {
+        Instant now = Instant.now();
+        return new SignedJwt(token, now, now.plus(ttl));
+    }
+}
@@ -0,0 +1,101 @@
+package com.lobosoft.enablebanking.client;
+
+import com.lobosoft.enablebanking.config.ProviderTrafficProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderRetryFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProviderTrafficProperties props;
+    private ProviderRetryFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        props = new ProviderTrafficProperties();
+        props.setBaseBackoff(Duration.ofMillis(1));
+        props.setMaxBackoff(Duration.ofMillis(5));
+        filter = new ProviderRetryFilter(props, meterRegistry);
+    }
+
+    @Test
+    void retriesTransientFailuresUntilSuccess() {
+        Deque<HttpStatus> statuses = new ArrayDeque<>(List.of(
+                HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.TOO_MANY_REQUESTS, HttpStatus.OK));
+        AtomicInteger calls = new AtomicInteger();
+
+        ClientResponse response = filter.filter(get(), request -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(statuses.poll()).build());
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.find("enablebanking.provider.retries").counters())
+                .extracting(c -> c.getId().getTag("reason"))
+                .containsExactlyInAnyOrder("503", "429");
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        props.setMaxAttempts(2);
+        AtomicInteger calls = new AtomicInteger();
+
+        ClientResponse response = filter.filter(get(), request -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build());
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void returnsResponseWhenRetryAfterIsTooLong() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ClientResponse response = filter.filter(get(), request -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "3600")
+                    .build());
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void neverRetriesWrites() {
+        AtomicInteger calls = new AtomicInteger();
+        ClientRequest post = ClientRequest.create(HttpMethod.POST, URI.create("https://eb.test/sessions")).build();
+
+        ClientResponse response = filter.filter(post, request -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(calls).hasValue(1);
+    }
+
+    private static ClientRequest get() {
+        return ClientRequest.create(HttpMethod.GET, URI.create("https://eb.test/accounts/acc-1/transactions")).build();
+    }
+}
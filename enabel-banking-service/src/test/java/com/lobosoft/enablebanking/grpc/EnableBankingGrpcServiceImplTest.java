@@ -1,17 +1,31 @@
 package com.lobosoft.enablebanking.grpc;
 
+import com.lobosoft.enablebanking.client.ProviderAccess;
+import com.lobosoft.enablebanking.client.ProviderQuotaExhaustedException;
 import com.lobosoft.enablebanking.service.EnableBankingService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import reactor.core.publisher.Mono;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,8 +53,8 @@ class EnableBankingGrpcServiceImplTest {
         tx.put("note", "Coffee");
         json.put("continuation_key", "ck-123");
 
-        when(service.getAccountTransactions("acc-1", "2024-01-01", "2024-01-31"))
-                .thenReturn(Mono.just(json));
+        when(service.getAccountTransactions("acc-1", "2024-01-01", "2024-01-31", ProviderAccess.SCHEDULED))
+                .thenReturn(Flux.just(buffer(mapper.writeValueAsBytes(json))));
 
         GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
                 .setProviderAccountId("acc-1")
@@ -61,6 +75,248 @@ class EnableBankingGrpcServiceImplTest {
         assertThat(observer.response.getContinuationKey()).isEqualTo("ck-123");
     }
 
+    @Test
+    void getAccountTransactions_doesNotHoldCallerThreadWhileProviderIsPending() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        Sinks.One<byte[]> providerResponse = Sinks.one();
+        when(service.getAccountTransactions("acc-1", null, null, ProviderAccess.SCHEDULED))
+                .thenReturn(providerResponse.asMono().map(this::buffer).flux());
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .build();
+
+        // every call returns straight away on this single thread while the provider is still pending
+        List<CapturingObserver> observers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            CapturingObserver observer = new CapturingObserver();
+            grpc.getAccountTransactions(request, observer);
+            observers.add(observer);
+        }
+        assertThat(observers).allSatisfy(o -> assertThat(o.response).isNull());
+
+        providerResponse.tryEmitValue(page("t-1", null));
+
+        assertThat(observers).allSatisfy(o -> {
+            assertThat(o.error).isNull();
+            assertThat(o.response.getTransactionsCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void streamAccountTransactions_followsContinuationKeysAcrossPages() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        // pages arrive after the call returns, as they do from the provider
+        Sinks.One<byte[]> firstPage = Sinks.one();
+        Sinks.One<byte[]> secondPage = Sinks.one();
+        when(service.getAccountTransactions("acc-1", "2024-01-01", "2024-01-31", ProviderAccess.SCHEDULED))
+                .thenReturn(firstPage.asMono().map(this::buffer).flux());
+        when(service.getAccountTransactionsPaged("acc-1", "ck-1"))
+                .thenReturn(secondPage.asMono().map(this::buffer).flux());
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .setFromDate("2024-01-01")
+                .setToDate("2024-01-31")
+                .build();
+
+        StreamingObserver observer = new StreamingObserver(true);
+        grpc.streamAccountTransactions(request, observer);
+
+        firstPage.tryEmitValue(page("t-1", "ck-1"));
+        assertThat(observer.completed).isFalse();
+        assertThat(observer.events).hasSize(2);
+
+        secondPage.tryEmitValue(page("t-2", null));
+
+        assertThat(observer.error).isNull();
+        assertThat(observer.completed).isTrue();
+        assertThat(observer.events).hasSize(4);
+        assertThat(observer.events.get(0).getTransaction().getProviderTransactionId()).isEqualTo("t-1");
+        assertThat(observer.events.get(1).getPageEnd().getContinuationKey()).isEqualTo("ck-1");
+        assertThat(observer.events.get(1).getPageEnd().getTransactionCount()).isEqualTo(1);
+        assertThat(observer.events.get(2).getTransaction().getProviderTransactionId()).isEqualTo("t-2");
+        assertThat(observer.events.get(3).getPageEnd().getContinuationKey()).isEmpty();
+    }
+
+    @Test
+    void streamAccountTransactions_resumedFromSavedKeyOpensABookedAccess() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        when(service.resumeAccountTransactions("acc-1", "ck-1", ProviderAccess.SCHEDULED))
+                .thenReturn(Flux.just(buffer(page("t-2", "ck-2"))));
+        when(service.getAccountTransactionsPaged("acc-1", "ck-2"))
+                .thenReturn(Flux.just(buffer(page("t-3", null))));
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .setContinuationKey("ck-1")
+                .build();
+
+        StreamingObserver observer = new StreamingObserver(true);
+        grpc.streamAccountTransactions(request, observer);
+
+        assertThat(observer.error).isNull();
+        assertThat(observer.completed).isTrue();
+        assertThat(observer.events).hasSize(4);
+        assertThat(observer.events.get(2).getTransaction().getProviderTransactionId()).isEqualTo("t-3");
+    }
+
+    @Test
+    void streamAccountTransactions_waitsForClientReadinessBeforeFetching() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        when(service.getAccountTransactions("acc-1", null, null, ProviderAccess.SCHEDULED))
+                .thenReturn(Flux.just(buffer(page("t-1", null))));
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .build();
+
+        StreamingObserver observer = new StreamingObserver(false);
+        grpc.streamAccountTransactions(request, observer);
+
+        assertThat(observer.events).isEmpty();
+        verifyNoInteractions(service);
+
+        observer.becomeReady();
+
+        assertThat(observer.completed).isTrue();
+        assertThat(observer.events).hasSize(2);
+    }
+
+    @Test
+    void getAccountTransactions_reportsExhaustedQuotaAsResourceExhausted() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        when(service.getAccountTransactions("acc-1", null, null, ProviderAccess.USER))
+                .thenReturn(Flux.error(new ProviderQuotaExhaustedException("acc-1", ProviderAccess.USER)));
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .setUserInitiated(true)
+                .build();
+
+        CapturingObserver observer = new CapturingObserver();
+        grpc.getAccountTransactions(request, observer);
+
+        assertThat(observer.response).isNull();
+        Status status = Status.fromThrowable(observer.error);
+        assertThat(status.getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(status.getDescription()).isEqualTo(GrpcErrors.PROVIDER_QUOTA_EXHAUSTED);
+    }
+
+    @Test
+    void getAccountTransactions_reportsRevokedConsentAsPermissionDenied() {
+        EnableBankingGrpcServiceImpl grpc = new EnableBankingGrpcServiceImpl(service);
+
+        when(service.getAccountTransactions("acc-1", null, null, ProviderAccess.SCHEDULED))
+                .thenReturn(Flux.error(WebClientResponseException.create(
+                        HttpStatus.FORBIDDEN.value(), "Forbidden", HttpHeaders.EMPTY, new byte[0], null)));
+
+        GetAccountTransactionsRequest request = GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId("acc-1")
+                .build();
+
+        CapturingObserver observer = new CapturingObserver();
+        grpc.getAccountTransactions(request, observer);
+
+        Status status = Status.fromThrowable(observer.error);
+        assertThat(status.getCode()).isEqualTo(Status.Code.PERMISSION_DENIED);
+        assertThat(status.getDescription()).isEqualTo(GrpcErrors.PROVIDER_ACCESS_EXPIRED);
+    }
+
+    private byte[] page(String transactionId, String continuationKey) {
+        ObjectNode json = mapper.createObjectNode();
+        ObjectNode tx = json.putArray("transactions").addObject();
+        tx.put("transaction_id", transactionId);
+        tx.putObject("transaction_amount").put("amount", "1.00").put("currency", "EUR");
+        tx.put("credit_debit_indicator", "CRDT");
+        if (continuationKey != null) {
+            json.put("continuation_key", continuationKey);
+        }
+        return mapper.writeValueAsBytes(json);
+    }
+
+    // a fresh buffer per subscriber, as the reader consumes it
+    private DataBuffer buffer(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+    private static class StreamingObserver extends ServerCallStreamObserver<AccountTransactionsEvent> {
+        final List<AccountTransactionsEvent> events = new ArrayList<>();
+        Throwable error;
+        boolean completed;
+        boolean ready;
+        Runnable onReadyHandler;
+
+        StreamingObserver(boolean ready) {
+            this.ready = ready;
+        }
+
+        void becomeReady() {
+            ready = true;
+            onReadyHandler.run();
+        }
+
+        @Override
+        public void onNext(AccountTransactionsEvent value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            this.error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            this.completed = true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            // no-op
+        }
+
+        @Override
+        public void setCompression(String compression) {
+            // no-op
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+            // no-op
+        }
+
+        @Override
+        public void request(int count) {
+            // no-op
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+            // no-op
+        }
+    }
+
     private static class CapturingObserver implements StreamObserver<GetAccountTransactionsResponse> {
         GetAccountTransactionsResponse response;
         Throwable error;
@@ -0,0 +1,123 @@
+package com.lobosoft.enablebanking.grpc;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProviderTransactionMapperTest {
+
+    private static final String FIRST = """
+            {"transaction_id": "t-1", "entry_reference": "er-1",
+             "transaction_amount": {"amount": "10.50", "currency": "EUR"},
+             "credit_debit_indicator": "DBIT", "booking_date": "2024-01-01",
+             "remittance_information": ["Café Lisboa", "second line"],
+             "extra": {"nested": [1, 2, {"deep": true}]}, "note": "ignored"}""";
+    private static final String SECOND = """
+            {"transaction_id": null, "entry_reference": "er-2",
+             "transaction_amount": {"amount": 3}, "credit_debit_indicator": "CRDT", "note": "Refund"}""";
+    private static final String PAGE = "{\"booked\": 2, \"transactions\": [" + FIRST + ", " + SECOND + "],"
+            + " \"continuation_key\": \"ck-1\", \"links\": {\"transactions\": [{\"href\": \"x\"}]}}";
+
+    @Test
+    void readPage_mapsFieldsAndSlicesOriginalBytes() {
+        List<AccountTransactionsEvent> events = read(PAGE.getBytes(StandardCharsets.UTF_8).length);
+
+        assertPage(events);
+    }
+
+    @Test
+    void readPage_pageSplitAcrossBuffers() {
+        // splits land inside keys, strings, numbers and the two-byte "é"
+        for (int size : new int[]{1, 2, 7, 64}) {
+            assertPage(read(size));
+        }
+    }
+
+    @Test
+    void readPage_emitsTransactionsBeforeThePageEnds() {
+        byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+        int firstEnd = PAGE.substring(0, PAGE.indexOf(FIRST) + FIRST.length()).getBytes(StandardCharsets.UTF_8).length;
+
+        List<AccountTransactionsEvent> seen = new ArrayList<>();
+        Flux<DataBuffer> head = Flux.just(wrap(Arrays.copyOfRange(bytes, 0, firstEnd)));
+        ProviderTransactionMapper.readPage(head.concatWith(Flux.never()))
+                .subscribe(seen::add);
+
+        assertThat(seen).hasSize(1);
+        assertThat(seen.getFirst().getTransaction().getRawJson()).isEqualTo(FIRST);
+    }
+
+    @Test
+    void readPage_withoutTransactionsOrKey() {
+        List<AccountTransactionsEvent> events = ProviderTransactionMapper
+                .readPage(Flux.just(wrap("{\"transactions\": []}".getBytes(StandardCharsets.UTF_8))))
+                .collectList()
+                .block();
+
+        assertThat(events).hasSize(1);
+        assertThat(events.getFirst().getPageEnd().getTransactionCount()).isZero();
+        assertThat(events.getFirst().getPageEnd().getContinuationKey()).isEmpty();
+    }
+
+    @Test
+    void readPage_emptyBodyHasNoPage() {
+        assertThat(ProviderTransactionMapper.readPage(Flux.empty()).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void readPage_truncatedPageFails() {
+        byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+        Flux<DataBuffer> truncated = Flux.just(wrap(Arrays.copyOf(bytes, bytes.length / 2)));
+
+        assertThatThrownBy(() -> ProviderTransactionMapper.readPage(truncated).collectList().block())
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    private static void assertPage(List<AccountTransactionsEvent> events) {
+        assertThat(events).hasSize(3);
+
+        Transaction t1 = events.get(0).getTransaction();
+        assertThat(t1.getProviderTransactionId()).isEqualTo("t-1");
+        assertThat(t1.getEntryReference()).isEqualTo("er-1");
+        assertThat(t1.getAmount()).isEqualTo("10.50");
+        assertThat(t1.getCurrency()).isEqualTo("EUR");
+        assertThat(t1.getDirection()).isEqualTo("DEBIT");
+        assertThat(t1.getBookingDate()).isEqualTo("2024-01-01");
+        assertThat(t1.getDescription()).isEqualTo("Café Lisboa");
+        assertThat(t1.getRawJson()).isEqualTo(FIRST);
+
+        Transaction t2 = events.get(1).getTransaction();
+        assertThat(t2.getProviderTransactionId()).isEqualTo("er-2");
+        assertThat(t2.getAmount()).isEqualTo("3");
+        assertThat(t2.getCurrency()).isEqualTo("EUR");
+        assertThat(t2.getDirection()).isEqualTo("CREDIT");
+        assertThat(t2.getDescription()).isEqualTo("Refund");
+        assertThat(t2.getRawJson()).isEqualTo(SECOND);
+
+        PageEnd pageEnd = events.get(2).getPageEnd();
+        assertThat(pageEnd.getTransactionCount()).isEqualTo(2);
+        assertThat(pageEnd.getContinuationKey()).isEqualTo("ck-1");
+    }
+
+    private static List<AccountTransactionsEvent> read(int bufferSize) {
+        byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int from = 0; from < bytes.length; from += bufferSize) {
+            buffers.add(wrap(Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + bufferSize))));
+        }
+        return ProviderTransactionMapper.readPage(Flux.fromIterable(buffers)).collectList().block();
+    }
+
+    private static DataBuffer wrap(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+}
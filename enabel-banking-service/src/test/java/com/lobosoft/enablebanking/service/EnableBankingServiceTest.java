@@ -12,7 +12,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
@@ -34,8 +33,6 @@ class EnableBankingServiceTest {
     @Mock
     private EnableBankingProperties props;
     @Mock
-    private WebClient webClient;
-    @Mock
     private BankSessionRepository bankSessionRepository;
     @Mock
     private AccountRepository accountRepository;
@@ -50,7 +47,6 @@ class EnableBankingServiceTest {
                 client,
                 props,
                 mapper,
-                webClient,
                 bankSessionRepository,
                 accountRepository
         );
@@ -0,0 +1,17 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.events")
+public class EventProperties {
+
+    public enum Format { PROTOBUF, JSON }
+
+    // encoding of new transactions.upserted events; JSON only while consumers
+    // that cannot read the content-type header are still deployed
+    private Format format = Format.PROTOBUF;
+}
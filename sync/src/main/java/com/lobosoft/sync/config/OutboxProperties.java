@@ -0,0 +1,21 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.outbox")
+public class OutboxProperties {
+    // outbox rows claimed and published per relay round
+    private int batchSize = 5000;
+
+    // pause between relay rounds that found the outbox drained
+    private long pollIntervalMs = 500;
+
+    // how long the relay waits for Kafka to acknowledge a whole batch
+    private Duration sendTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,32 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.replay")
+public class ReplayProperties {
+    // topic replays publish to unless they ask for the live transactions.upserted topic; the categorizer
+    // reads both, while consumers of live events only are left alone
+    private String topic = "transactions.replay";
+
+    // id ranges streamed in parallel per replay
+    private int partitions = 8;
+
+    // events per second across all partitions of all running replays, so a replay
+    // does not starve the outbox relay and downstream consumers of live events
+    private int maxEventsPerSecond = 20_000;
+
+    // rows the database cursor sends per round trip
+    private int fetchSize = 2_000;
+
+    // events sent before waiting for Kafka's acks and checkpointing the partition
+    private int batchSize = 5_000;
+
+    // a RUNNING replay not checkpointed for this long is taken to have died with its replica and can be resumed
+    private Duration staleAfter = Duration.ofMinutes(5);
+}
@@ -0,0 +1,30 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Period;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.backfill")
+public class SyncBackfillProperties {
+    // how far back a fetch-all reaches
+    private Period history = Period.ofDays(365);
+
+    // the window is split into date shards of this length, fetched concurrently
+    private Period shardLength = Period.ofDays(183);
+
+    // every shard's first page is one provider access against the account's daily PSD2 quota
+    // (typically 4), so a backfill is split into at most this many shards, and never into more
+    // than the accesses left today minus one, which stays free for a sync-now
+    private int maxShards = 2;
+
+    // shards of one account fetched at the same time
+    private int maxConcurrentShards = 2;
+
+    // a QUEUED or RUNNING fetch-all not touched for this long is taken to have died with its replica
+    private Duration jobStaleAfter = Duration.ofMinutes(5);
+}
@@ -0,0 +1,32 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.cadence")
+public class SyncCadenceProperties {
+    // bounds for the time between two syncs of one account
+    private Duration minInterval = Duration.ofMinutes(15);
+    private Duration maxInterval = Duration.ofHours(24);
+
+    // new transactions a sync should find on average; busier accounts get shorter intervals
+    private double targetInsertsPerSync = 2.0;
+
+    // weight of the latest sync in the moving insert rate (0..1)
+    private double rateSmoothing = 0.3;
+
+    // banks post little overnight: intervals starting in these hours are stretched
+    private ZoneId zone = ZoneId.of("Europe/Lisbon");
+    private int quietHoursStart = 0;
+    private int quietHoursEnd = 6;
+    private double quietHoursFactor = 3.0;
+
+    // +/- fraction of randomness so accounts linked together do not stay in lockstep
+    private double jitter = 0.1;
+}
@@ -0,0 +1,30 @@
+package com.lobosoft.sync.config;
+
+import com.lobosoft.sync.domain.SyncFailureClass;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.failures")
+public class SyncFailureProperties {
+    // consecutive failed attempts of each class before the account is dead-lettered;
+    // with the default backoff, 10 transient failures span about a week
+    private int transientAttempts = 10;
+    private int authExpiredAttempts = 2;
+    private int permanentAttempts = 3;
+
+    // cap of the exponential backoff between failed attempts, which starts at sync.cadence.min-interval
+    private Duration maxBackoff = Duration.ofHours(24);
+
+    public int attemptsFor(SyncFailureClass failureClass) {
+        return Math.max(1, switch (failureClass) {
+            case TRANSIENT -> transientAttempts;
+            case AUTH_EXPIRED -> authExpiredAttempts;
+            case PERMANENT -> permanentAttempts;
+        });
+    }
+}
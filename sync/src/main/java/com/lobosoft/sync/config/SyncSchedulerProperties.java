@@ -0,0 +1,36 @@
+package com.lobosoft.sync.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sync.scheduler")
+public class SyncSchedulerProperties {
+    // accounts synced at the same time across all banks
+    private int maxConcurrency = 16;
+
+    // accounts synced at the same time against a single ASPSP
+    private int perAspspConcurrency = 4;
+
+    // accounts leased per claim round of the work queue
+    private int claimBatchSize = 64;
+
+    // a lease not heartbeated for this long is considered abandoned and can be taken over
+    private Duration leaseTtl = Duration.ofMinutes(2);
+
+    // an on-demand sync requested within this long after the account's last sync returns that result
+    private Duration syncNowFreshFor = Duration.ofSeconds(30);
+
+    // per-ASPSP overrides of perAspspConcurrency, keyed by ASPSP name
+    private Map<String, Integer> aspspConcurrency = new HashMap<>();
+
+    public int concurrencyFor(String aspspName) {
+        return Math.max(1, aspspConcurrency.getOrDefault(aspspName, perAspspConcurrency));
+    }
+}
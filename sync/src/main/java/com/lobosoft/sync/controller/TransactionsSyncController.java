@@ -1,22 +1,80 @@
 package com.lobosoft.sync.controller;
 
-import com.lobosoft.sync.dto.TransactionsPage;
-import com.lobosoft.sync.service.TransactionSyncService;
+import com.lobosoft.sync.dto.DeadLetteredAccount;
+import com.lobosoft.sync.dto.ReplayJobDto;
+import com.lobosoft.sync.dto.ReplayRequest;
+import com.lobosoft.sync.dto.SyncJobDto;
+import com.lobosoft.sync.service.AccountLeaseManager;
+import com.lobosoft.sync.service.ReplayService;
+import com.lobosoft.sync.service.SyncJobService;
+import com.lobosoft.sync.service.SyncScheduler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.UUID;
+
 @RestController
-@RequestMapping("/internal/sync/accounts")
+@RequestMapping("/internal/sync")
 @RequiredArgsConstructor
 public class TransactionsSyncController {
 
-    private final TransactionSyncService transactionSyncService;
+    private final SyncScheduler syncScheduler;
+    private final SyncJobService syncJobService;
+    private final AccountLeaseManager leaseManager;
+    private final ReplayService replayService;
 
-    @PostMapping("/{accountId}/transactions/full")
+    @PostMapping("/accounts/{accountId}/transactions/full")
     public void syncFullAccount(@PathVariable Long accountId) {
-        transactionSyncService.syncAccountTransactions(accountId);
+        syncScheduler.syncNow(accountId);
+    }
+
+    @PostMapping("/accounts/{accountId}/transactions/fetch-all")
+    public ResponseEntity<SyncJobDto> startFetchAll(@PathVariable Long accountId,
+                                                    @RequestHeader("X-User-Id") String userId) {
+        return ResponseEntity.accepted().body(syncJobService.startFetchAll(userId, accountId));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public SyncJobDto getJob(@PathVariable UUID jobId,
+                             @RequestHeader("X-User-Id") String userId) {
+        return syncJobService.getJob(userId, jobId);
+    }
+
+    // operator endpoints: accounts the scheduler gave up on after repeated failures
+
+    @GetMapping("/dead-letters")
+    public List<DeadLetteredAccount> listDeadLetters() {
+        return leaseManager.deadLettered();
+    }
+
+    @PostMapping("/dead-letters/{accountId}/requeue")
+    public ResponseEntity<Void> requeue(@PathVariable Long accountId) {
+        leaseManager.requeue(accountId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // operator endpoints: republish stored transactions so downstream state can be rebuilt
+
+    @PostMapping("/replays")
+    public ResponseEntity<ReplayJobDto> startReplay(@RequestBody ReplayRequest request) {
+        return ResponseEntity.accepted().body(replayService.start(request));
+    }
+
+    @GetMapping("/replays/{jobId}")
+    public ReplayJobDto getReplay(@PathVariable UUID jobId) {
+        return replayService.get(jobId);
+    }
+
+    @PostMapping("/replays/{jobId}/resume")
+    public ResponseEntity<ReplayJobDto> resumeReplay(@PathVariable UUID jobId) {
+        return ResponseEntity.accepted().body(replayService.resume(jobId));
     }
 }
@@ -25,8 +25,30 @@ public class Account {
     private String iban;
     private String status;
 
+    @Column(name = "aspsp_name")
+    private String aspspName;
+
     @Column(columnDefinition = "text")
     private String ebContinuationKey;
 
     private Instant createdAt;
+
+    // sync cadence state, read-only here: only AccountLeaseRepository writes it
+    @Column(name = "last_sync_attempt_at", insertable = false, updatable = false)
+    private Instant lastSyncAttemptAt;
+
+    @Column(name = "next_sync_at", insertable = false, updatable = false)
+    private Instant nextSyncAt;
+
+    @Column(name = "sync_insert_rate", insertable = false, updatable = false)
+    private double insertRate;
+
+    @Column(name = "sync_failures", insertable = false, updatable = false)
+    private int syncFailures;
+
+    @Column(name = "sync_failure_class", insertable = false, updatable = false)
+    private String syncFailureClass;
+
+    @Column(name = "sync_dead_lettered_at", insertable = false, updatable = false)
+    private Instant syncDeadLetteredAt;
 }
@@ -0,0 +1,192 @@
+package com.lobosoft.sync.domain;
+
+import com.lobosoft.sync.dto.DeadLetteredAccount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Leases on {@code bank_accounts} rows. All expiry checks use the database clock so
+ * replicas with drifting clocks still agree on who owns an account.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountLeaseRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Leases up to {@code limit} active accounts that are due and not leased by anyone else,
+     * most overdue first. Accounts never scheduled are due straight away; accounts whose consent
+     * session ran out are skipped, as their sync could only fail.
+     *
+     * @return ids of the accounts now leased to {@code owner}
+     */
+    public List<Long> claimDue(String owner, Duration ttl, int limit) {
+        return jdbcTemplate.queryForList("""
+                        WITH due AS (
+                            SELECT a.id
+                            FROM bank_accounts a
+                            WHERE a.status = 'ACTIVE'
+                              AND a.sync_dead_lettered_at IS NULL
+                              AND (a.next_sync_at IS NULL OR a.next_sync_at <= now())
+                              AND (a.sync_lease_expires_at IS NULL OR a.sync_lease_expires_at < now())
+                              AND (a.aspsp_name IS NULL OR EXISTS (
+                                  SELECT 1
+                                  FROM bank_sessions s
+                                  WHERE s.user_id = a.user_id
+                                    AND s.aspsp_name = a.aspsp_name
+                                    AND s.status = 'AUTHORIZED'
+                                    AND (s.valid_until IS NULL OR s.valid_until > now())
+                              ))
+                            ORDER BY a.next_sync_at NULLS FIRST
+                            LIMIT ?
+                            FOR UPDATE SKIP LOCKED
+                        )
+                        UPDATE bank_accounts b
+                        SET sync_lease_owner = ?,
+                            sync_lease_expires_at = now() + make_interval(secs => ?)
+                        FROM due
+                        WHERE b.id = due.id
+                        RETURNING b.id
+                        """,
+                Long.class,
+                limit, owner, ttl.toSeconds());
+    }
+
+    /**
+     * Leases one account unless anyone holds a live lease on it, {@code owner} included.
+     */
+    public boolean tryAcquire(long accountId, String owner, Duration ttl) {
+        return jdbcTemplate.update("""
+                        UPDATE bank_accounts
+                        SET sync_lease_owner = ?,
+                            sync_lease_expires_at = now() + make_interval(secs => ?)
+                        WHERE id = ?
+                          AND (sync_lease_expires_at IS NULL
+                               OR sync_lease_expires_at < now())
+                        """,
+                owner, ttl.toSeconds(), accountId) == 1;
+    }
+
+    /**
+     * Extends the leases {@code owner} still holds.
+     *
+     * @return ids of the leases that were extended; a missing id was taken over by another owner
+     */
+    public List<Long> heartbeat(String owner, Duration ttl, Collection<Long> accountIds) {
+        if (accountIds.isEmpty()) {
+            return List.of();
+        }
+        Long[] ids = accountIds.toArray(Long[]::new);
+        return jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement("""
+                    UPDATE bank_accounts
+                    SET sync_lease_expires_at = now() + make_interval(secs => ?)
+                    WHERE sync_lease_owner = ?
+                      AND id = ANY (?)
+                    RETURNING id
+                    """);
+            ps.setLong(1, ttl.toSeconds());
+            ps.setString(2, owner);
+            ps.setArray(3, con.createArrayOf("bigint", ids));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    /**
+     * Gives the lease back and records when the account is due again. With no failures left the
+     * account's failure details are cleared and it leaves the dead letters, if it was there.
+     */
+    public void release(long accountId, String owner, Instant nextSyncAt, double insertRate, int failures) {
+        jdbcTemplate.update("""
+                        UPDATE bank_accounts
+                        SET sync_lease_owner = NULL,
+                            sync_lease_expires_at = NULL,
+                            last_sync_attempt_at = now(),
+                            next_sync_at = ?,
+                            sync_insert_rate = ?,
+                            sync_failures = ?,
+                            sync_failure_class = CASE WHEN ? = 0 THEN NULL ELSE sync_failure_class END,
+                            sync_last_error = CASE WHEN ? = 0 THEN NULL ELSE sync_last_error END,
+                            sync_dead_lettered_at = CASE WHEN ? = 0 THEN NULL ELSE sync_dead_lettered_at END
+                        WHERE id = ?
+                          AND sync_lease_owner = ?
+                        """,
+                Timestamp.from(nextSyncAt), insertRate, failures, failures, failures, failures, accountId, owner);
+    }
+
+    /**
+     * Gives the lease back after a failed attempt, recording how it failed. A dead-lettered account
+     * keeps its next_sync_at but is no longer claimed until it is requeued.
+     */
+    public void releaseFailed(long accountId, String owner, Instant nextSyncAt, int failures,
+                              SyncFailureClass failureClass, String error, boolean deadLetter) {
+        jdbcTemplate.update("""
+                        UPDATE bank_accounts
+                        SET sync_lease_owner = NULL,
+                            sync_lease_expires_at = NULL,
+                            last_sync_attempt_at = now(),
+                            next_sync_at = ?,
+                            sync_failures = ?,
+                            sync_failure_class = ?,
+                            sync_last_error = ?,
+                            sync_dead_lettered_at = CASE
+                                WHEN NOT ? THEN NULL
+                                ELSE coalesce(sync_dead_lettered_at, now())
+                            END
+                        WHERE id = ?
+                          AND sync_lease_owner = ?
+                        """,
+                Timestamp.from(nextSyncAt), failures, failureClass.name(), error, deadLetter, accountId, owner);
+    }
+
+    public List<DeadLetteredAccount> findDeadLettered() {
+        return jdbcTemplate.query("""
+                        SELECT id, user_id, aspsp_name, sync_failure_class, sync_failures,
+                               sync_last_error, last_sync_attempt_at, sync_dead_lettered_at
+                        FROM bank_accounts
+                        WHERE sync_dead_lettered_at IS NOT NULL
+                        ORDER BY sync_dead_lettered_at DESC
+                        """,
+                (rs, rowNum) -> new DeadLetteredAccount(
+                        rs.getLong("id"),
+                        rs.getString("user_id"),
+                        rs.getString("aspsp_name"),
+                        SyncFailureClass.valueOf(rs.getString("sync_failure_class")),
+                        rs.getInt("sync_failures"),
+                        rs.getString("sync_last_error"),
+                        toInstant(rs.getTimestamp("last_sync_attempt_at")),
+                        toInstant(rs.getTimestamp("sync_dead_lettered_at"))
+                ));
+    }
+
+    /**
+     * Takes a dead-lettered account back into the work queue, due straight away and with a fresh
+     * failure count. The last error is kept for reference until the next attempt.
+     *
+     * @return false when the account is not dead-lettered
+     */
+    public boolean requeue(long accountId) {
+        return jdbcTemplate.update("""
+                        UPDATE bank_accounts
+                        SET sync_dead_lettered_at = NULL,
+                            sync_failures = 0,
+                            sync_failure_class = NULL,
+                            next_sync_at = now()
+                        WHERE id = ?
+                          AND sync_dead_lettered_at IS NOT NULL
+                        """,
+                accountId) == 1;
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
@@ -15,8 +15,15 @@ public class BankSession {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private long userId;
-    private String providerSessionId;
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "aspsp_name")
+    private String aspspName;
+
+    @Column(name = "aspsp_country")
+    private String aspspCountry;
+
     private String status;
 
     private Instant createdAt;
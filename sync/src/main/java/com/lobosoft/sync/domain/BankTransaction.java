@@ -45,6 +45,10 @@ public class BankTransaction {
     @ColumnTransformer(write = "?::jsonb")
     private String rawJson;
 
+    // SHA-256 over the provider fields, see TransactionSyncService#contentHash
+    @Column(name = "content_hash")
+    private byte[] contentHash;
+
     private Instant createdAt;
     private Instant updatedAt;
 }
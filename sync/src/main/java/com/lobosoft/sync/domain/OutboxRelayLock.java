@@ -0,0 +1,101 @@
+package com.lobosoft.sync.domain;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Elects the one replica that relays the outbox, with a session-level advisory lock. The lock lives
+ * on a connection of its own, held for as long as this replica leads, so no transaction has to stay
+ * open while the relay waits for Kafka. Should that connection die, Postgres drops the lock and
+ * another replica takes over.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelayLock {
+
+    // any fixed key will do, as long as every replica contends for the same one
+    private static final long LOCK_KEY = 0x6f7574626f78L;
+    private static final int VALID_TIMEOUT_SECONDS = 2;
+
+    private final DataSource dataSource;
+
+    private Connection connection;
+
+    /**
+     * @return whether this replica leads, taking the lock if no one holds it
+     */
+    public synchronized boolean tryLead() {
+        if (connection != null) {
+            if (isValid(connection)) {
+                return true;
+            }
+            log.warn("[SYNC] Connection holding the outbox relay lock broke, giving up the relay");
+            unlockAndClose();
+        }
+
+        try {
+            Connection con = dataSource.getConnection();
+            boolean locked = false;
+            try {
+                locked = call(con, "SELECT pg_try_advisory_lock(?)");
+            } finally {
+                if (!locked) {
+                    con.close();
+                }
+            }
+            if (locked) {
+                connection = con;
+                log.info("[SYNC] This replica now relays the outbox");
+            }
+            return locked;
+        } catch (SQLException e) {
+            log.warn("[SYNC] Could not contend for the outbox relay lock: {}", e.toString());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void resign() {
+        if (connection != null) {
+            unlockAndClose();
+            log.info("[SYNC] Gave up relaying the outbox");
+        }
+    }
+
+    // a pooled connection goes back to the pool, so it must not take the lock along
+    private void unlockAndClose() {
+        try (Connection con = connection) {
+            call(con, "SELECT pg_advisory_unlock(?)");
+        } catch (SQLException e) {
+            log.debug("[SYNC] Releasing the outbox relay lock failed: {}", e.toString());
+        } finally {
+            connection = null;
+        }
+    }
+
+    private static boolean call(Connection con, String sql) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static boolean isValid(Connection con) {
+        try {
+            return con.isValid(VALID_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
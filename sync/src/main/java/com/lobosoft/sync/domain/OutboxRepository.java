@@ -0,0 +1,69 @@
+package com.lobosoft.sync.domain;
+
+import com.lobosoft.sync.dto.OutboxMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Appends messages to the outbox. Must run in the caller's transaction so the
+     * messages commit or roll back together with the rows they describe.
+     */
+    public void appendAll(Collection<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO event_outbox (topic, message_key, content_type, payload) VALUES (?, ?, ?, ?)",
+                messages,
+                1000,
+                (ps, m) -> {
+                    ps.setString(1, m.topic());
+                    ps.setString(2, m.key());
+                    ps.setString(3, m.contentType());
+                    ps.setBytes(4, m.payload());
+                }
+        );
+    }
+
+    /**
+     * The oldest messages, in the order they were written. Only the replica holding the
+     * {@link OutboxRelayLock} reads them, so they need no row locks.
+     */
+    public List<OutboxMessage> claimBatch(int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, topic, message_key, content_type, payload
+                        FROM event_outbox
+                        ORDER BY id
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> new OutboxMessage(
+                        rs.getLong("id"),
+                        rs.getString("topic"),
+                        rs.getString("message_key"),
+                        rs.getString("content_type"),
+                        rs.getBytes("payload")
+                ),
+                limit
+        );
+    }
+
+    public void deleteAll(List<OutboxMessage> messages) {
+        Long[] ids = messages.stream().map(OutboxMessage::id).toArray(Long[]::new);
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement("DELETE FROM event_outbox WHERE id = ANY (?)");
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        });
+    }
+}
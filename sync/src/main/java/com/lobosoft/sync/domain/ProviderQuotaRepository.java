@@ -0,0 +1,49 @@
+package com.lobosoft.sync.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Read side of the provider access ledger that enable-banking keeps in {@code provider_quota_usage}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProviderQuotaRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Scheduled provider accesses (syncs) the account has left today (UTC), or null when it has
+     * not made any yet today and the whole budget is still available.
+     */
+    public Integer remainingScheduledCalls(String providerAccountId) {
+        List<Integer> rows = jdbcTemplate.queryForList("""
+                        SELECT GREATEST(daily_limit - user_reserve - scheduled_calls - user_calls, 0)
+                        FROM provider_quota_usage
+                        WHERE provider_account_id = ?
+                          AND usage_date = (now() AT TIME ZONE 'UTC')::date
+                        """,
+                Integer.class,
+                providerAccountId);
+        return rows.isEmpty() ? null : rows.getFirst();
+    }
+
+    /**
+     * Provider accesses a user-initiated sync of the account may still make today (UTC), or null
+     * when it has not made any yet today and the whole budget is still available.
+     */
+    public Integer remainingUserAccesses(String providerAccountId) {
+        List<Integer> rows = jdbcTemplate.queryForList("""
+                        SELECT GREATEST(daily_limit - scheduled_calls - user_calls, 0)
+                        FROM provider_quota_usage
+                        WHERE provider_account_id = ?
+                          AND usage_date = (now() AT TIME ZONE 'UTC')::date
+                        """,
+                Integer.class,
+                providerAccountId);
+        return rows.isEmpty() ? null : rows.getFirst();
+    }
+}
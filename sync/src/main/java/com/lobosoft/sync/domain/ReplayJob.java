@@ -0,0 +1,54 @@
+package com.lobosoft.sync.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Table(name = "replay_jobs")
+@Getter
+@Setter
+public class ReplayJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private String topic;
+
+    // filters; null means all
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "bank_account_id")
+    private Long bankAccountId;
+
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    // written by ReplayPartitionRepository as partitions checkpoint
+    @Column(insertable = false, updatable = false)
+    private long published;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    @Column(insertable = false, updatable = false)
+    private Instant updatedAt;
+
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+}
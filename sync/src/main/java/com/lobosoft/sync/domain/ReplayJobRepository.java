@@ -0,0 +1,9 @@
+package com.lobosoft.sync.domain;
+
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface ReplayJobRepository extends JpaRepository<@NonNull ReplayJob, @NonNull UUID> {
+}
@@ -0,0 +1,10 @@
+package com.lobosoft.sync.domain;
+
+import java.util.UUID;
+
+/**
+ * One slice of a replay: the transactions with {@code fromId < id <= toId}, of which
+ * everything up to {@code lastId} has been published.
+ */
+public record ReplayPartition(UUID jobId, int partitionNo, long fromId, long toId, long lastId, boolean done) {
+}
@@ -0,0 +1,171 @@
+package com.lobosoft.sync.domain;
+
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Partitions and checkpoints of replay jobs, and the cursor reading the transactions they replay.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReplayPartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return {@code [min, max]} of the ids matching the job's filters, or null when nothing matches
+     */
+    public long[] idRange(ReplayJob job) {
+        List<Object> args = new ArrayList<>();
+        String where = filters(job, args);
+        return jdbcTemplate.query("SELECT min(id) AS min_id, max(id) AS max_id FROM transactions WHERE " + where,
+                rs -> {
+                    rs.next();
+                    long min = rs.getLong("min_id");
+                    return rs.wasNull() ? null : new long[]{min, rs.getLong("max_id")};
+                },
+                args.toArray());
+    }
+
+    public void createAll(List<ReplayPartition> partitions) {
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO replay_job_partitions (job_id, partition_no, from_id, to_id, last_id)
+                        VALUES (?, ?, ?, ?, ?)
+                        """,
+                partitions,
+                partitions.size(),
+                (ps, p) -> {
+                    ps.setObject(1, p.jobId());
+                    ps.setInt(2, p.partitionNo());
+                    ps.setLong(3, p.fromId());
+                    ps.setLong(4, p.toId());
+                    ps.setLong(5, p.lastId());
+                });
+    }
+
+    public List<ReplayPartition> findAll(UUID jobId) {
+        return jdbcTemplate.query("""
+                        SELECT job_id, partition_no, from_id, to_id, last_id, done
+                        FROM replay_job_partitions
+                        WHERE job_id = ?
+                        ORDER BY partition_no
+                        """,
+                (rs, rowNum) -> new ReplayPartition(
+                        rs.getObject("job_id", UUID.class),
+                        rs.getInt("partition_no"),
+                        rs.getLong("from_id"),
+                        rs.getLong("to_id"),
+                        rs.getLong("last_id"),
+                        rs.getBoolean("done")
+                ),
+                jobId);
+    }
+
+    /**
+     * Records that a partition's events up to {@code lastId} are acknowledged, adding
+     * {@code published} to both the partition's and the job's count.
+     */
+    public void checkpoint(ReplayPartition partition, long lastId, int published, boolean done) {
+        jdbcTemplate.update("""
+                        WITH p AS (
+                            UPDATE replay_job_partitions
+                            SET last_id = ?,
+                                published = published + ?,
+                                done = ?
+                            WHERE job_id = ?
+                              AND partition_no = ?
+                        )
+                        UPDATE replay_jobs
+                        SET published = published + ?,
+                            updated_at = now()
+                        WHERE id = ?
+                        """,
+                lastId, published, done, partition.jobId(), partition.partitionNo(), published, partition.jobId());
+    }
+
+    /**
+     * Streams up to {@code limit} of the partition's transactions after {@code afterId}, in id order,
+     * through a server-side cursor that fetches {@code fetchSize} rows per round trip. Postgres only
+     * keeps a cursor open inside a transaction, so callers must run this in one.
+     */
+    public void stream(ReplayJob job, ReplayPartition partition, long afterId, int limit, int fetchSize,
+                       Consumer<TransactionUpsertedEvent> onRow) {
+        List<Object> args = new ArrayList<>();
+        String where = filters(job, args);
+        args.add(afterId);
+        args.add(partition.toId());
+        args.add(limit);
+
+        String sql = """
+                SELECT id, user_id, bank_account_id, amount, currency, direction,
+                       booking_date, description_raw, description_display
+                FROM transactions
+                WHERE %s
+                  AND id > ?
+                  AND id <= ?
+                ORDER BY id
+                LIMIT ?
+                """.formatted(where);
+
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setFetchSize(fetchSize);
+                    bind(ps, args);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    Date bookingDate = rs.getDate("booking_date");
+                    onRow.accept(new TransactionUpsertedEvent(
+                            rs.getLong("id"),
+                            rs.getString("user_id"),
+                            rs.getLong("bank_account_id"),
+                            rs.getBigDecimal("amount"),
+                            rs.getString("currency"),
+                            rs.getString("direction"),
+                            bookingDate == null ? null : bookingDate.toLocalDate().toString(),
+                            rs.getString("description_raw"),
+                            rs.getString("description_display")
+                    ));
+                });
+    }
+
+    private static String filters(ReplayJob job, List<Object> args) {
+        List<String> clauses = new ArrayList<>();
+        clauses.add("TRUE");
+        if (job.getUserId() != null) {
+            clauses.add("user_id = ?");
+            args.add(job.getUserId());
+        }
+        if (job.getBankAccountId() != null) {
+            clauses.add("bank_account_id = ?");
+            args.add(job.getBankAccountId());
+        }
+        if (job.getFromDate() != null) {
+            clauses.add("booking_date >= ?");
+            args.add(Date.valueOf(job.getFromDate()));
+        }
+        if (job.getToDate() != null) {
+            clauses.add("booking_date <= ?");
+            args.add(Date.valueOf(job.getToDate()));
+        }
+        return String.join(" AND ", clauses);
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> args) throws SQLException {
+        for (int i = 0; i < args.size(); i++) {
+            ps.setObject(i + 1, args.get(i));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.lobosoft.sync.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retires consent sessions past their {@code valid_until} together with the accounts linked through them.
+ * An account belongs to the sessions of the same user and ASPSP; it stays ACTIVE while any of them is
+ * still usable, e.g. right after the user re-linked the bank.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SessionExpiryRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int expireSessions() {
+        return jdbcTemplate.update("""
+                UPDATE bank_sessions
+                SET status = 'EXPIRED',
+                    updated_at = now()
+                WHERE status = 'AUTHORIZED'
+                  AND valid_until <= now()
+                """);
+    }
+
+    public int expireAccounts() {
+        return jdbcTemplate.update("""
+                UPDATE bank_accounts a
+                SET status = 'EXPIRED',
+                    updated_at = now()
+                WHERE a.status = 'ACTIVE'
+                  AND EXISTS (
+                      SELECT 1
+                      FROM bank_sessions s
+                      WHERE s.user_id = a.user_id
+                        AND s.aspsp_name = a.aspsp_name
+                        AND s.status = 'EXPIRED'
+                  )
+                  AND NOT EXISTS (
+                      SELECT 1
+                      FROM bank_sessions s
+                      WHERE s.user_id = a.user_id
+                        AND s.aspsp_name = a.aspsp_name
+                        AND s.status = 'AUTHORIZED'
+                        AND (s.valid_until IS NULL OR s.valid_until > now())
+                  )
+                """);
+    }
+
+    /**
+     * Counts the accounts the work queue leaves out, by reason.
+     */
+    public Map<String, Long> countSkipped() {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT CASE
+                                   WHEN a.status = 'EXPIRED' THEN 'consent_expired'
+                                   WHEN a.sync_dead_lettered_at IS NOT NULL THEN 'dead_lettered'
+                                   ELSE 'consent_pending'
+                               END AS reason,
+                               count(*) AS accounts
+                        FROM bank_accounts a
+                        WHERE a.status = 'EXPIRED'
+                           OR (a.status = 'ACTIVE' AND a.sync_dead_lettered_at IS NOT NULL)
+                           OR (a.status = 'ACTIVE'
+                               AND a.aspsp_name IS NOT NULL
+                               AND NOT EXISTS (
+                                   SELECT 1
+                                   FROM bank_sessions s
+                                   WHERE s.user_id = a.user_id
+                                     AND s.aspsp_name = a.aspsp_name
+                                     AND s.status = 'AUTHORIZED'
+                                     AND (s.valid_until IS NULL OR s.valid_until > now())
+                               ))
+                        GROUP BY reason
+                        """,
+                rs -> {
+                    counts.put(rs.getString("reason"), rs.getLong("accounts"));
+                });
+        return counts;
+    }
+}
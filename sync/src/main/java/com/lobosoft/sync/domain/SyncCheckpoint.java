@@ -0,0 +1,23 @@
+package com.lobosoft.sync.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Progress through one date window of an account's sync, as of the last committed page.
+ *
+ * @param continuationKey key of the next page to fetch, or null to start the window from its beginning
+ */
+public record SyncCheckpoint(
+        long accountId,
+        Kind kind,
+        LocalDate windowFrom,
+        LocalDate windowTo,
+        String continuationKey,
+        int pagesDone,
+        boolean done
+) {
+    public enum Kind {
+        INCREMENTAL,
+        BACKFILL
+    }
+}
@@ -0,0 +1,91 @@
+package com.lobosoft.sync.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class SyncCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Open windows of the account's interrupted sync, oldest first; empty when no sync was interrupted.
+     */
+    public List<SyncCheckpoint> findAll(long accountId) {
+        return jdbcTemplate.query("""
+                        SELECT bank_account_id, kind, window_from, window_to, continuation_key, pages_done, done
+                        FROM sync_checkpoints
+                        WHERE bank_account_id = ?
+                        ORDER BY window_from
+                        """,
+                (rs, rowNum) -> new SyncCheckpoint(
+                        rs.getLong("bank_account_id"),
+                        SyncCheckpoint.Kind.valueOf(rs.getString("kind")),
+                        rs.getDate("window_from").toLocalDate(),
+                        rs.getDate("window_to").toLocalDate(),
+                        rs.getString("continuation_key"),
+                        rs.getInt("pages_done"),
+                        rs.getBoolean("done")),
+                accountId);
+    }
+
+    /**
+     * Records the windows a sync is about to fetch, replacing whatever the account had before.
+     */
+    public void startAll(long accountId, List<SyncCheckpoint> windows) {
+        jdbcTemplate.update("DELETE FROM sync_checkpoints WHERE bank_account_id = ?", accountId);
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO sync_checkpoints (bank_account_id, window_from, kind, window_to)
+                        VALUES (?, ?, ?, ?)
+                        """,
+                windows,
+                windows.size(),
+                (ps, w) -> {
+                    ps.setLong(1, accountId);
+                    ps.setDate(2, Date.valueOf(w.windowFrom()));
+                    ps.setString(3, w.kind().name());
+                    ps.setDate(4, Date.valueOf(w.windowTo()));
+                });
+    }
+
+    /**
+     * Moves a window past one more page. Must run in the transaction that stores the page.
+     *
+     * @param continuationKey key of the next page, or null when the page was the window's last
+     */
+    public void advance(long accountId, SyncCheckpoint window, String continuationKey) {
+        jdbcTemplate.update("""
+                        UPDATE sync_checkpoints
+                        SET continuation_key = ?,
+                            pages_done = pages_done + 1,
+                            done = ?,
+                            updated_at = now()
+                        WHERE bank_account_id = ?
+                          AND window_from = ?
+                        """,
+                continuationKey, continuationKey == null, accountId, Date.valueOf(window.windowFrom()));
+    }
+
+    /**
+     * Forgets a window's continuation key, so it is fetched again from its beginning.
+     */
+    public void restart(long accountId, SyncCheckpoint window) {
+        jdbcTemplate.update("""
+                        UPDATE sync_checkpoints
+                        SET continuation_key = NULL,
+                            updated_at = now()
+                        WHERE bank_account_id = ?
+                          AND window_from = ?
+                        """,
+                accountId, Date.valueOf(window.windowFrom()));
+    }
+
+    public void deleteAll(long accountId) {
+        jdbcTemplate.update("DELETE FROM sync_checkpoints WHERE bank_account_id = ?", accountId);
+    }
+}
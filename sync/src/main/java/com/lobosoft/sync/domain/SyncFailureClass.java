@@ -0,0 +1,14 @@
+package com.lobosoft.sync.domain;
+
+/**
+ * How a sync attempt failed, which decides how long the account backs off and how many
+ * attempts it gets before it is dead-lettered.
+ */
+public enum SyncFailureClass {
+    // the provider or our own infrastructure had a hiccup; retrying later will likely work
+    TRANSIENT,
+    // the user's consent expired or was revoked; only re-linking the bank fixes it
+    AUTH_EXPIRED,
+    // the provider refuses the request itself, e.g. the account no longer exists
+    PERMANENT
+}
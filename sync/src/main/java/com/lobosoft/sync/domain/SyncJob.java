@@ -0,0 +1,51 @@
+package com.lobosoft.sync.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "sync_jobs")
+@Getter
+@Setter
+public class SyncJob {
+
+    public static final String KIND_FETCH_ALL = "FETCH_ALL";
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    @Id
+    private UUID id;
+
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "bank_account_id")
+    private Long bankAccountId;
+
+    private String kind;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int pages;
+    private int inserted;
+    private int updated;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    // touched on every save, also while the job waits for the account's lease
+    private Instant updatedAt;
+
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+}
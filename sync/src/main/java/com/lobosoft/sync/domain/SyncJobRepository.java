@@ -0,0 +1,16 @@
+package com.lobosoft.sync.domain;
+
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface SyncJobRepository extends JpaRepository<@NonNull SyncJob, @NonNull UUID> {
+
+    Optional<SyncJob> findByIdAndUserId(UUID id, String userId);
+
+    Optional<SyncJob> findFirstByBankAccountIdAndKindAndStatusInOrderByCreatedAtDesc(
+            Long bankAccountId, String kind, Collection<SyncJob.Status> statuses);
+}
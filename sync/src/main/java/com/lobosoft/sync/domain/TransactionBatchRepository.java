@@ -0,0 +1,129 @@
+package com.lobosoft.sync.domain;
+
+import com.lobosoft.sync.dto.UpsertResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a whole provider page of transactions with one multi-row
+ * {@code INSERT ... ON CONFLICT DO UPDATE} instead of a SELECT + save per row.
+ * Existing rows whose content hash is unchanged are left untouched.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionBatchRepository {
+
+    // 14 bind parameters per row keeps a chunk well under the 65535 limit of the Postgres protocol
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String INSERT_PREFIX = """
+            INSERT INTO transactions (
+                user_id, bank_account_id, provider_transaction_id,
+                amount, currency, direction,
+                booking_date, value_date,
+                description_raw, description_display, raw_json,
+                content_hash, created_at, updated_at
+            ) VALUES
+            """;
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?)";
+
+    private static final String ON_CONFLICT_SUFFIX = """
+            ON CONFLICT (bank_account_id, provider_transaction_id) DO UPDATE SET
+                user_id             = EXCLUDED.user_id,
+                amount              = EXCLUDED.amount,
+                currency            = EXCLUDED.currency,
+                direction           = EXCLUDED.direction,
+                booking_date        = EXCLUDED.booking_date,
+                value_date          = EXCLUDED.value_date,
+                description_raw     = EXCLUDED.description_raw,
+                description_display = EXCLUDED.description_display,
+                raw_json            = EXCLUDED.raw_json,
+                content_hash        = EXCLUDED.content_hash,
+                updated_at          = EXCLUDED.updated_at
+            WHERE transactions.content_hash IS DISTINCT FROM EXCLUDED.content_hash
+            RETURNING id, provider_transaction_id, (xmax = 0) AS inserted
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Upserts all rows of one account and returns the outcome keyed by provider transaction id.
+     * Rows sharing a provider transaction id are collapsed (last one wins), since Postgres refuses
+     * to touch the same row twice in one ON CONFLICT statement. Rows that already exist with the
+     * same content hash are skipped by the database and are absent from the result.
+     */
+    public Map<String, UpsertResult> upsertAll(Collection<BankTransaction> rows) {
+        Map<String, BankTransaction> unique = new LinkedHashMap<>();
+        for (BankTransaction row : rows) {
+            unique.put(row.getProviderTransactionId(), row);
+        }
+
+        Map<String, UpsertResult> results = new LinkedHashMap<>();
+        List<BankTransaction> all = new ArrayList<>(unique.values());
+
+        for (int from = 0; from < all.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<BankTransaction> chunk = all.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, all.size()));
+            upsertChunk(chunk, results);
+        }
+
+        return results;
+    }
+
+    private void upsertChunk(List<BankTransaction> chunk, Map<String, UpsertResult> results) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "    " : ",\n    ").append(ROW_PLACEHOLDERS);
+        }
+        sql.append('\n').append(ON_CONFLICT_SUFFIX);
+
+        List<Map.Entry<String, UpsertResult>> rows = jdbcTemplate.query(
+                sql.toString(),
+                ps -> bindRows(ps, chunk),
+                (rs, rowNum) -> Map.entry(
+                        rs.getString("provider_transaction_id"),
+                        new UpsertResult(rs.getLong("id"), rs.getBoolean("inserted"))
+                )
+        );
+
+        for (Map.Entry<String, UpsertResult> row : rows) {
+            results.put(row.getKey(), row.getValue());
+        }
+    }
+
+    private void bindRows(PreparedStatement ps, List<BankTransaction> chunk) throws SQLException {
+        int idx = 1;
+        for (BankTransaction t : chunk) {
+            ps.setString(idx++, t.getUserId());
+            ps.setLong(idx++, t.getBankAccountId());
+            ps.setString(idx++, t.getProviderTransactionId());
+            ps.setBigDecimal(idx++, t.getAmount());
+            ps.setString(idx++, t.getCurrency());
+            ps.setString(idx++, t.getDirection());
+            ps.setDate(idx++, toSqlDate(t.getBookingDate()));
+            ps.setDate(idx++, toSqlDate(t.getValueDate()));
+            ps.setString(idx++, t.getDescriptionRaw());
+            ps.setString(idx++, t.getDescriptionDisplay());
+            ps.setString(idx++, t.getRawJson());
+            ps.setBytes(idx++, t.getContentHash());
+            ps.setTimestamp(idx++, Timestamp.from(t.getCreatedAt()));
+            ps.setTimestamp(idx++, Timestamp.from(t.getUpdatedAt()));
+        }
+    }
+
+    private static Date toSqlDate(LocalDate date) {
+        return date == null ? null : Date.valueOf(date);
+    }
+}
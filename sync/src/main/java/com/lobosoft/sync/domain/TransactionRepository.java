@@ -2,10 +2,16 @@ package com.lobosoft.sync.domain;
 
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface TransactionRepository extends JpaRepository<@NonNull BankTransaction, @NonNull Long> {
     Optional<BankTransaction> findTopByBankAccountIdOrderByBookingDateDesc(Long bankAccountId);
-    Optional<BankTransaction> findByBankAccountIdAndProviderTransactionId(Long bankAccountId, String providerTransactionId);
+
+    @Modifying
+    @Query("DELETE FROM BankTransaction t WHERE t.bankAccountId = :bankAccountId")
+    int deleteByBankAccountId(@Param("bankAccountId") Long bankAccountId);
 }
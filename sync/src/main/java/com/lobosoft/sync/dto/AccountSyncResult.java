@@ -0,0 +1,14 @@
+package com.lobosoft.sync.dto;
+
+/**
+ * @param backfill the sync re-fetched the account's history, possibly resuming an interrupted
+ *                 backfill, so its insert count says nothing about the account's activity
+ */
+public record AccountSyncResult(
+        int inserted,
+        int changed,
+        int unchanged,
+        int pages,
+        boolean backfill
+) {
+}
@@ -0,0 +1,17 @@
+package com.lobosoft.sync.dto;
+
+import com.lobosoft.sync.domain.SyncFailureClass;
+
+import java.time.Instant;
+
+public record DeadLetteredAccount(
+        long accountId,
+        String userId,
+        String aspspName,
+        SyncFailureClass failureClass,
+        int failures,
+        String lastError,
+        Instant lastSyncAttemptAt,
+        Instant deadLetteredAt
+) {
+}
@@ -0,0 +1,10 @@
+package com.lobosoft.sync.dto;
+
+public record OutboxMessage(
+        long id,
+        String topic,
+        String key,
+        String contentType,
+        byte[] payload
+) {
+}
@@ -0,0 +1,39 @@
+package com.lobosoft.sync.dto;
+
+import com.lobosoft.sync.domain.ReplayJob;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+public record ReplayJobDto(
+        UUID jobId,
+        String status,
+        String topic,
+        String userId,
+        Long accountId,
+        LocalDate fromDate,
+        LocalDate toDate,
+        long published,
+        String error,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt
+) {
+    public static ReplayJobDto from(ReplayJob job) {
+        return new ReplayJobDto(
+                job.getId(),
+                job.getStatus().name(),
+                job.getTopic(),
+                job.getUserId(),
+                job.getBankAccountId(),
+                job.getFromDate(),
+                job.getToDate(),
+                job.getPublished(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+}
@@ -0,0 +1,17 @@
+package com.lobosoft.sync.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Which stored transactions to republish; every filter is optional.
+ *
+ * @param live publish to transactions.upserted instead of the replay topic
+ */
+public record ReplayRequest(
+        String userId,
+        Long accountId,
+        LocalDate fromDate,
+        LocalDate toDate,
+        boolean live
+) {
+}
@@ -0,0 +1,36 @@
+package com.lobosoft.sync.dto;
+
+import com.lobosoft.sync.domain.SyncJob;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record SyncJobDto(
+        UUID jobId,
+        Long accountId,
+        String kind,
+        String status,
+        int pages,
+        int inserted,
+        int updated,
+        String error,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt
+) {
+    public static SyncJobDto from(SyncJob job) {
+        return new SyncJobDto(
+                job.getId(),
+                job.getBankAccountId(),
+                job.getKind(),
+                job.getStatus().name(),
+                job.getPages(),
+                job.getInserted(),
+                job.getUpdated(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+}
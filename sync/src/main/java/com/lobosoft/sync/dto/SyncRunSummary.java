@@ -0,0 +1,33 @@
+package com.lobosoft.sync.dto;
+
+import java.time.Duration;
+
+public record SyncRunSummary(
+        int accounts,
+        int succeeded,
+        int failed,
+        // stopped because the account's provider quota ran out or the service shut down; resumed later
+        int deferred,
+        long inserted,
+        long changed,
+        long unchanged,
+        Duration elapsed,
+        Duration p50Latency,
+        Duration p95Latency,
+        Duration maxLatency
+) {
+    public double accountsPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? accounts : accounts * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "accounts=%d succeeded=%d failed=%d deferred=%d inserted=%d changed=%d unchanged=%d elapsed=%dms " +
+                        "throughput=%.2f acc/s latency p50=%dms p95=%dms max=%dms",
+                accounts, succeeded, failed, deferred, inserted, changed, unchanged, elapsed.toMillis(),
+                accountsPerSecond(), p50Latency.toMillis(), p95Latency.toMillis(), maxLatency.toMillis()
+        );
+    }
+}
@@ -0,0 +1,72 @@
+package com.lobosoft.sync.events;
+
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Reads transactions.upserted in either encoding, chosen by the content-type header.
+ * Records without the header predate the protobuf schema and are read as JSON.
+ */
+public class TransactionEventDeserializer implements Deserializer<TransactionUpsertedEvent> {
+
+    private final JacksonJsonDeserializer<TransactionUpsertedEvent> json =
+            new JacksonJsonDeserializer<>(TransactionUpsertedEvent.class).ignoreTypeHeaders().trustedPackages("*");
+
+    @Override
+    public TransactionUpsertedEvent deserialize(String topic, Headers headers, byte[] data) {
+        Header contentType = headers == null ? null : headers.lastHeader(TransactionEventSerializer.HEADER_CONTENT_TYPE);
+        if (contentType != null && new String(contentType.value(), StandardCharsets.UTF_8)
+                .startsWith("application/x-protobuf")) {
+            return deserialize(topic, data);
+        }
+        return json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public TransactionUpsertedEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        TransactionUpserted p;
+        try {
+            p = TransactionUpserted.parseFrom(data);
+        } catch (Exception e) {
+            throw new SerializationException("Invalid TransactionUpserted payload", e);
+        }
+
+        BigInteger unscaled = p.getAmountUnscaled().isEmpty()
+                ? BigInteger.ZERO
+                : new BigInteger(p.getAmountUnscaled().toByteArray());
+
+        return new TransactionUpsertedEvent(
+                p.getTransactionId(),
+                p.getUserId(),
+                p.getAccountId(),
+                new BigDecimal(unscaled, p.getAmountScale()),
+                emptyToNull(p.getCurrency()),
+                emptyToNull(p.getDirection()),
+                p.hasBookingEpochDay() ? LocalDate.ofEpochDay(p.getBookingEpochDay()).toString() : null,
+                p.hasDescriptionRaw() ? p.getDescriptionRaw() : null,
+                p.hasDescriptionDisplay() ? p.getDescriptionDisplay() : null
+        );
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,35 @@
+package com.lobosoft.sync.events;
+
+import com.lobosoft.sync.config.EventProperties;
+import com.lobosoft.sync.dto.OutboxMessage;
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns events into outbox messages in the configured format, tagging each with the
+ * content type the relay forwards as a Kafka header.
+ */
+@Component
+public class TransactionEventEncoder {
+
+    private final TransactionEventSerializer protobuf = new TransactionEventSerializer();
+    private final JacksonJsonSerializer<TransactionUpsertedEvent> json =
+            new JacksonJsonSerializer<TransactionUpsertedEvent>().noTypeInfo();
+
+    private final EventProperties props;
+
+    public TransactionEventEncoder(EventProperties props) {
+        this.props = props;
+    }
+
+    public OutboxMessage encode(String topic, TransactionUpsertedEvent event) {
+        String key = event.getTransactionId().toString();
+        if (props.getFormat() == EventProperties.Format.JSON) {
+            return new OutboxMessage(0L, topic, key, TransactionEventSerializer.CONTENT_TYPE_JSON,
+                    json.serialize(topic, event));
+        }
+        return new OutboxMessage(0L, topic, key, TransactionEventSerializer.CONTENT_TYPE_PROTOBUF,
+                protobuf.serialize(topic, event));
+    }
+}
@@ -0,0 +1,44 @@
+package com.lobosoft.sync.events;
+
+import com.google.protobuf.ByteString;
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Encodes {@link TransactionUpsertedEvent} as a v1 {@link TransactionUpserted} protobuf.
+ */
+public class TransactionEventSerializer implements Serializer<TransactionUpsertedEvent> {
+
+    public static final String HEADER_CONTENT_TYPE = "content-type";
+    public static final String CONTENT_TYPE_PROTOBUF = "application/x-protobuf;message=events.TransactionUpserted;v=1";
+    public static final String CONTENT_TYPE_JSON = "application/json";
+
+    @Override
+    public byte[] serialize(String topic, TransactionUpsertedEvent event) {
+        if (event == null) {
+            return null;
+        }
+
+        TransactionUpserted.Builder b = TransactionUpserted.newBuilder()
+                .setTransactionId(event.getTransactionId())
+                .setUserId(event.getUserId())
+                .setAccountId(event.getAccountId());
+
+        BigDecimal amount = event.getAmount() == null ? BigDecimal.ZERO : event.getAmount();
+        b.setAmountUnscaled(ByteString.copyFrom(amount.unscaledValue().toByteArray()));
+        b.setAmountScale(amount.scale());
+
+        if (event.getCurrency() != null) b.setCurrency(event.getCurrency());
+        if (event.getDirection() != null) b.setDirection(event.getDirection());
+        if (event.getBookingDate() != null) {
+            b.setBookingEpochDay(Math.toIntExact(LocalDate.parse(event.getBookingDate()).toEpochDay()));
+        }
+        if (event.getDescriptionRaw() != null) b.setDescriptionRaw(event.getDescriptionRaw());
+        if (event.getDescriptionDisplay() != null) b.setDescriptionDisplay(event.getDescriptionDisplay());
+
+        return b.build().toByteArray();
+    }
+}
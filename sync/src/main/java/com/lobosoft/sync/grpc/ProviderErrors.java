@@ -0,0 +1,41 @@
+package com.lobosoft.sync.grpc;
+
+import com.lobosoft.sync.domain.SyncFailureClass;
+import io.grpc.Status;
+
+/**
+ * Recognises the statuses enable-banking uses for provider-side conditions.
+ */
+public final class ProviderErrors {
+
+    // description enable-banking puts on RESOURCE_EXHAUSTED when the daily provider quota is spent
+    private static final String PROVIDER_QUOTA_EXHAUSTED = "provider_quota_exhausted";
+
+    private ProviderErrors() {
+    }
+
+    public static boolean isQuotaExhausted(Throwable e) {
+        Status status = Status.fromThrowable(e);
+        return status.getCode() == Status.Code.RESOURCE_EXHAUSTED
+                && PROVIDER_QUOTA_EXHAUSTED.equals(status.getDescription());
+    }
+
+    /**
+     * Classifies a failed sync. Anything that is not a gRPC status (a database error, say)
+     * is our own problem and counts as transient.
+     */
+    public static SyncFailureClass classify(Throwable e) {
+        return switch (Status.fromThrowable(e).getCode()) {
+            case PERMISSION_DENIED, UNAUTHENTICATED -> SyncFailureClass.AUTH_EXPIRED;
+            case NOT_FOUND, INVALID_ARGUMENT, FAILED_PRECONDITION, OUT_OF_RANGE, UNIMPLEMENTED ->
+                    SyncFailureClass.PERMANENT;
+            default -> SyncFailureClass.TRANSIENT;
+        };
+    }
+
+    // the message stored with the account and shown to operators
+    public static String describe(Throwable e) {
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,216 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncSchedulerProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.AccountLeaseRepository;
+import com.lobosoft.sync.domain.SyncFailureClass;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import com.lobosoft.sync.dto.DeadLetteredAccount;
+import com.lobosoft.sync.grpc.ProviderErrors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out account leases for this replica and keeps them alive while it works.
+ * A replica that dies stops heartbeating and its accounts become claimable once
+ * the lease TTL runs out.
+ */
+@Service
+@Slf4j
+public class AccountLeaseManager {
+
+    private final AccountLeaseRepository leaseRepository;
+    private final SyncSchedulerProperties props;
+    private final SyncCadencePolicy cadencePolicy;
+
+    private final String owner;
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+    // held accounts whose lease could not be extended; their syncs stop at the next page
+    private final Set<Long> lost = ConcurrentHashMap.newKeySet();
+
+    public AccountLeaseManager(AccountLeaseRepository leaseRepository,
+                               SyncSchedulerProperties props,
+                               SyncCadencePolicy cadencePolicy) {
+        this.leaseRepository = leaseRepository;
+        this.props = props;
+        this.cadencePolicy = cadencePolicy;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        log.info("[SYNC] Lease owner id is {}", owner);
+    }
+
+    /**
+     * Leases due accounts. An account whose lease ran out while a sync on this replica still works
+     * on it (e.g. after a long GC pause) is re-leased but not handed out again.
+     */
+    public List<Long> claimDue(int limit) {
+        List<Long> ids = leaseRepository.claimDue(owner, props.getLeaseTtl(), limit);
+        List<Long> claimed = ids.stream().filter(held::add).toList();
+        claimed.forEach(lost::remove);
+        return claimed;
+    }
+
+    /**
+     * Leases one account unless anyone holds it, this replica included: {@code held} guards
+     * the account in process, the database row across replicas.
+     */
+    public boolean tryAcquire(long accountId) {
+        if (!held.add(accountId)) {
+            return false;
+        }
+        boolean acquired = false;
+        try {
+            acquired = leaseRepository.tryAcquire(accountId, owner, props.getLeaseTtl());
+            if (acquired) {
+                lost.remove(accountId);
+            }
+            return acquired;
+        } finally {
+            if (!acquired) {
+                held.remove(accountId);
+            }
+        }
+    }
+
+    /**
+     * Throws when this replica lost the account's lease while syncing it. Called before every page is
+     * stored, so a sync that lost its account never writes a checkpoint over the new owner's.
+     *
+     * @throws LeaseLostException when the lease could not be extended and may be held elsewhere
+     */
+    public void checkHeld(long accountId) {
+        if (lost.contains(accountId)) {
+            throw new LeaseLostException(accountId);
+        }
+    }
+
+    /**
+     * Releases the lease after a successful sync and schedules the account's next sync. A sync that
+     * turned out to resume an interrupted backfill is released as {@link #releaseAfterBackfill} would.
+     */
+    public void release(Account account, AccountSyncResult result) {
+        release(account, result, result.backfill());
+    }
+
+    /**
+     * Like {@link #release(Account, AccountSyncResult)} for an attempt that re-fetched the account's
+     * history, whose insert count must not feed the insert rate.
+     */
+    public void releaseAfterBackfill(Account account, AccountSyncResult result) {
+        release(account, result, true);
+    }
+
+    /**
+     * Releases the lease after a failed sync. The account backs off according to how it failed and is
+     * dead-lettered once it has failed the same way too often in a row.
+     */
+    public void releaseFailed(Account account, Throwable cause) {
+        SyncFailureClass failureClass = ProviderErrors.classify(cause);
+        SyncCadencePolicy.Schedule next = cadencePolicy.afterFailure(account, failureClass, Instant.now());
+        boolean deadLetter = cadencePolicy.shouldDeadLetter(failureClass, next.failures());
+
+        if (forget(account.getId())) {
+            return;
+        }
+        leaseRepository.releaseFailed(account.getId(), owner, next.nextSyncAt(), next.failures(),
+                failureClass, ProviderErrors.describe(cause), deadLetter);
+        if (deadLetter) {
+            log.warn("[SYNC] Account id={} dead-lettered after {} {} failure(s) in a row: {}",
+                    account.getId(), next.failures(), failureClass, cause.getMessage());
+        } else {
+            log.debug("[SYNC] Account id={} failed ({}), retrying at {} (failures={})",
+                    account.getId(), failureClass, next.nextSyncAt(), next.failures());
+        }
+    }
+
+    public List<DeadLetteredAccount> deadLettered() {
+        return leaseRepository.findDeadLettered();
+    }
+
+    /**
+     * Puts a dead-lettered account back into the work queue.
+     *
+     * @throws ResponseStatusException 404 when the account is not dead-lettered
+     */
+    public void requeue(long accountId) {
+        if (!leaseRepository.requeue(accountId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account is not dead-lettered");
+        }
+        log.info("[SYNC] Account id={} requeued from the dead letters", accountId);
+    }
+
+    /**
+     * Releases the lease of an account whose provider quota ran out, scheduling it for the quota reset.
+     */
+    public void releaseQuotaExhausted(Account account) {
+        store(account, cadencePolicy.afterQuotaExhausted(account, Instant.now()));
+    }
+
+    /**
+     * Releases the lease of an account whose sync stopped for shutdown, leaving it due right away so
+     * another replica resumes it from its checkpoint.
+     */
+    public void releaseInterrupted(Account account) {
+        store(account, new SyncCadencePolicy.Schedule(Instant.now(), account.getInsertRate(), account.getSyncFailures()));
+    }
+
+    private void release(Account account, AccountSyncResult result, boolean backfill) {
+        store(account, cadencePolicy.next(account, result, backfill, Instant.now()));
+    }
+
+    private void store(Account account, SyncCadencePolicy.Schedule next) {
+        if (forget(account.getId())) {
+            return;
+        }
+        leaseRepository.release(account.getId(), owner, next.nextSyncAt(), next.insertRate(), next.failures());
+        log.debug("[SYNC] Account id={} next sync at {} (rate={}/h, failures={})",
+                account.getId(), next.nextSyncAt(), String.format("%.2f", next.insertRate()), next.failures());
+    }
+
+    /**
+     * Drops the account from the held set.
+     *
+     * @return true when its lease was lost, so the row belongs to another owner and must not be written
+     */
+    private boolean forget(long accountId) {
+        held.remove(accountId);
+        if (lost.remove(accountId)) {
+            log.info("[SYNC] Account id={} stopped after losing its lease, leaving it to the new owner", accountId);
+            return true;
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${sync.scheduler.lease-heartbeat-ms:20000}")
+    public void heartbeat() {
+        List<Long> ids = held.stream().filter(id -> !lost.contains(id)).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Long> extended = Set.copyOf(leaseRepository.heartbeat(owner, props.getLeaseTtl(), ids));
+        for (Long id : ids) {
+            // expired (e.g. after a long GC pause) and taken over; only a sync still running here can be told
+            if (!extended.contains(id) && held.contains(id)) {
+                lost.add(id);
+                log.warn("[SYNC] Lease of account id={} could not be extended, stopping its sync", id);
+            }
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "sync";
+        }
+    }
+}
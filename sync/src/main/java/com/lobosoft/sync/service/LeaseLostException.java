@@ -0,0 +1,12 @@
+package com.lobosoft.sync.service;
+
+/**
+ * The replica lost an account's lease mid-sync, e.g. after a pause longer than the lease TTL, and
+ * another replica may already be syncing it. The page in flight is rolled back and its checkpoint
+ * left alone, so the new owner carries on from the last page this replica stored.
+ */
+public class LeaseLostException extends RuntimeException {
+    public LeaseLostException(Long accountId) {
+        super("Lease of account " + accountId + " was lost mid-sync");
+    }
+}
@@ -0,0 +1,109 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.OutboxProperties;
+import com.lobosoft.sync.domain.OutboxRelayLock;
+import com.lobosoft.sync.domain.OutboxRepository;
+import com.lobosoft.sync.dto.OutboxMessage;
+import com.lobosoft.sync.events.TransactionEventSerializer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the event outbox to Kafka. Only the replica holding the {@link OutboxRelayLock} relays,
+ * one batch at a time in outbox order, so events with the same key reach their partition in the
+ * order they were written. A batch is deleted only after the broker has acknowledged every message
+ * in it; otherwise the same rows are published again on the next round.
+ * The relay runs on a thread of its own, so a long sync never holds up publication.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxRelayLock relayLock;
+    private final KafkaTemplate<@NonNull String, byte[]> outboxKafkaTemplate;
+    private final OutboxProperties props;
+
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("outbox-relay").factory());
+
+    @PostConstruct
+    void start() {
+        executor.scheduleWithFixedDelay(this::relay, props.getPollIntervalMs(), props.getPollIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void relay() {
+        try {
+            if (!relayLock.tryLead()) {
+                return;
+            }
+            int published;
+            do {
+                published = publishBatch();
+            } while (published >= props.getBatchSize() && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            log.warn("[SYNC] Outbox relay round failed, will retry: {}", e.toString());
+        }
+    }
+
+    private int publishBatch() {
+        List<OutboxMessage> batch = outboxRepository.claimBatch(props.getBatchSize());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            acks[i] = outboxKafkaTemplate.send(toRecord(batch.get(i)));
+        }
+        outboxKafkaTemplate.flush();
+
+        try {
+            CompletableFuture.allOf(acks).get(props.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Kafka acks", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Kafka did not acknowledge outbox batch", e);
+        }
+
+        outboxRepository.deleteAll(batch);
+        log.debug("[SYNC] Relayed {} outbox messages", batch.size());
+        return batch.size();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(props.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // the content type travels as a header so consumers can tell protobuf from JSON payloads
+    static ProducerRecord<String, byte[]> toRecord(OutboxMessage m) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(m.topic(), m.key(), m.payload());
+        if (m.contentType() != null) {
+            record.headers().add(TransactionEventSerializer.HEADER_CONTENT_TYPE,
+                    m.contentType().getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+}
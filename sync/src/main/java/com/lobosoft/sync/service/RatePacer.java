@@ -0,0 +1,32 @@
+package com.lobosoft.sync.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces work out to a fixed rate shared by all callers. Each caller reserves its slot
+ * up front and sleeps until it comes, so concurrent callers queue fairly without a
+ * background refill thread.
+ */
+final class RatePacer {
+
+    private final long nanosPerPermit;
+    private long nextFree = System.nanoTime();
+
+    RatePacer(int permitsPerSecond) {
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / Math.max(1, permitsPerSecond);
+    }
+
+    void acquire(int permits) throws InterruptedException {
+        long wait = reserve(permits);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private synchronized long reserve(int permits) {
+        long now = System.nanoTime();
+        long start = Math.max(now, nextFree);
+        nextFree = start + permits * nanosPerPermit;
+        return start - now;
+    }
+}
@@ -0,0 +1,288 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.OutboxProperties;
+import com.lobosoft.sync.config.ReplayProperties;
+import com.lobosoft.sync.domain.ReplayJob;
+import com.lobosoft.sync.domain.ReplayJobRepository;
+import com.lobosoft.sync.domain.ReplayPartition;
+import com.lobosoft.sync.domain.ReplayPartitionRepository;
+import com.lobosoft.sync.dto.ReplayJobDto;
+import com.lobosoft.sync.dto.ReplayRequest;
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import com.lobosoft.sync.events.TransactionEventEncoder;
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Republishes stored transactions as {@code TransactionUpsertedEvent}s so downstream consumers can
+ * rebuild their state, e.g. after categorization rules changed, without waiting for re-syncs.
+ * The matching id range is split into partitions streamed in parallel. Events go straight to Kafka
+ * rather than through the outbox: a replay is repeatable, so after a failure it simply resumes from
+ * each partition's last acknowledged id, at the cost of republishing at most one batch.
+ */
+@Service
+@Slf4j
+public class ReplayService {
+
+    private static final String LIVE_TOPIC = "transactions.upserted";
+
+    private final ReplayJobRepository jobRepository;
+    private final ReplayPartitionRepository partitionRepository;
+    private final TransactionEventEncoder eventEncoder;
+    private final KafkaTemplate<@NonNull String, byte[]> outboxKafkaTemplate;
+    private final ReplayProperties props;
+    private final OutboxProperties outboxProps;
+    private final SyncShutdown shutdown;
+    private final TransactionTemplate readTemplate;
+    private final RatePacer pacer;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    public ReplayService(ReplayJobRepository jobRepository,
+                         ReplayPartitionRepository partitionRepository,
+                         TransactionEventEncoder eventEncoder,
+                         KafkaTemplate<@NonNull String, byte[]> outboxKafkaTemplate,
+                         ReplayProperties props,
+                         OutboxProperties outboxProps,
+                         SyncShutdown shutdown,
+                         PlatformTransactionManager transactionManager) {
+        this.jobRepository = jobRepository;
+        this.partitionRepository = partitionRepository;
+        this.eventEncoder = eventEncoder;
+        this.outboxKafkaTemplate = outboxKafkaTemplate;
+        this.props = props;
+        this.outboxProps = outboxProps;
+        this.shutdown = shutdown;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.pacer = new RatePacer(props.getMaxEventsPerSecond());
+    }
+
+    public ReplayJobDto start(ReplayRequest request) {
+        if (request.fromDate() != null && request.toDate() != null && request.fromDate().isAfter(request.toDate())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromDate is after toDate");
+        }
+
+        ReplayJob job = new ReplayJob();
+        job.setId(UUID.randomUUID());
+        job.setStatus(ReplayJob.Status.QUEUED);
+        job.setTopic(request.live() ? LIVE_TOPIC : props.getTopic());
+        job.setUserId(request.userId());
+        job.setBankAccountId(request.accountId());
+        job.setFromDate(request.fromDate());
+        job.setToDate(request.toDate());
+        job.setCreatedAt(Instant.now());
+        jobRepository.save(job);
+
+        log.info("[SYNC] Queued replay {} to {} (userId={}, accountId={}, {}..{})", job.getId(), job.getTopic(),
+                job.getUserId(), job.getBankAccountId(), job.getFromDate(), job.getToDate());
+        submit(job);
+        return ReplayJobDto.from(job);
+    }
+
+    public ReplayJobDto get(UUID jobId) {
+        return ReplayJobDto.from(find(jobId));
+    }
+
+    /**
+     * Continues a failed replay, or one whose replica died mid-run, from its partitions' checkpoints.
+     *
+     * @throws ResponseStatusException 409 when the replay is still running or already succeeded
+     */
+    public synchronized ReplayJobDto resume(UUID jobId) {
+        ReplayJob job = find(jobId);
+        boolean abandoned = job.isActive() && !running.contains(jobId)
+                && job.getUpdatedAt() != null
+                && job.getUpdatedAt().isBefore(Instant.now().minus(props.getStaleAfter()));
+        if (job.getStatus() != ReplayJob.Status.FAILED && !abandoned) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Replay is " + job.getStatus());
+        }
+
+        job.setStatus(ReplayJob.Status.QUEUED);
+        job.setError(null);
+        job.setFinishedAt(null);
+        jobRepository.save(job);
+
+        log.info("[SYNC] Resuming replay {} after {} events", jobId, job.getPublished());
+        submit(job);
+        return ReplayJobDto.from(job);
+    }
+
+    private ReplayJob find(UUID jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Replay not found"));
+    }
+
+    private void submit(ReplayJob job) {
+        running.add(job.getId());
+        executor.submit(() -> {
+            try {
+                run(job);
+            } finally {
+                running.remove(job.getId());
+            }
+        });
+    }
+
+    private void run(ReplayJob job) {
+        job.setStatus(ReplayJob.Status.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(Instant.now());
+        }
+        jobRepository.save(job);
+
+        try {
+            List<ReplayPartition> partitions = partitionRepository.findAll(job.getId());
+            if (partitions.isEmpty()) {
+                long[] range = partitionRepository.idRange(job);
+                if (range == null) {
+                    finish(job, ReplayJob.Status.SUCCEEDED, null);
+                    log.info("[SYNC] Replay {} matched no transactions", job.getId());
+                    return;
+                }
+                partitions = split(job.getId(), range[0], range[1], Math.max(1, props.getPartitions()));
+                partitionRepository.createAll(partitions);
+            }
+
+            // one failed partition stops the others at their next batch; all resume together
+            AtomicBoolean failed = new AtomicBoolean();
+            List<Future<?>> futures = new ArrayList<>(partitions.size());
+            try (ExecutorService partitionExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (ReplayPartition partition : partitions) {
+                    if (!partition.done()) {
+                        futures.add(partitionExecutor.submit(() -> {
+                            try {
+                                replayPartition(job, partition, failed);
+                                return null;
+                            } catch (Exception e) {
+                                failed.set(true);
+                                throw e;
+                            }
+                        }));
+                    }
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            finish(job, ReplayJob.Status.SUCCEEDED, null);
+            log.info("[SYNC] Replay {} finished: {} events published to {}",
+                    job.getId(), jobRepository.findById(job.getId()).map(ReplayJob::getPublished).orElse(0L),
+                    job.getTopic());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof SyncInterruptedException) {
+                finish(job, ReplayJob.Status.FAILED, "Stopped by a service restart; resume to continue");
+                log.info("[SYNC] Replay {} stopped for shutdown", job.getId());
+            } else {
+                finish(job, ReplayJob.Status.FAILED, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                log.error("[SYNC] Replay {} failed", job.getId(), cause);
+            }
+        }
+    }
+
+    // one read transaction per batch keeps the cursor short-lived, so a replay never holds back vacuum
+    private void replayPartition(ReplayJob job, ReplayPartition partition, AtomicBoolean failed)
+            throws InterruptedException {
+        int batchSize = Math.max(1, props.getBatchSize());
+        long lastId = partition.lastId();
+        while (true) {
+            if (failed.get()) {
+                return;
+            }
+            if (shutdown.isStopping()) {
+                throw new SyncInterruptedException("Replay " + job.getId() + " stopped for shutdown");
+            }
+
+            // shutdown waits for the batch in flight to be acknowledged and checkpointed
+            shutdown.enter();
+            boolean done;
+            try {
+                List<TransactionUpsertedEvent> batch = new ArrayList<>(batchSize);
+                long afterId = lastId;
+                readTemplate.executeWithoutResult(status -> partitionRepository.stream(
+                        job, partition, afterId, batchSize, props.getFetchSize(), batch::add));
+                if (!batch.isEmpty()) {
+                    publish(job.getTopic(), batch);
+                    lastId = batch.getLast().getTransactionId();
+                }
+                done = batch.size() < batchSize;
+                partitionRepository.checkpoint(partition, lastId, batch.size(), done);
+            } finally {
+                shutdown.exit();
+            }
+            if (done) {
+                return;
+            }
+        }
+    }
+
+    private void publish(String topic, List<TransactionUpsertedEvent> batch) throws InterruptedException {
+        pacer.acquire(batch.size());
+
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            acks[i] = outboxKafkaTemplate.send(OutboxRelay.toRecord(eventEncoder.encode(topic, batch.get(i))));
+        }
+        outboxKafkaTemplate.flush();
+
+        try {
+            CompletableFuture.allOf(acks).get(outboxProps.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Kafka did not acknowledge replay batch", e);
+        }
+    }
+
+    // contiguous id ranges of roughly equal width; ids are dense enough for that to balance the rows
+    static List<ReplayPartition> split(UUID jobId, long minId, long maxId, int count) {
+        long span = maxId - minId + 1;
+        int n = (int) Math.min(count, span);
+        List<ReplayPartition> partitions = new ArrayList<>(n);
+        long from = minId - 1;
+        for (int i = 0; i < n; i++) {
+            long to = i == n - 1 ? maxId : minId - 1 + span * (i + 1) / n;
+            partitions.add(new ReplayPartition(jobId, i, from, to, from, false));
+            from = to;
+        }
+        return partitions;
+    }
+
+    private void finish(ReplayJob job, ReplayJob.Status status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedAt(Instant.now());
+        jobRepository.save(job);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
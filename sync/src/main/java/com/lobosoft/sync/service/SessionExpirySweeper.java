@@ -0,0 +1,63 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.domain.SessionExpiryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marks consent sessions that ran out, and the accounts linked through them, as EXPIRED so
+ * nothing keeps scheduling syncs that can only fail. Also publishes how many accounts the
+ * work queue currently leaves out, by reason.
+ */
+@Service
+@Slf4j
+public class SessionExpirySweeper {
+
+    private static final List<String> SKIP_REASONS = List.of("consent_expired", "consent_pending", "dead_lettered");
+
+    private final SessionExpiryRepository expiryRepository;
+    private final Counter expiredSessions;
+    private final Counter expiredAccounts;
+    private final Map<String, AtomicLong> skipped = new ConcurrentHashMap<>();
+
+    public SessionExpirySweeper(SessionExpiryRepository expiryRepository, MeterRegistry meterRegistry) {
+        this.expiryRepository = expiryRepository;
+        this.expiredSessions = Counter.builder("sync.sessions.expired")
+                .description("Consent sessions marked EXPIRED by the sweeper")
+                .register(meterRegistry);
+        this.expiredAccounts = Counter.builder("sync.accounts.expired")
+                .description("Accounts marked EXPIRED because their consent session ran out")
+                .register(meterRegistry);
+        for (String reason : SKIP_REASONS) {
+            AtomicLong value = new AtomicLong();
+            skipped.put(reason, value);
+            Gauge.builder("sync.scheduler.skipped", value, AtomicLong::get)
+                    .description("Accounts the sync work queue leaves out")
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sync.sessions.sweep-interval-ms:300000}")
+    public void sweep() {
+        int sessions = expiryRepository.expireSessions();
+        int accounts = expiryRepository.expireAccounts();
+        expiredSessions.increment(sessions);
+        expiredAccounts.increment(accounts);
+        if (sessions > 0 || accounts > 0) {
+            log.info("[SYNC] Expired {} consent session(s) and {} account(s)", sessions, accounts);
+        }
+
+        Map<String, Long> counts = expiryRepository.countSkipped();
+        skipped.forEach((reason, value) -> value.set(counts.getOrDefault(reason, 0L)));
+    }
+}
@@ -0,0 +1,150 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncCadenceProperties;
+import com.lobosoft.sync.config.SyncFailureProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.ProviderQuotaRepository;
+import com.lobosoft.sync.domain.SyncFailureClass;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when an account should be synced next, from how many transactions its
+ * recent syncs found, the local time of day, how and how often it has just failed and how
+ * much of today's provider quota the account has left.
+ */
+@Component
+@RequiredArgsConstructor
+public class SyncCadencePolicy {
+
+    private final SyncCadenceProperties props;
+    private final ProviderQuotaRepository quotaRepository;
+    private final SyncFailureProperties failureProps;
+
+    /**
+     * @param result   outcome of the attempt that just succeeded
+     * @param backfill the attempt re-fetched history, so its insert count says nothing about the rate
+     */
+    public Schedule next(Account account, AccountSyncResult result, boolean backfill, Instant now) {
+        double rate = backfill ? account.getInsertRate() : updatedRate(account, result.inserted(), now);
+        Duration interval = rate <= 0
+                ? props.getMaxInterval()
+                : Duration.ofSeconds((long) (props.getTargetInsertsPerSync() / rate * 3600));
+
+        if (isQuietHour(now)) {
+            interval = scale(interval, props.getQuietHoursFactor());
+        }
+
+        Instant planned = now.plus(jittered(clamp(interval)));
+        return new Schedule(withinQuota(account, now, planned), rate, 0);
+    }
+
+    /**
+     * Backs a failed account off exponentially from the minimum interval, so a broken consent or bank
+     * stops costing provider calls. A failure of a different class than the previous one starts the
+     * count over, since it says nothing about whether the earlier problem persists.
+     */
+    public Schedule afterFailure(Account account, SyncFailureClass failureClass, Instant now) {
+        int failures = failureClass.name().equals(account.getSyncFailureClass())
+                ? account.getSyncFailures() + 1
+                : 1;
+        double factor = Math.pow(2, Math.min(failures, 20));
+        Duration backoff = scale(props.getMinInterval(), factor);
+        if (backoff.compareTo(failureProps.getMaxBackoff()) > 0) {
+            backoff = failureProps.getMaxBackoff();
+        }
+        return new Schedule(now.plus(jittered(backoff)), account.getInsertRate(), failures);
+    }
+
+    /**
+     * Whether an account that just failed {@code failures} times in a row this way should stop being scheduled.
+     */
+    public boolean shouldDeadLetter(SyncFailureClass failureClass, int failures) {
+        return failures >= failureProps.attemptsFor(failureClass);
+    }
+
+    /**
+     * Schedules an account whose provider quota ran out mid-sync for just after the quota resets.
+     * Running out of quota is not a failure, so it does not add to the backoff.
+     */
+    public Schedule afterQuotaExhausted(Account account, Instant now) {
+        return new Schedule(afterReset(nextQuotaReset(now)), account.getInsertRate(), account.getSyncFailures());
+    }
+
+    // pushes the next sync out far enough that the scheduled accesses left today last until the reset;
+    // a sync is one access however many pages it reads
+    private Instant withinQuota(Account account, Instant now, Instant planned) {
+        Instant reset = nextQuotaReset(now);
+        if (!planned.isBefore(reset)) {
+            return planned;
+        }
+
+        Integer remaining = quotaRepository.remainingScheduledCalls(account.getProviderAccountId());
+        if (remaining == null) {
+            return planned;
+        }
+
+        if (remaining == 0) {
+            return afterReset(reset);
+        }
+
+        Instant spread = now.plus(Duration.between(now, reset).dividedBy(remaining + 1));
+        return spread.isAfter(planned) ? spread : planned;
+    }
+
+    // ASPSPs count PSD2 access per UTC day
+    private static Instant nextQuotaReset(Instant now) {
+        return now.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    // spread accounts over the first minutes after the reset instead of all calling at midnight
+    private Instant afterReset(Instant reset) {
+        long spreadSeconds = Math.max(1, (long) (props.getMinInterval().toSeconds() * Math.max(props.getJitter(), 0)));
+        return reset.plusSeconds(ThreadLocalRandom.current().nextLong(spreadSeconds + 1));
+    }
+
+    // moving average of inserts per hour, measured over the time since the previous attempt
+    private double updatedRate(Account account, int inserted, Instant now) {
+        Instant previous = account.getLastSyncAttemptAt();
+        if (previous == null) {
+            // first sync sees the whole backfill window; it says little about the steady rate
+            return account.getInsertRate();
+        }
+
+        double hours = Math.max(Duration.between(previous, now).toSeconds() / 3600.0, 1.0 / 60);
+        double observed = inserted / hours;
+        double alpha = props.getRateSmoothing();
+        return alpha * observed + (1 - alpha) * account.getInsertRate();
+    }
+
+    private boolean isQuietHour(Instant now) {
+        int hour = now.atZone(props.getZone()).getHour();
+        int start = props.getQuietHoursStart();
+        int end = props.getQuietHoursEnd();
+        return start <= end ? hour >= start && hour < end : hour >= start || hour < end;
+    }
+
+    private Duration clamp(Duration d) {
+        if (d.compareTo(props.getMinInterval()) < 0) return props.getMinInterval();
+        if (d.compareTo(props.getMaxInterval()) > 0) return props.getMaxInterval();
+        return d;
+    }
+
+    private Duration jittered(Duration d) {
+        double j = props.getJitter();
+        return j <= 0 ? d : scale(d, 1 + ThreadLocalRandom.current().nextDouble(-j, j));
+    }
+
+    private static Duration scale(Duration d, double factor) {
+        return Duration.ofSeconds((long) Math.min(d.toSeconds() * factor, Long.MAX_VALUE / 2.0));
+    }
+
+    public record Schedule(Instant nextSyncAt, double insertRate, int failures) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.lobosoft.sync.service;
+
+/**
+ * A sync stopped at a page boundary because the service is shutting down. Everything up to
+ * the last page is stored and checkpointed; the account's next sync resumes from there.
+ */
+public class SyncInterruptedException extends RuntimeException {
+    public SyncInterruptedException(Long accountId) {
+        super("Sync of account " + accountId + " stopped for shutdown");
+    }
+
+    public SyncInterruptedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,217 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncBackfillProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.AccountRepository;
+import com.lobosoft.sync.domain.SyncJob;
+import com.lobosoft.sync.domain.SyncJobRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import com.lobosoft.sync.dto.SyncJobDto;
+import com.lobosoft.sync.grpc.ProviderErrors;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs fetch-all requests in the background: the caller gets a job id straight away and
+ * polls {@link #getJob} for progress while the sync runs under the scheduler's permits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncJobService {
+
+    private static final Duration LEASE_RETRY = Duration.ofSeconds(2);
+
+    private final AccountRepository accountRepository;
+    private final SyncJobRepository syncJobRepository;
+    private final TransactionSyncService transactionSyncService;
+    private final SyncScheduler syncScheduler;
+    private final AccountLeaseManager leaseManager;
+    private final SyncSingleFlight singleFlight;
+    private final SyncBackfillProperties backfillProps;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a fetch-all for the account, or returns the one already queued or running. A job
+     * whose replica died before finishing it is marked failed and replaced.
+     */
+    public synchronized SyncJobDto startFetchAll(String userId, Long accountId) {
+        Account account = accountRepository.findById(accountId)
+                .filter(a -> a.getUserId().equals(userId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found for user"));
+
+        var active = syncJobRepository.findFirstByBankAccountIdAndKindAndStatusInOrderByCreatedAtDesc(
+                accountId, SyncJob.KIND_FETCH_ALL, EnumSet.of(SyncJob.Status.QUEUED, SyncJob.Status.RUNNING));
+        if (active.isPresent()) {
+            SyncJob existing = active.get();
+            if (!isAbandoned(existing)) {
+                log.info("[SYNC] Fetch-all already in progress for account id={} (job {})", accountId, existing.getId());
+                return SyncJobDto.from(existing);
+            }
+            finish(existing, SyncJob.Status.FAILED, "Abandoned: its replica stopped before finishing");
+            log.warn("[SYNC] Fetch-all job {} for account id={} was abandoned, starting a new one",
+                    existing.getId(), accountId);
+        }
+
+        SyncJob job = new SyncJob();
+        job.setId(UUID.randomUUID());
+        job.setUserId(userId);
+        job.setBankAccountId(accountId);
+        job.setKind(SyncJob.KIND_FETCH_ALL);
+        job.setStatus(SyncJob.Status.QUEUED);
+        job.setCreatedAt(Instant.now());
+        save(job);
+
+        log.info("[SYNC] Queued fetch-all job {} for account id={}", job.getId(), accountId);
+        running.add(job.getId());
+        executor.submit(() -> {
+            try {
+                runFetchAll(job, account);
+            } finally {
+                running.remove(job.getId());
+            }
+        });
+
+        return SyncJobDto.from(job);
+    }
+
+    public SyncJobDto getJob(String userId, UUID jobId) {
+        return syncJobRepository.findByIdAndUserId(jobId, userId)
+                .map(SyncJobDto::from)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found"));
+    }
+
+    // neither running here nor touched lately: its replica stopped without finishing it
+    private boolean isAbandoned(SyncJob job) {
+        return !running.contains(job.getId())
+                && job.getUpdatedAt() != null
+                && job.getUpdatedAt().isBefore(Instant.now().minus(backfillProps.getJobStaleAfter()));
+    }
+
+    private void runFetchAll(SyncJob job, Account account) {
+        try {
+            // any other sync of the account, on this replica or another, holds the lease; wait for it to finish
+            while (!leaseManager.tryAcquire(account.getId())) {
+                // still alive: keep the job from looking abandoned while it waits
+                if (job.getUpdatedAt().isBefore(Instant.now().minus(backfillProps.getJobStaleAfter().dividedBy(2)))) {
+                    save(job);
+                }
+                Thread.sleep(LEASE_RETRY.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, SyncJob.Status.FAILED, "Interrupted while waiting for the account lease");
+            return;
+        } catch (RuntimeException e) {
+            finish(job, SyncJob.Status.FAILED, "Could not take the account lease: " + e.getMessage());
+            log.error("[SYNC] Fetch-all job {} could not take the lease of account id={}", job.getId(), account.getId(), e);
+            return;
+        }
+
+        AccountSyncResult synced = null;
+        Exception failure = null;
+        boolean quotaExhausted = false;
+        boolean interrupted = false;
+        try {
+            // waits out a sync of the account running here; on-demand syncs meanwhile join the backfill
+            synced = singleFlight.leadBackfill(account.getId(), () -> syncScheduler.withPermits(account, () -> {
+                job.setStatus(SyncJob.Status.RUNNING);
+                job.setStartedAt(Instant.now());
+                save(job);
+
+                // an interrupted fetch-all carries on from its checkpoints instead of starting over
+                if (!transactionSyncService.hasInterruptedBackfill(account)) {
+                    transactionSyncService.resetAccount(account);
+                }
+                AccountSyncResult result = transactionSyncService.backfillAccountTransactions(account, true,
+                        progress -> saveProgress(job, progress));
+                saveProgress(job, result);
+                return result;
+            }));
+
+            finish(job, SyncJob.Status.SUCCEEDED, null);
+            log.info("[SYNC] Fetch-all job {} finished: {} pages, {} inserted",
+                    job.getId(), job.getPages(), job.getInserted());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (e instanceof SyncInterruptedException) {
+                interrupted = true;
+                finish(job, SyncJob.Status.FAILED, "Stopped by a service restart; fetching again resumes where it stopped");
+                log.info("[SYNC] Fetch-all job {} stopped for shutdown after {} pages", job.getId(), job.getPages());
+            } else if (e instanceof LeaseLostException) {
+                interrupted = true;
+                finish(job, SyncJob.Status.FAILED, "Taken over by another replica, which resumes where it stopped");
+                log.warn("[SYNC] Fetch-all job {} lost the lease of account id={} after {} pages",
+                        job.getId(), account.getId(), job.getPages());
+            } else if (ProviderErrors.isQuotaExhausted(e)) {
+                // pages fetched so far are stored; the next sync carries on from there after the reset
+                quotaExhausted = true;
+                finish(job, SyncJob.Status.FAILED, "Provider quota for today is used up");
+                log.warn("[SYNC] Fetch-all job {} stopped after {} pages: provider quota exhausted for account id={}",
+                        job.getId(), job.getPages(), account.getId());
+            } else {
+                failure = e;
+                finish(job, SyncJob.Status.FAILED, e.getClass().getSimpleName() + ": " + e.getMessage());
+                log.error("[SYNC] Fetch-all job {} failed for account id={}", job.getId(), account.getId(), e);
+            }
+        } finally {
+            if (quotaExhausted) {
+                leaseManager.releaseQuotaExhausted(account);
+            } else if (interrupted) {
+                leaseManager.releaseInterrupted(account);
+            } else if (synced != null) {
+                leaseManager.releaseAfterBackfill(account, synced);
+            } else {
+                leaseManager.releaseFailed(account, failure != null ? failure
+                        : new IllegalStateException("Fetch-all job " + job.getId() + " did not finish"));
+            }
+        }
+    }
+
+    private void finish(SyncJob job, SyncJob.Status status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedAt(Instant.now());
+        save(job);
+    }
+
+    private void save(SyncJob job) {
+        job.setUpdatedAt(Instant.now());
+        syncJobRepository.save(job);
+    }
+
+    // backfill shards report from several threads; totals only grow, so a late, older report is dropped
+    private void saveProgress(SyncJob job, AccountSyncResult progress) {
+        synchronized (job) {
+            if (progress.pages() < job.getPages()) {
+                return;
+            }
+            job.setPages(progress.pages());
+            job.setInserted(progress.inserted());
+            job.setUpdated(progress.changed());
+            save(job);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,363 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncSchedulerProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.AccountRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import com.lobosoft.sync.dto.SyncRunSummary;
+import com.lobosoft.sync.grpc.ProviderErrors;
+import io.grpc.StatusRuntimeException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans the periodic sync out over virtual threads, one per account.
+ * A global semaphore bounds the total number of in-flight syncs and a
+ * semaphore per ASPSP keeps a single bank from being flooded. The same
+ * permits gate on-demand jobs, so they share one provider budget.
+ * The queue is drained on a thread of its own, so a long drain never
+ * holds up the lease heartbeat or the other scheduled tasks.
+ */
+@Service
+@Slf4j
+public class SyncScheduler {
+
+    private static final String UNKNOWN_ASPSP = "UNKNOWN";
+
+    private final AccountRepository accountRepository;
+    private final TransactionSyncService transactionSyncService;
+    private final SyncSchedulerProperties props;
+    private final AccountLeaseManager leaseManager;
+    private final SyncShutdown shutdown;
+    private final SyncSingleFlight singleFlight;
+
+    // fair semaphores hand out permits in arrival order, so a slow account holds
+    // one slot at most and everything queued behind it still advances
+    private final Semaphore global;
+    private final Map<String, Semaphore> perAspsp = new ConcurrentHashMap<>();
+
+    private final ExecutorService drainer =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("sync-drain").factory());
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public SyncScheduler(AccountRepository accountRepository,
+                         TransactionSyncService transactionSyncService,
+                         SyncSchedulerProperties props,
+                         AccountLeaseManager leaseManager,
+                         SyncShutdown shutdown,
+                         SyncSingleFlight singleFlight) {
+        this.accountRepository = accountRepository;
+        this.transactionSyncService = transactionSyncService;
+        this.props = props;
+        this.leaseManager = leaseManager;
+        this.shutdown = shutdown;
+        this.singleFlight = singleFlight;
+        this.global = new Semaphore(Math.max(1, props.getMaxConcurrency()), true);
+    }
+
+    /**
+     * Starts draining the shared queue of due accounts, most overdue first, unless a drain is still
+     * running. Every replica polls it; leases make sure each due account is picked up by exactly one of them.
+     */
+    @Scheduled(fixedDelayString = "${sync.scheduler.poll-interval-ms:30000}")
+    public void runPeriodicSync() {
+        if (shutdown.isStopping() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainer.execute(() -> {
+                try {
+                    drainQueue();
+                } catch (RuntimeException e) {
+                    log.error("[SYNC] Draining the sync queue failed", e);
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            draining.set(false);
+        }
+    }
+
+    private void drainQueue() {
+        List<Long> claimed = leaseManager.claimDue(props.getClaimBatchSize());
+        while (!claimed.isEmpty()) {
+            List<Account> accounts = accountRepository.findAllById(claimed);
+            log.info("[SYNC] Leased {} due accounts", accounts.size());
+
+            SyncRunSummary summary = syncAll(accounts);
+            log.info("[SYNC] BankTransaction sync batch finished: {}", summary);
+
+            if (shutdown.isStopping()) {
+                return;
+            }
+            claimed = leaseManager.claimDue(props.getClaimBatchSize());
+        }
+    }
+
+    /**
+     * Syncs one account right away, outside the queue. Dead-lettered accounts are synced too, and leave
+     * the dead letters when this succeeds, e.g. after the user re-linked their bank. Repeated requests
+     * join a sync of the account already running here, or get the result of one that finished within
+     * {@code sync.scheduler.sync-now-fresh-for}.
+     *
+     * @throws ResponseStatusException 404 when the account does not exist, 409 when another sync holds the
+     *                                 account's lease, e.g. on another replica, or took it over mid-sync, 429 when
+     *                                 the account's provider quota is used up for today or 503 when the service is
+     *                                 shutting down
+     */
+    public AccountSyncResult syncNow(Long accountId) {
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found: " + accountId));
+
+        try {
+            return singleFlight.execute(accountId, props.getSyncNowFreshFor(), () -> syncLeased(account));
+        } catch (StatusRuntimeException e) {
+            if (!ProviderErrors.isQuotaExhausted(e)) {
+                throw e;
+            }
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Provider quota for this account is used up until midnight UTC");
+        } catch (SyncInterruptedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Sync service is shutting down; the sync resumes where it stopped");
+        } catch (LeaseLostException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Account was taken over by another sync, which carries on where this one stopped");
+        } catch (InterruptedException e) {
+            // only happens when the request thread is stopped, i.e. on shutdown
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Sync service is shutting down; the sync resumes where it stopped");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // the sync itself throws no checked exceptions; the Callable signature is all that declares them
+            throw new IllegalStateException("Sync of account " + accountId + " failed", e);
+        }
+    }
+
+    private AccountSyncResult syncLeased(Account account) throws Exception {
+        if (!leaseManager.tryAcquire(account.getId())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Account is already being synced");
+        }
+        AccountSyncResult result = null;
+        Exception failure = null;
+        try {
+            result = withPermits(account,
+                    () -> transactionSyncService.syncAccountTransactions(account, true, progress -> { }));
+            return result;
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (failure != null && ProviderErrors.isQuotaExhausted(failure)) {
+                leaseManager.releaseQuotaExhausted(account);
+            } else if (failure instanceof SyncInterruptedException || failure instanceof LeaseLostException) {
+                leaseManager.releaseInterrupted(account);
+            } else if (result != null) {
+                leaseManager.release(account, result);
+            } else {
+                leaseManager.releaseFailed(account, failure != null ? failure
+                        : new IllegalStateException("Sync of account " + account.getId() + " did not finish"));
+            }
+        }
+    }
+
+    public SyncRunSummary syncAll(List<Account> accounts) {
+        Instant started = Instant.now();
+        List<Future<AccountOutcome>> futures = new ArrayList<>(accounts.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Account account : interleaveByAspsp(accounts)) {
+                futures.add(executor.submit(() -> syncOne(account)));
+            }
+        } // close() waits for every submitted sync
+
+        return summarize(futures, Duration.between(started, Instant.now()));
+    }
+
+    /**
+     * Runs {@code work} for the account once both its ASPSP permit and a global permit are held.
+     */
+    public <T> T withPermits(Account account, Callable<T> work) throws Exception {
+        Semaphore aspsp = perAspsp.computeIfAbsent(aspspOf(account),
+                name -> new Semaphore(props.concurrencyFor(name), true));
+        aspsp.acquire();
+        try {
+            global.acquire();
+            try {
+                return work.call();
+            } finally {
+                global.release();
+            }
+        } finally {
+            aspsp.release();
+        }
+    }
+
+    // the account must already be leased to this replica; the lease is given back here
+    private AccountOutcome syncOne(Account account) throws Exception {
+        AccountOutcome outcome = null;
+        long start = System.nanoTime();
+        try {
+            // registered before taking permits, so a request waiting on this sync never holds a permit it needs
+            AccountSyncResult result = singleFlight.executeScheduled(account.getId(),
+                    () -> withPermits(account, () -> transactionSyncService.syncAccountTransactions(account)));
+            outcome = new AccountOutcome(result, Deferral.NONE, null, System.nanoTime() - start);
+        } catch (SyncInterruptedException e) {
+            log.info("[SYNC] Sync of account id={} stopped for shutdown, progress checkpointed", account.getId());
+            outcome = new AccountOutcome(null, Deferral.SHUTDOWN, null, System.nanoTime() - start);
+        } catch (LeaseLostException e) {
+            log.warn("[SYNC] Sync of account id={} stopped, its lease was taken over", account.getId());
+            outcome = new AccountOutcome(null, Deferral.LEASE_LOST, null, System.nanoTime() - start);
+        } catch (Exception e) {
+            if (ProviderErrors.isQuotaExhausted(e)) {
+                log.info("[SYNC] Provider quota exhausted for account id={}, deferring to the reset",
+                        account.getId());
+                outcome = new AccountOutcome(null, Deferral.QUOTA, null, System.nanoTime() - start);
+            } else {
+                log.error("[SYNC] Error syncing account id={} providerAccountId={}",
+                        account.getId(), account.getProviderAccountId(), e);
+                outcome = new AccountOutcome(null, Deferral.NONE, e, System.nanoTime() - start);
+            }
+        } finally {
+            if (outcome != null && outcome.deferral() == Deferral.QUOTA) {
+                leaseManager.releaseQuotaExhausted(account);
+            } else if (outcome != null && (outcome.deferral() == Deferral.SHUTDOWN
+                    || outcome.deferral() == Deferral.LEASE_LOST)) {
+                // a lost lease is not written back: the manager only forgets the account
+                leaseManager.releaseInterrupted(account);
+            } else if (outcome != null && outcome.result() != null) {
+                leaseManager.release(account, outcome.result());
+            } else {
+                leaseManager.releaseFailed(account, outcome != null ? outcome.error()
+                        : new IllegalStateException("Sync of account " + account.getId() + " did not finish"));
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Orders accounts round-robin across ASPSPs so the first permits of a run
+     * are spread over every bank instead of draining one bank's accounts first.
+     */
+    private List<Account> interleaveByAspsp(List<Account> accounts) {
+        Map<String, Deque<Account>> byAspsp = new LinkedHashMap<>();
+        for (Account account : accounts) {
+            byAspsp.computeIfAbsent(aspspOf(account), k -> new ArrayDeque<>()).add(account);
+        }
+
+        List<Account> ordered = new ArrayList<>(accounts.size());
+        while (ordered.size() < accounts.size()) {
+            for (Deque<Account> queue : byAspsp.values()) {
+                Account next = queue.poll();
+                if (next != null) {
+                    ordered.add(next);
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private SyncRunSummary summarize(List<Future<AccountOutcome>> futures, Duration elapsed) {
+        int succeeded = 0;
+        int failed = 0;
+        int deferred = 0;
+        long inserted = 0;
+        long changed = 0;
+        long unchanged = 0;
+        List<Long> latencies = new ArrayList<>(futures.size());
+
+        for (Future<AccountOutcome> future : futures) {
+            AccountOutcome outcome;
+            try {
+                outcome = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed++;
+                continue;
+            } catch (ExecutionException e) {
+                failed++;
+                continue;
+            }
+
+            latencies.add(outcome.nanos());
+            if (outcome.deferral() != Deferral.NONE) {
+                deferred++;
+            } else if (outcome.result() == null) {
+                failed++;
+            } else {
+                succeeded++;
+                inserted += outcome.result().inserted();
+                changed += outcome.result().changed();
+                unchanged += outcome.result().unchanged();
+            }
+        }
+
+        latencies.sort(null);
+        return new SyncRunSummary(
+                futures.size(),
+                succeeded,
+                failed,
+                deferred,
+                inserted,
+                changed,
+                unchanged,
+                elapsed,
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.95),
+                percentile(latencies, 1.0)
+        );
+    }
+
+    @PreDestroy
+    void stopDraining() {
+        drainer.shutdownNow();
+    }
+
+    private static Duration percentile(List<Long> sortedNanos, double p) {
+        if (sortedNanos.isEmpty()) return Duration.ZERO;
+        int idx = (int) Math.ceil(p * sortedNanos.size()) - 1;
+        return Duration.ofNanos(sortedNanos.get(Math.max(0, idx)));
+    }
+
+    private static String aspspOf(Account account) {
+        String name = account.getAspspName();
+        return (name == null || name.isBlank()) ? UNKNOWN_ASPSP : name;
+    }
+
+    private record AccountOutcome(AccountSyncResult result, Deferral deferral, Exception error, long nanos) {
+    }
+
+    // why an account was handed back unfinished without counting as a failure
+    private enum Deferral {
+        NONE,
+        QUOTA,
+        SHUTDOWN,
+        LEASE_LOST
+    }
+}
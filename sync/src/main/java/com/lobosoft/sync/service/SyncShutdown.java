@@ -0,0 +1,78 @@
+package com.lobosoft.sync.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops running syncs at their next page boundary when the application shuts down and
+ * reports the phase done once they have all let go, so the last committed page of every
+ * sync is checkpointed within {@code spring.lifecycle.timeout-per-shutdown-phase}.
+ */
+@Component
+@Slf4j
+public class SyncShutdown implements SmartLifecycle {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object drained = new Object();
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+
+    public boolean isStopping() {
+        return stopping;
+    }
+
+    /**
+     * Marks a provider stream as in flight; pair with {@link #exit()}.
+     */
+    public void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    public void exit() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> { });
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stopping = true;
+        log.info("[SYNC] Shutting down: stopping {} running sync stream(s) at their next page", inFlight.get());
+        Thread.ofVirtual().name("sync-shutdown").start(() -> {
+            try {
+                synchronized (drained) {
+                    while (inFlight.get() > 0) {
+                        drained.wait(1000);
+                    }
+                }
+                log.info("[SYNC] All running syncs checkpointed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running = false;
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,154 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.dto.AccountSyncResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses overlapping syncs of one account on this replica into a single run. A request
+ * arriving while the account is being synced waits for that run and shares its result, and
+ * one arriving shortly after a run finished gets that result without calling the provider.
+ * Across replicas the account lease still decides who may sync.
+ */
+@Component
+public class SyncSingleFlight {
+
+    // finished runs kept for the freshness window; beyond this many accounts the oldest results go first
+    private static final int MAX_RECENT = 10_000;
+
+    private final Map<Long, Flight> inFlight = new ConcurrentHashMap<>();
+    // in order of completion, so the eldest entry is always the least fresh result; guarded by itself
+    private final Map<Long, Completed> recent = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Completed> eldest) {
+            return size() > MAX_RECENT;
+        }
+    };
+
+    private final Counter executed;
+    private final Counter joined;
+    private final Counter fresh;
+
+    public SyncSingleFlight(MeterRegistry meterRegistry) {
+        this.executed = requests(meterRegistry, "executed");
+        this.joined = requests(meterRegistry, "joined");
+        this.fresh = requests(meterRegistry, "fresh");
+    }
+
+    /**
+     * Runs {@code work} for the account, unless a run is already in flight, which is joined
+     * instead, or one finished within {@code freshFor}, whose result is returned.
+     */
+    public AccountSyncResult execute(long accountId, Duration freshFor, Callable<AccountSyncResult> work)
+            throws Exception {
+        Completed last;
+        synchronized (recent) {
+            last = recent.get(accountId);
+        }
+        if (last != null && last.at().plus(freshFor).isAfter(Instant.now())) {
+            fresh.increment();
+            return last.result();
+        }
+
+        Flight mine = new Flight(new CompletableFuture<>());
+        Flight running = inFlight.putIfAbsent(accountId, mine);
+        if (running != null) {
+            joined.increment();
+            return await(running.result());
+        }
+        return runAs(accountId, mine, work);
+    }
+
+    /**
+     * Runs a scheduled sync of the account, which holds the account's lease, so no other run here can
+     * really be syncing it: a request in flight is about to find the lease taken. The sync waits for
+     * such a request to end instead of sharing its outcome, and later requests join the sync. A backfill
+     * also holds the lease, so the queue never hands its account to a scheduled sync.
+     */
+    public AccountSyncResult executeScheduled(long accountId, Callable<AccountSyncResult> work) throws Exception {
+        return runAfterInFlight(accountId, work);
+    }
+
+    /**
+     * Runs a backfill of the account as a run of its own, after any run in flight has finished,
+     * since a shorter sync cannot stand in for it. On-demand requests may still join it.
+     */
+    public AccountSyncResult leadBackfill(long accountId, Callable<AccountSyncResult> work) throws Exception {
+        return runAfterInFlight(accountId, work);
+    }
+
+    private AccountSyncResult runAfterInFlight(long accountId, Callable<AccountSyncResult> work) throws Exception {
+        Flight mine = new Flight(new CompletableFuture<>());
+        Flight running;
+        while ((running = inFlight.putIfAbsent(accountId, mine)) != null) {
+            awaitEnd(running);
+        }
+        return runAs(accountId, mine, work);
+    }
+
+    private AccountSyncResult runAs(long accountId, Flight mine, Callable<AccountSyncResult> work) throws Exception {
+        executed.increment();
+        try {
+            AccountSyncResult result = work.call();
+            remember(accountId, result);
+            mine.result().complete(result);
+            return result;
+        } catch (Throwable e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(accountId, mine);
+        }
+    }
+
+    private void remember(long accountId, AccountSyncResult result) {
+        synchronized (recent) {
+            // re-inserted so the account moves to the newest end
+            recent.remove(accountId);
+            recent.put(accountId, new Completed(result, Instant.now()));
+        }
+    }
+
+    // its outcome is not ours; only its end matters
+    private static void awaitEnd(Flight running) {
+        try {
+            running.result().join();
+        } catch (RuntimeException e) {
+            // ended with a failure
+        }
+    }
+
+    private static AccountSyncResult await(CompletableFuture<AccountSyncResult> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("sync.singleflight.requests")
+                .description("Account sync requests that ran, joined a run in flight or reused a fresh result")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record Flight(CompletableFuture<AccountSyncResult> result) {
+    }
+
+    private record Completed(AccountSyncResult result, Instant at) {
+    }
+}
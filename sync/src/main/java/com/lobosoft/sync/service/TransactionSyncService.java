@@ -1,28 +1,61 @@
 package com.lobosoft.sync.service;
 
+import com.lobosoft.enablebanking.grpc.AccountTransactionsEvent;
 import com.lobosoft.enablebanking.grpc.EnableBankingGrpcServiceGrpc;
 import com.lobosoft.enablebanking.grpc.GetAccountTransactionsRequest;
-import com.lobosoft.enablebanking.grpc.GetAccountTransactionsResponse;
 import com.lobosoft.enablebanking.grpc.Transaction;
+import com.lobosoft.sync.config.SyncBackfillProperties;
 import com.lobosoft.sync.domain.Account;
 import com.lobosoft.sync.domain.AccountRepository;
 import com.lobosoft.sync.domain.BankTransaction;
+import com.lobosoft.sync.domain.OutboxRepository;
+import com.lobosoft.sync.domain.ProviderQuotaRepository;
+import com.lobosoft.sync.domain.SyncCheckpoint;
+import com.lobosoft.sync.domain.SyncCheckpointRepository;
+import com.lobosoft.sync.domain.TransactionBatchRepository;
 import com.lobosoft.sync.domain.TransactionRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import com.lobosoft.sync.dto.OutboxMessage;
 import com.lobosoft.sync.dto.TransactionUpsertedEvent;
 import com.lobosoft.sync.dto.UpsertResult;
-import lombok.NonNull;
+import com.lobosoft.sync.events.TransactionEventEncoder;
+import com.lobosoft.sync.grpc.ProviderErrors;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Service
 @RequiredArgsConstructor
@@ -31,111 +64,380 @@ public class TransactionSyncService {
 
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
-    private final KafkaTemplate<@NonNull String, @NonNull TransactionUpsertedEvent> kafkaTemplate;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final OutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionEventEncoder eventEncoder;
+    private final SyncBackfillProperties backfillProps;
+    private final SyncCheckpointRepository checkpointRepository;
+    private final SyncShutdown shutdown;
+    private final ProviderQuotaRepository quotaRepository;
+    private final AccountLeaseManager leaseManager;
 
     private static final String TX_TOPIC = "transactions.upserted";
 
     @GrpcClient("enable-banking-service")
     private EnableBankingGrpcServiceGrpc.EnableBankingGrpcServiceBlockingStub ebStub;
 
-    @Scheduled(fixedRate = 60 * 60 * 1000)
-    public void runPeriodicSync() {
-        log.info("[SYNC] Starting transaction sync for all accounts...");
+    public AccountSyncResult syncAccountTransactions(Long accountId) {
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + accountId));
+        return syncAccountTransactions(account);
+    }
 
-        List<Account> accounts = accountRepository.findActiveAndValid(Instant.now());
-        log.info("[SYNC] Found {} active accounts to sync", accounts.size());
+    public AccountSyncResult syncAccountTransactions(Account account) {
+        return syncAccountTransactions(account, false, progress -> { });
+    }
 
-        for (Account account : accounts) {
-            try {
-               syncAccountTransactions(account);
-            } catch (Exception e) {
-                log.error("[SYNC] Error syncing account id={} providerAccountId={}",
-                        account.getId(), account.getProviderAccountId(), e);
-            }
+    /**
+     * Syncs forward from the newest stored transaction. When the account's previous sync was
+     * interrupted, picks that sync up after its last committed page instead.
+     *
+     * @param userInitiated the sync was requested by the user, so it may use the provider calls
+     *                      enable-banking holds back from scheduled syncs
+     * @param onPage        called after every persisted page with the running totals so far
+     * @throws SyncInterruptedException when the service started shutting down mid-sync
+     * @throws LeaseLostException       when this replica lost the account's lease mid-sync
+     */
+    public AccountSyncResult syncAccountTransactions(Account account, boolean userInitiated,
+                                                     Consumer<AccountSyncResult> onPage) {
+        Long accountId = account.getId();
+        String providerAccountId = account.getProviderAccountId();
+
+        List<SyncCheckpoint> open = checkpointRepository.findAll(accountId);
+        if (!open.isEmpty() && open.getFirst().kind() == SyncCheckpoint.Kind.BACKFILL) {
+            // syncing forward from the newest stored transaction would leave the rest of the history missing
+            log.info("[SYNC] Account id={} has an interrupted backfill, resuming it", accountId);
+            return runBackfill(account, open, userInitiated, onPage);
+        }
+
+        SyncCheckpoint window;
+        if (!open.isEmpty()) {
+            window = open.getFirst();
+            log.info("[SYNC] Resuming sync of account id={} providerAccountId={} for {}..{} after {} page(s)",
+                    accountId, providerAccountId, window.windowFrom(), window.windowTo(), window.pagesDone());
+        } else {
+            LocalDate toDate = LocalDate.now();
+            window = new SyncCheckpoint(accountId, SyncCheckpoint.Kind.INCREMENTAL,
+                    determineFromDate(accountId, toDate), toDate, null, 0, false);
+            startCheckpoints(accountId, List.of(window));
+            log.info("[SYNC] Syncing account id={} providerAccountId={} from {} to {}",
+                    accountId, providerAccountId, window.windowFrom(), window.windowTo());
         }
 
-        log.info("[SYNC] BankTransaction sync finished");
+        RunningTotals totals = new RunningTotals(false);
+        fetchWindow(account, window, userInitiated, totals, txs -> txs, onPage);
+        leaseManager.checkHeld(accountId);
+        checkpointRepository.deleteAll(accountId);
+
+        AccountSyncResult result = totals.snapshot();
+        log.info("[SYNC] Account {} fully synced: {} inserted, {} changed, {} unchanged",
+                providerAccountId, result.inserted(), result.changed(), result.unchanged());
+        return result;
     }
 
-    public void syncAccountTransactions(Long accountId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + accountId));
-        syncAccountTransactions(account);
+    /**
+     * Fetches the account's history ({@code sync.backfill.history}) as date shards streamed concurrently,
+     * instead of following one chain of continuation keys from the oldest page to the newest. Each
+     * shard costs a provider access, so their number is capped by the quota the account has left;
+     * with little left the history is fetched as a single window.
+     * Transactions are deduplicated by provider id across shards before they are upserted, since
+     * undated or boundary transactions can come back in more than one shard. An interrupted
+     * backfill is resumed: finished shards are skipped and the others continue after their last page.
+     *
+     * @param onPage called after every persisted page, from any shard, with the running totals so far
+     * @throws SyncInterruptedException when the service started shutting down mid-backfill
+     * @throws LeaseLostException       when this replica lost the account's lease mid-backfill
+     */
+    public AccountSyncResult backfillAccountTransactions(Account account, boolean userInitiated,
+                                                         Consumer<AccountSyncResult> onPage) {
+        Long accountId = account.getId();
+
+        List<SyncCheckpoint> open = checkpointRepository.findAll(accountId);
+        if (open.isEmpty() || open.getFirst().kind() != SyncCheckpoint.Kind.BACKFILL) {
+            LocalDate toDate = LocalDate.now();
+            open = shards(accountId, toDate.minus(backfillProps.getHistory()), toDate, shardBudget(account));
+            startCheckpoints(accountId, open);
+        }
+        return runBackfill(account, open, userInitiated, onPage);
     }
 
-    private void syncAccountTransactions(Account account) {
-        String userId = account.getUserId();
+    public boolean hasInterruptedBackfill(Account account) {
+        List<SyncCheckpoint> open = checkpointRepository.findAll(account.getId());
+        return !open.isEmpty() && open.getFirst().kind() == SyncCheckpoint.Kind.BACKFILL;
+    }
+
+    private AccountSyncResult runBackfill(Account account, List<SyncCheckpoint> shards, boolean userInitiated,
+                                          Consumer<AccountSyncResult> onPage) {
         Long accountId = account.getId();
         String providerAccountId = account.getProviderAccountId();
+        List<SyncCheckpoint> pending = shards.stream().filter(shard -> !shard.done()).toList();
+
+        log.info("[SYNC] Backfilling account id={} providerAccountId={}: {} of {} shard(s) to fetch, {}..{}",
+                accountId, providerAccountId, pending.size(), shards.size(),
+                shards.getFirst().windowFrom(), shards.getLast().windowTo());
+
+        RunningTotals totals = new RunningTotals(true);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        UnaryOperator<List<Transaction>> dedupe = txs -> {
+            List<Transaction> fresh = new ArrayList<>(txs.size());
+            for (Transaction t : txs) {
+                if (seen.add(t.getProviderTransactionId())) {
+                    fresh.add(t);
+                }
+            }
+            return fresh;
+        };
+        Semaphore slots = new Semaphore(Math.max(1, backfillProps.getMaxConcurrentShards()));
+
+        // one failed shard cancels the streams of the others through the shared context
+        Context.CancellableContext backfillContext = Context.current().withCancellation();
+        List<Future<?>> futures = new ArrayList<>(pending.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (SyncCheckpoint shard : pending) {
+                futures.add(executor.submit(backfillContext.wrap(() -> {
+                    slots.acquire();
+                    try {
+                        fetchWindow(account, shard, userInitiated, totals, dedupe, onPage);
+                        log.debug("[SYNC] Shard {}..{} of account id={} done",
+                                shard.windowFrom(), shard.windowTo(), accountId);
+                        return null;
+                    } finally {
+                        slots.release();
+                    }
+                })));
+            }
 
-        LocalDate toDate = LocalDate.now();
-        LocalDate fromDate = determineFromDate(accountId, toDate);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    backfillContext.cancel(e.getCause());
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException("Backfill of account " + accountId + " failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    backfillContext.cancel(e);
+                    throw new IllegalStateException("Interrupted while backfilling account " + accountId, e);
+                }
+            }
+        } finally {
+            backfillContext.cancel(null);
+        }
+        leaseManager.checkHeld(accountId);
+        checkpointRepository.deleteAll(accountId);
 
-        log.info("[SYNC] Syncing account id={} providerAccountId={} from {} to {}",
-                accountId, providerAccountId, fromDate, toDate);
+        AccountSyncResult result = totals.snapshot();
+        log.info("[SYNC] Account {} backfilled: {} inserted, {} changed, {} unchanged",
+                providerAccountId, result.inserted(), result.changed(), result.unchanged());
+        return result;
+    }
 
-        String continuationKey = null;
-        int totalInserted = 0;
-        int totalUpdated = 0;
-        int page = 1;
+    /**
+     * Fetches one window from its checkpoint onwards. Each page is stored together with the
+     * window's advanced checkpoint, so a crash loses at most the page in flight.
+     */
+    private void fetchWindow(Account account, SyncCheckpoint window, boolean userInitiated, RunningTotals totals,
+                             UnaryOperator<List<Transaction>> filter, Consumer<AccountSyncResult> onPage) {
+        Long accountId = account.getId();
+        String userId = account.getUserId();
+        if (window.done()) {
+            return;
+        }
+        if (shutdown.isStopping()) {
+            throw new SyncInterruptedException(accountId);
+        }
+        leaseManager.checkHeld(accountId);
 
-        do {
-            GetAccountTransactionsRequest.Builder builder = GetAccountTransactionsRequest.newBuilder()
-                    .setProviderAccountId(providerAccountId)
-                    .setFromDate(fromDate.toString())
-                    .setToDate(toDate.toString());
+        GetAccountTransactionsRequest.Builder request = request(
+                account.getProviderAccountId(), window.windowFrom(), window.windowTo(), userInitiated).toBuilder();
+        if (window.continuationKey() != null) {
+            request.setContinuationKey(window.continuationKey());
+        }
 
-            if (continuationKey != null) {
-                builder.setContinuationKey(continuationKey);
+        AtomicBoolean gotPage = new AtomicBoolean();
+        try {
+            streamPages(request.build(), (txs, continuationKey) -> {
+                gotPage.set(true);
+                List<Transaction> rows = filter.apply(txs);
+                log.info("[SYNC] Got {} transactions from provider for account {} (window {}, page {})",
+                        txs.size(), account.getProviderAccountId(), window.windowFrom(), totals.pages() + 1);
+
+                // rows, their events and the checkpoint commit together: a crash never leaves
+                // events for rows that were rolled back, or rows whose events were lost
+                // a replica that lost the lease stores nothing more, the new owner resumes from here
+                PageCounts counts = transactionTemplate.execute(status -> {
+                    leaseManager.checkHeld(accountId);
+                    PageCounts c = upsertPage(userId, accountId, rows);
+                    checkpointRepository.advance(accountId, window, continuationKey);
+                    return c;
+                });
+                onPage.accept(totals.add(counts));
+
+                if (continuationKey != null && shutdown.isStopping()) {
+                    throw new SyncInterruptedException(accountId);
+                }
+            });
+        } catch (StatusRuntimeException e) {
+            if (window.continuationKey() != null && !gotPage.get() && mayBeStaleKey(e)) {
+                // the provider may have expired the saved key; the next attempt refetches the window
+                log.warn("[SYNC] Resuming account id={} from its checkpoint failed, restarting window {}..{}",
+                        accountId, window.windowFrom(), window.windowTo());
+                checkpointRepository.restart(accountId, window);
             }
+            throw e;
+        }
+    }
 
-            GetAccountTransactionsResponse response = ebStub.getAccountTransactions(builder.build());
-            List<Transaction> txs = response.getTransactionsList();
+    private static boolean mayBeStaleKey(StatusRuntimeException e) {
+        if (ProviderErrors.isQuotaExhausted(e)) {
+            return false;
+        }
+        Status.Code code = e.getStatus().getCode();
+        return code != Status.Code.UNAVAILABLE
+                && code != Status.Code.DEADLINE_EXCEEDED
+                && code != Status.Code.CANCELLED;
+    }
 
-            log.info("[SYNC] Got {} transactions from provider for account {} (page {})",
-                    txs.size(), providerAccountId, page);
+    private void startCheckpoints(long accountId, List<SyncCheckpoint> windows) {
+        transactionTemplate.executeWithoutResult(status -> checkpointRepository.startAll(accountId, windows));
+    }
 
-            int inserted = 0;
-            int updated = 0;
+    private GetAccountTransactionsRequest request(String providerAccountId, LocalDate fromDate, LocalDate toDate,
+                                                  boolean userInitiated) {
+        return GetAccountTransactionsRequest.newBuilder()
+                .setProviderAccountId(providerAccountId)
+                .setFromDate(fromDate.toString())
+                .setToDate(toDate.toString())
+                .setUserInitiated(userInitiated)
+                .build();
+    }
 
-            for (Transaction t: txs) {
-                UpsertResult result = upsertTransaction(userId, accountId, t);
-                if (result.isNew()) {
-                    inserted++;
-                } else {
-                    updated++;
+    /**
+     * Streams the request's pages from enable-banking, which follows the continuation keys itself;
+     * only the current page is held. Cancelling the context on the way out stops the server if we
+     * bail out mid-stream.
+     */
+    private void streamPages(GetAccountTransactionsRequest request, BiConsumer<List<Transaction>, String> onPage) {
+        Context.CancellableContext streamContext = Context.current().withCancellation();
+        Context previous = streamContext.attach();
+        shutdown.enter();
+        try {
+            Iterator<AccountTransactionsEvent> stream = ebStub.streamAccountTransactions(request);
+            List<Transaction> txs = new ArrayList<>();
+
+            while (stream.hasNext()) {
+                AccountTransactionsEvent event = stream.next();
+
+                if (event.hasTransaction()) {
+                    txs.add(event.getTransaction());
+                } else if (event.hasPageEnd()) {
+                    onPage.accept(txs, normalizeContinuationKey(event.getPageEnd().getContinuationKey()));
+                    txs = new ArrayList<>();
                 }
+            }
+        } finally {
+            shutdown.exit();
+            streamContext.detach(previous);
+            streamContext.cancel(null);
+        }
+    }
+
+    // shards a new backfill may use: one access each, always leaving one for a sync-now
+    private int shardBudget(Account account) {
+        int budget = Math.max(1, backfillProps.getMaxShards());
+        Integer remaining = quotaRepository.remainingUserAccesses(account.getProviderAccountId());
+        if (remaining != null) {
+            budget = Math.min(budget, Math.max(1, remaining - 1));
+        }
+        return budget;
+    }
+
+    // at most maxShards consecutive, non-overlapping date windows covering [fromDate, toDate], oldest first;
+    // shards are lengthened beyond sync.backfill.shard-length when needed to stay within that count
+    private List<SyncCheckpoint> shards(long accountId, LocalDate fromDate, LocalDate toDate, int maxShards) {
+        long days = ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+        long minDays = (days + maxShards - 1) / maxShards;
+        Period length = backfillProps.getShardLength();
+        if (fromDate.plus(length).isBefore(fromDate.plusDays(minDays))) {
+            length = Period.ofDays((int) minDays);
+        }
 
-                String description = emptyToNull(t.getDescription());
-                TransactionUpsertedEvent event = new TransactionUpsertedEvent(
-                        result.transactionId(),
-                        userId,
-                        accountId,
-                        parseAmount(t.getAmount()),
-                        t.getCurrency(),
-                        t.getDirection(),
-                        emptyToNull(t.getBookingDate()),
-                        description,
-                        description
-                );
-
-                kafkaTemplate.send(
-                        TX_TOPIC,
-                        event.getTransactionId().toString(),
-                        event
-                );
+        List<SyncCheckpoint> shards = new ArrayList<>();
+        LocalDate start = fromDate;
+        while (!start.isAfter(toDate)) {
+            LocalDate end = start.plus(length).minusDays(1);
+            if (end.isBefore(start)) {
+                end = start;
             }
+            if (end.isAfter(toDate)) {
+                end = toDate;
+            }
+            shards.add(new SyncCheckpoint(accountId, SyncCheckpoint.Kind.BACKFILL, start, end, null, 0, false));
+            start = end.plusDays(1);
+        }
+        return shards;
+    }
 
-            totalInserted += inserted;
-            totalUpdated += updated;
-            continuationKey = normalizeContinuationKey(response.getContinuationKey());
-            account.setEbContinuationKey(continuationKey);
-            accountRepository.save(account);
-            page++;
-        } while (continuationKey != null);
+    /**
+     * Drops everything stored for the account and forgets its continuation key and checkpoints, so the next
+     * sync starts from scratch.
+     */
+    @Transactional
+    public void resetAccount(Account account) {
+        int deleted = transactionRepository.deleteByBankAccountId(account.getId());
+        checkpointRepository.deleteAll(account.getId());
+        account.setEbContinuationKey(null);
+        accountRepository.save(account);
+        log.info("[SYNC] Reset account id={}: {} transactions deleted", account.getId(), deleted);
+    }
 
-        log.info("[SYNC] Account {} fully synced: {} inserted, {} updated",
-                providerAccountId, totalInserted, totalUpdated);
+    private PageCounts upsertPage(String userId, Long accountId, List<Transaction> txs) {
+        Instant now = Instant.now();
+        Map<String, Transaction> byProviderId = new LinkedHashMap<>();
+        List<BankTransaction> rows = new ArrayList<>(txs.size());
+        for (Transaction t : txs) {
+            byProviderId.put(t.getProviderTransactionId(), t);
+            rows.add(toEntity(userId, accountId, t, now));
+        }
+
+        Map<String, UpsertResult> results = transactionBatchRepository.upsertAll(rows);
+
+        int inserted = 0;
+        int changed = 0;
+        List<OutboxMessage> events = new ArrayList<>(results.size());
+
+        for (Map.Entry<String, UpsertResult> entry : results.entrySet()) {
+            UpsertResult result = entry.getValue();
+            if (result.isNew()) {
+                inserted++;
+            } else {
+                changed++;
+            }
+
+            Transaction t = byProviderId.get(entry.getKey());
+            String description = emptyToNull(t.getDescription());
+            TransactionUpsertedEvent event = new TransactionUpsertedEvent(
+                    result.transactionId(),
+                    userId,
+                    accountId,
+                    parseAmount(t.getAmount()),
+                    t.getCurrency(),
+                    t.getDirection(),
+                    emptyToNull(t.getBookingDate()),
+                    description,
+                    description
+            );
+
+            events.add(eventEncoder.encode(TX_TOPIC, event));
+        }
+
+        outboxRepository.appendAll(events);
+        // rows whose hash matched were neither written nor get an event
+        int unchanged = byProviderId.size() - results.size();
+        return new PageCounts(inserted, changed, unchanged);
     }
 
     private LocalDate determineFromDate(Long accountId, LocalDate fallbackTo) {
@@ -150,28 +452,13 @@ public class TransactionSyncService {
 
 
 
-    private UpsertResult upsertTransaction(String userId, Long accountId,  Transaction t) {
-
-        String providerTransactionId = t.getProviderTransactionId();
-        Optional<BankTransaction> existingOpt =
-                transactionRepository.findByBankAccountIdAndProviderTransactionId(
-                        accountId,
-                        providerTransactionId
-                );
-
-        String amountStr = t.getAmount();
-        t.getAmount();
-        BigDecimal amount = amountStr.isBlank()
-            ? BigDecimal.ZERO
-            : new BigDecimal(amountStr);
-
-        BankTransaction entity = existingOpt.orElseGet(BankTransaction::new);
-        boolean isNew = entity.getId() == null;
+    private BankTransaction toEntity(String userId, Long accountId, Transaction t, Instant now) {
+        BankTransaction entity = new BankTransaction();
 
         entity.setUserId(userId);
         entity.setBankAccountId(accountId);
-        entity.setProviderTransactionId(providerTransactionId);
-        entity.setAmount(amount);
+        entity.setProviderTransactionId(t.getProviderTransactionId());
+        entity.setAmount(parseAmount(t.getAmount()));
         entity.setCurrency(t.getCurrency());
         entity.setDirection(t.getDirection());
 
@@ -193,15 +480,44 @@ public class TransactionSyncService {
         entity.setDescriptionRaw(description);
         entity.setDescriptionDisplay(null);
         entity.setRawJson(t.getRawJson());
+        entity.setContentHash(contentHash(t));
 
-        Instant now = Instant.now();
-        if (isNew) {
-            entity.setCreatedAt(now);
-        }
+        // created_at is only written on insert, the ON CONFLICT branch keeps the original value
+        entity.setCreatedAt(now);
         entity.setUpdatedAt(now);
 
-        entity = transactionRepository.save(entity);
-        return new UpsertResult(entity.getId(), isNew);
+        return entity;
+    }
+
+    /**
+     * SHA-256 over the normalized provider fields and raw JSON. Two fetches of the same
+     * transaction hash equal unless the provider actually changed something.
+     */
+    private byte[] contentHash(Transaction t) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        // amounts compare by value, so "10.50" and "10.5" hash the same
+        String amount = parseAmount(t.getAmount()).stripTrailingZeros().toPlainString();
+        for (String field : List.of(
+                t.getProviderTransactionId(),
+                amount,
+                t.getCurrency(),
+                t.getDirection(),
+                t.getBookingDate().trim(),
+                t.getValueDate().trim(),
+                t.getDescription().trim(),
+                t.getRawJson())) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            // length prefix keeps ("ab", "c") and ("a", "bc") apart
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+        return digest.digest();
     }
 
     private BigDecimal parseAmount(String amountStr) {
@@ -216,4 +532,36 @@ public class TransactionSyncService {
     private String normalizeContinuationKey(String key) {
         return (key == null || key.isBlank()) ? null : key;
     }
+
+    private record PageCounts(int inserted, int changed, int unchanged) {
+    }
+
+    // totals across pages, possibly reported from several shard threads at once
+    private static final class RunningTotals {
+        private final boolean backfill;
+        private int inserted;
+        private int changed;
+        private int unchanged;
+        private int pages;
+
+        RunningTotals(boolean backfill) {
+            this.backfill = backfill;
+        }
+
+        synchronized AccountSyncResult add(PageCounts counts) {
+            inserted += counts.inserted();
+            changed += counts.changed();
+            unchanged += counts.unchanged();
+            pages++;
+            return snapshot();
+        }
+
+        synchronized int pages() {
+            return pages;
+        }
+
+        synchronized AccountSyncResult snapshot() {
+            return new AccountSyncResult(inserted, changed, unchanged, pages, backfill);
+        }
+    }
 }
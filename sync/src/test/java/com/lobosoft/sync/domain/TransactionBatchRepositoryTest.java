@@ -0,0 +1,155 @@
+package com.lobosoft.sync.domain;
+
+import com.lobosoft.sync.dto.UpsertResult;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionBatchRepositoryTest {
+
+    private static final long ACCOUNT_ID = 7L;
+
+    @Container
+    private static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionBatchRepository repository;
+
+    @BeforeAll
+    static void createSchema() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+        repository = new TransactionBatchRepository(jdbcTemplate);
+
+        // the columns the upsert writes, as in db/init
+        jdbcTemplate.execute("""
+                CREATE TABLE transactions (
+                    id bigserial PRIMARY KEY,
+                    user_id varchar(255) NOT NULL,
+                    bank_account_id bigint NOT NULL,
+                    provider_transaction_id varchar(255) NOT NULL,
+                    amount numeric(38,2),
+                    currency varchar(255),
+                    direction varchar(255),
+                    booking_date date,
+                    value_date date,
+                    raw_json jsonb,
+                    created_at timestamp with time zone DEFAULT now(),
+                    updated_at timestamp with time zone DEFAULT now(),
+                    description_raw text,
+                    description_display text,
+                    content_hash bytea,
+                    UNIQUE (bank_account_id, provider_transaction_id)
+                )
+                """);
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.execute("TRUNCATE transactions");
+    }
+
+    @Test
+    void upsertAll_insertsABatchLargerThanOneStatement() {
+        Map<String, UpsertResult> results = repository.upsertAll(rows(0, 2500, "v1"));
+
+        assertThat(results).hasSize(2500);
+        assertThat(results.values()).allMatch(UpsertResult::isNew);
+        assertThat(results.values()).extracting(UpsertResult::transactionId).doesNotHaveDuplicates();
+        assertThat(count()).isEqualTo(2500);
+    }
+
+    @Test
+    void upsertAll_reportsInsertedAndUpdatedRowsAndSkipsUnchangedOnes() {
+        Map<String, UpsertResult> seeded = repository.upsertAll(rows(0, 2500, "v1"));
+
+        // every chunk of the second batch mixes unchanged, changed and new rows
+        List<BankTransaction> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            switch (i % 3) {
+                case 0 -> batch.add(row(i, "v1"));
+                case 1 -> batch.add(row(i, "v2"));
+                default -> batch.add(row(2500 + i, "v2"));
+            }
+        }
+        Map<String, UpsertResult> results = repository.upsertAll(batch);
+
+        for (int i = 0; i < 2500; i++) {
+            switch (i % 3) {
+                case 0 -> assertThat(results).doesNotContainKey(id(i));
+                case 1 -> assertThat(results.get(id(i)))
+                        .isEqualTo(new UpsertResult(seeded.get(id(i)).transactionId(), false));
+                default -> assertThat(results.get(id(2500 + i)).isNew()).isTrue();
+            }
+        }
+        assertThat(results).hasSize(833 + 833);
+        assertThat(count()).isEqualTo(2500 + 833);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transactions WHERE content_hash = ?", Integer.class, hash("v2")))
+                .isEqualTo(833 + 833);
+    }
+
+    @Test
+    void upsertAll_keepsTheLastRowOfADuplicatedId() {
+        Map<String, UpsertResult> results = repository.upsertAll(List.of(row(1, "v1"), row(1, "v2")));
+
+        assertThat(results).containsOnlyKeys(id(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT content_hash FROM transactions", byte[].class))
+                .isEqualTo(hash("v2"));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM transactions", Integer.class);
+    }
+
+    private static List<BankTransaction> rows(int from, int to, String version) {
+        List<BankTransaction> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(row(i, version));
+        }
+        return rows;
+    }
+
+    private static BankTransaction row(int i, String version) {
+        Instant now = Instant.now();
+        BankTransaction t = new BankTransaction();
+        t.setUserId("user-1");
+        t.setBankAccountId(ACCOUNT_ID);
+        t.setProviderTransactionId(id(i));
+        t.setAmount(new BigDecimal("10.50"));
+        t.setCurrency("EUR");
+        t.setDirection("DEBIT");
+        t.setBookingDate(LocalDate.of(2025, 1, 1));
+        t.setValueDate(LocalDate.of(2025, 1, 1));
+        t.setDescriptionRaw(version);
+        t.setRawJson("{\"version\":\"" + version + "\"}");
+        t.setContentHash(hash(version));
+        t.setCreatedAt(now);
+        t.setUpdatedAt(now);
+        return t;
+    }
+
+    private static String id(int i) {
+        return "tx-" + i;
+    }
+
+    private static byte[] hash(String version) {
+        return version.getBytes(StandardCharsets.UTF_8);
+    }
+}
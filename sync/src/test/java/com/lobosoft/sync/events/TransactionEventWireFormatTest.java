@@ -0,0 +1,93 @@
+package com.lobosoft.sync.events;
+
+import com.lobosoft.sync.config.EventProperties;
+import com.lobosoft.sync.dto.OutboxMessage;
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The fixture is shared with categorization/test_events.py, so both sides of
+ * transactions.upserted are checked against the same bytes.
+ */
+class TransactionEventWireFormatTest {
+
+    record WireCase(String name, String hex, TransactionUpsertedEvent event) {}
+
+    private final TransactionEventSerializer serializer = new TransactionEventSerializer();
+    private final TransactionEventDeserializer deserializer = new TransactionEventDeserializer();
+
+    @Test
+    void protobuf_serializerWritesFixtureBytes() throws Exception {
+        for (WireCase c : cases()) {
+            assertThat(HexFormat.of().formatHex(serializer.serialize("transactions.upserted", c.event())))
+                    .as(c.name())
+                    .isEqualTo(c.hex());
+        }
+    }
+
+    @Test
+    void protobuf_deserializerReadsFixtureBytes() throws Exception {
+        for (WireCase c : cases()) {
+            RecordHeaders headers = new RecordHeaders();
+            headers.add(TransactionEventSerializer.HEADER_CONTENT_TYPE,
+                    TransactionEventSerializer.CONTENT_TYPE_PROTOBUF.getBytes(StandardCharsets.UTF_8));
+
+            assertThat(deserializer.deserialize("transactions.upserted", headers, HexFormat.of().parseHex(c.hex())))
+                    .as(c.name())
+                    .isEqualTo(c.event());
+        }
+    }
+
+    @Test
+    void json_roundTripsWithoutTypeHeaders() throws Exception {
+        EventProperties props = new EventProperties();
+        props.setFormat(EventProperties.Format.JSON);
+        TransactionEventEncoder encoder = new TransactionEventEncoder(props);
+
+        for (WireCase c : cases()) {
+            OutboxMessage message = encoder.encode("transactions.upserted", c.event());
+            RecordHeaders headers = new RecordHeaders();
+            headers.add(TransactionEventSerializer.HEADER_CONTENT_TYPE,
+                    message.contentType().getBytes(StandardCharsets.UTF_8));
+
+            TransactionUpsertedEvent read = deserializer.deserialize("transactions.upserted", headers, message.payload());
+
+            assertThat(message.contentType()).isEqualTo(TransactionEventSerializer.CONTENT_TYPE_JSON);
+            assertThat(read).as(c.name()).usingRecursiveComparison()
+                    .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                    .isEqualTo(c.event());
+        }
+    }
+
+    @Test
+    void json_headerlessLegacyRecordIsRead() {
+        byte[] legacy = """
+                {"transactionId": 1, "userId": "user-1", "accountId": 2, "amount": -4.20,
+                 "currency": "EUR", "direction": "DEBIT", "bookingDate": "2024-02-29"}"""
+                .getBytes(StandardCharsets.UTF_8);
+
+        TransactionUpsertedEvent read = deserializer.deserialize("transactions.upserted", new RecordHeaders(), legacy);
+
+        assertThat(read.getAmount()).isEqualByComparingTo("-4.20");
+        assertThat(read.getBookingDate()).isEqualTo("2024-02-29");
+        assertThat(read.getDescriptionRaw()).isNull();
+    }
+
+    private static List<WireCase> cases() throws Exception {
+        try (InputStream in = TransactionEventWireFormatTest.class
+                .getResourceAsStream("/events/transaction_upserted_v1.json")) {
+            return JsonMapper.builder().build().readValue(in, new TypeReference<List<WireCase>>() {});
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.OutboxProperties;
+import com.lobosoft.sync.domain.OutboxRelayLock;
+import com.lobosoft.sync.domain.OutboxRepository;
+import com.lobosoft.sync.dto.OutboxMessage;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private static final String KEY = "42";
+
+    // the outbox table, oldest first
+    private final List<OutboxMessage> outbox = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final OutboxProperties props = new OutboxProperties();
+
+    @BeforeEach
+    void setUp() {
+        props.setBatchSize(2);
+        for (long id = 1; id <= 5; id++) {
+            outbox.add(new OutboxMessage(id, "transactions.upserted", KEY, null,
+                    String.valueOf(id).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        when(outboxRepository.claimBatch(anyInt())).thenAnswer(inv -> {
+            synchronized (outbox) {
+                return List.copyOf(outbox.subList(0, Math.min(inv.<Integer>getArgument(0), outbox.size())));
+            }
+        });
+        doAnswer(inv -> {
+            outbox.removeAll(inv.<List<OutboxMessage>>getArgument(0));
+            return null;
+        }).when(outboxRepository).deleteAll(any());
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(inv -> {
+            published.add(new String(inv.<ProducerRecord<String, byte[]>>getArgument(0).value(), StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void onlyTheLeaderPublishes_sameKeyEventsInOutboxOrder() {
+        OutboxRelay leader = relay(true);
+        OutboxRelay follower = relay(false);
+
+        follower.relay();
+        leader.relay();
+        follower.relay();
+
+        assertThat(published).containsExactly("1", "2", "3", "4", "5");
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void unacknowledgedBatchIsRepublishedBeforeLaterEvents() {
+        OutboxRelay relay = relay(true);
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenAnswer(inv -> {
+                    published.add(new String(inv.<ProducerRecord<String, byte[]>>getArgument(0).value(),
+                            StandardCharsets.UTF_8));
+                    return published.size() == 3
+                            ? CompletableFuture.failedFuture(new IllegalStateException("broker down"))
+                            : CompletableFuture.completedFuture(null);
+                });
+
+        relay.relay();
+        assertThat(published).containsExactly("1", "2", "3", "4");
+        assertThat(outbox).extracting(OutboxMessage::id).containsExactly(3L, 4L, 5L);
+
+        relay.relay();
+        assertThat(published).containsExactly("1", "2", "3", "4", "3", "4", "5");
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void followerNeverReadsTheOutbox() {
+        relay(false).relay();
+
+        verify(outboxRepository, never()).claimBatch(anyInt());
+        assertThat(published).isEmpty();
+    }
+
+    private OutboxRelay relay(boolean leads) {
+        OutboxRelayLock lock = mock(OutboxRelayLock.class);
+        when(lock.tryLead()).thenReturn(leads);
+        return new OutboxRelay(outboxRepository, lock, kafkaTemplate, props);
+    }
+}
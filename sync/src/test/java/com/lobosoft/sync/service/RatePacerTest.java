@@ -0,0 +1,77 @@
+package com.lobosoft.sync.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatePacerTest {
+
+    // 10 ms per permit
+    private final RatePacer pacer = new RatePacer(100);
+
+    @Test
+    void firstAcquireDoesNotWait() throws Exception {
+        assertThat(timed(() -> pacer.acquire(50))).isLessThan(Duration.ofMillis(200));
+    }
+
+    @Test
+    void nextAcquireWaitsForThePermitsReservedBeforeIt() throws Exception {
+        pacer.acquire(50);
+
+        assertThat(timed(() -> pacer.acquire(1))).isGreaterThanOrEqualTo(Duration.ofMillis(400));
+    }
+
+    @Test
+    void idleTimeIsNotSavedUpAsABurst() throws Exception {
+        pacer.acquire(1);
+        Thread.sleep(300);
+
+        // a pacer that banked the idle time would let both through at once
+        Duration elapsed = timed(() -> {
+            pacer.acquire(30);
+            pacer.acquire(1);
+        });
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+    }
+
+    @Test
+    void concurrentCallersShareTheRate() throws Exception {
+        Duration elapsed;
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            elapsed = timed(() -> {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    futures.add(callers.submit(() -> {
+                        pacer.acquire(20);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+            });
+        }
+
+        // the last of four 200 ms reservations starts 600 ms after the first
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(550));
+    }
+
+    private static Duration timed(Work work) throws Exception {
+        long start = System.nanoTime();
+        work.run();
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,155 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.OutboxProperties;
+import com.lobosoft.sync.config.ReplayProperties;
+import com.lobosoft.sync.domain.ReplayJob;
+import com.lobosoft.sync.domain.ReplayJobRepository;
+import com.lobosoft.sync.domain.ReplayPartition;
+import com.lobosoft.sync.domain.ReplayPartitionRepository;
+import com.lobosoft.sync.dto.OutboxMessage;
+import com.lobosoft.sync.dto.TransactionUpsertedEvent;
+import com.lobosoft.sync.events.TransactionEventEncoder;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplayServiceTest {
+
+    private static final UUID JOB_ID = UUID.randomUUID();
+
+    private final ReplayJobRepository jobRepository = mock(ReplayJobRepository.class);
+    private final ReplayPartitionRepository partitionRepository = mock(ReplayPartitionRepository.class);
+    private final TransactionEventEncoder eventEncoder = mock(TransactionEventEncoder.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final ReplayProperties props = new ReplayProperties();
+
+    // transaction ids handed to Kafka, across all partitions
+    private final List<Long> published = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private ReplayService service;
+
+    @BeforeEach
+    void setUp() {
+        props.setBatchSize(10);
+        service = new ReplayService(jobRepository, partitionRepository, eventEncoder, kafkaTemplate, props,
+                new OutboxProperties(), new SyncShutdown(), mock(PlatformTransactionManager.class));
+
+        when(jobRepository.save(any())).thenAnswer(inv -> {
+            ReplayJob job = inv.getArgument(0);
+            if (job.getFinishedAt() != null) {
+                finished.countDown();
+            }
+            return job;
+        });
+        when(eventEncoder.encode(any(), any())).thenAnswer(inv -> {
+            published.add(inv.<TransactionUpsertedEvent>getArgument(1).getTransactionId());
+            return new OutboxMessage(0L, inv.getArgument(0), "k", null, new byte[0]);
+        });
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // serves the ids after afterId as rows, up to the partition's end
+        doAnswer(inv -> {
+            ReplayPartition partition = inv.getArgument(1);
+            long afterId = inv.getArgument(2);
+            int limit = inv.getArgument(3);
+            Consumer<TransactionUpsertedEvent> onRow = inv.getArgument(5);
+            for (long id = afterId + 1; id <= Math.min(afterId + limit, partition.toId()); id++) {
+                TransactionUpsertedEvent event = new TransactionUpsertedEvent();
+                event.setTransactionId(id);
+                onRow.accept(event);
+            }
+            return null;
+        }).when(partitionRepository).stream(any(), any(), anyLong(), anyInt(), anyInt(), any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void split_coversTheIdRangeWithoutGapsOrOverlaps() {
+        long[][] cases = {
+                // minId, maxId, partitions
+                {1, 1_000_000, 8},
+                {17, 100, 8},
+                {5, 7, 8},
+                {42, 42, 8},
+                {1, 9, 4},
+        };
+        for (long[] c : cases) {
+            long minId = c[0];
+            long maxId = c[1];
+            int count = (int) c[2];
+
+            List<ReplayPartition> partitions = ReplayService.split(JOB_ID, minId, maxId, count);
+
+            assertThat(partitions).hasSize((int) Math.min(count, maxId - minId + 1));
+            assertThat(partitions.getFirst().fromId()).isEqualTo(minId - 1);
+            assertThat(partitions.getLast().toId()).isEqualTo(maxId);
+            for (int i = 0; i < partitions.size(); i++) {
+                ReplayPartition p = partitions.get(i);
+                assertThat(p.partitionNo()).isEqualTo(i);
+                assertThat(p.toId()).as("partition %d of %s is not empty", i, p).isGreaterThan(p.fromId());
+                assertThat(p.lastId()).isEqualTo(p.fromId());
+                assertThat(p.done()).isFalse();
+                if (i > 0) {
+                    assertThat(p.fromId()).as("partition %d starts where the previous ended", i)
+                            .isEqualTo(partitions.get(i - 1).toId());
+                }
+            }
+        }
+    }
+
+    @Test
+    void resumedReplayContinuesEachPartitionFromItsLastId() throws Exception {
+        ReplayJob job = new ReplayJob();
+        job.setId(JOB_ID);
+        job.setStatus(ReplayJob.Status.FAILED);
+        job.setTopic(props.getTopic());
+        job.setStartedAt(Instant.now());
+        when(jobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        when(partitionRepository.findAll(JOB_ID)).thenReturn(List.of(
+                new ReplayPartition(JOB_ID, 0, 0, 100, 100, true),
+                new ReplayPartition(JOB_ID, 1, 100, 200, 153, false),
+                new ReplayPartition(JOB_ID, 2, 200, 300, 200, false)));
+
+        service.resume(JOB_ID);
+
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(job.getStatus()).isEqualTo(ReplayJob.Status.SUCCEEDED);
+        assertThat(published).containsExactlyInAnyOrderElementsOf(
+                LongStream.rangeClosed(154, 300).boxed().toList());
+        verify(partitionRepository, never()).stream(any(), argThat(p -> p.partitionNo() == 0),
+                anyLong(), anyInt(), anyInt(), any());
+        verify(partitionRepository, never()).idRange(any());
+    }
+}
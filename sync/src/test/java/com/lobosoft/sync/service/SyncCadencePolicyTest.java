@@ -0,0 +1,247 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncCadenceProperties;
+import com.lobosoft.sync.config.SyncFailureProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.ProviderQuotaRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyncCadencePolicyTest {
+
+    // midday UTC, outside the quiet hours and far from the quota reset
+    private static final Instant NOON = Instant.parse("2026-03-10T12:00:00Z");
+    // providers count their daily quota per UTC day
+    private static final Instant RESET = Instant.parse("2026-03-11T00:00:00Z");
+
+    private final SyncCadenceProperties props = new SyncCadenceProperties();
+    private final ProviderQuotaRepository quotaRepository = mock(ProviderQuotaRepository.class);
+    private final SyncCadencePolicy policy = new SyncCadencePolicy(props, quotaRepository, new SyncFailureProperties());
+
+    private final Account account = new Account();
+
+    @BeforeEach
+    void setUp() {
+        props.setJitter(0);
+        // even weights keep the expected rates exact
+        props.setRateSmoothing(0.5);
+        props.setZone(ZoneOffset.UTC);
+        account.setProviderAccountId("acc-1");
+        // no quota usage recorded: the quota does not constrain the schedule
+        when(quotaRepository.remainingScheduledCalls(any())).thenReturn(null);
+    }
+
+    @Test
+    void intervalFollowsTheInsertRate() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(2), false, NOON);
+
+        // 2 inserts an hour and 2 wanted per sync: one sync an hour
+        assertThat(next.insertRate()).isEqualTo(2.0);
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(Duration.ofHours(1)));
+        assertThat(next.failures()).isZero();
+    }
+
+    @Test
+    void emptySyncsBackOffUpToTheMaxInterval() {
+        account.setInsertRate(4.0);
+        Instant now = NOON;
+        account.setLastSyncAttemptAt(now.minus(Duration.ofMinutes(30)));
+
+        Duration previous = Duration.ZERO;
+        for (int i = 0; i < 30; i++) {
+            SyncCadencePolicy.Schedule next = policy.next(account, result(0), false, now);
+            Duration interval = Duration.between(now, next.nextSyncAt());
+
+            assertThat(next.insertRate()).isLessThan(account.getInsertRate());
+            assertThat(interval).isGreaterThanOrEqualTo(previous);
+
+            previous = interval;
+            account.setInsertRate(next.insertRate());
+            account.setLastSyncAttemptAt(now);
+            // stay at midday, away from the quiet hours
+            now = now.plus(Duration.ofDays(1));
+        }
+        assertThat(previous).isEqualTo(props.getMaxInterval());
+    }
+
+    @Test
+    void accountWithoutActivityWaitsTheMaxInterval() {
+        account.setInsertRate(0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(0), false, NOON);
+
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(props.getMaxInterval()));
+    }
+
+    @Test
+    void activityAfterAQuietSpellShortensTheIntervalAgain() {
+        account.setInsertRate(0.01);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(8), false, NOON);
+
+        // half of 8/h and half of 0.01/h is about 4/h: a sync every half hour instead of once a day
+        assertThat(next.insertRate()).isGreaterThan(4.0);
+        assertThat(Duration.between(NOON, next.nextSyncAt()))
+                .isGreaterThan(props.getMinInterval())
+                .isLessThan(Duration.ofMinutes(30));
+    }
+
+    @Test
+    void burstOfInsertsIsClampedToTheMinInterval() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofMinutes(15)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(500), false, NOON);
+
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(props.getMinInterval()));
+    }
+
+    @Test
+    void backfillKeepsTheRate() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(900), true, NOON);
+
+        assertThat(next.insertRate()).isEqualTo(2.0);
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    void firstSyncKeepsTheRate() {
+        account.setInsertRate(2.0);
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(900), false, NOON);
+
+        assertThat(next.insertRate()).isEqualTo(2.0);
+    }
+
+    @Test
+    void quietHoursStretchTheInterval() {
+        account.setInsertRate(2.0);
+        Instant night = Instant.parse("2026-03-10T02:00:00Z");
+        account.setLastSyncAttemptAt(night.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(2), false, night);
+
+        assertThat(next.nextSyncAt()).isEqualTo(night.plus(Duration.ofHours(3)));
+    }
+
+    @Test
+    void quietHoursMayWrapAroundMidnight() {
+        props.setQuietHoursStart(22);
+        props.setQuietHoursEnd(6);
+        account.setInsertRate(2.0);
+        Instant evening = Instant.parse("2026-03-10T21:00:00Z");
+        Instant lateEvening = Instant.parse("2026-03-10T23:00:00Z");
+
+        account.setLastSyncAttemptAt(evening.minus(Duration.ofHours(1)));
+        SyncCadencePolicy.Schedule beforeQuiet = policy.next(account, result(2), false, evening);
+        account.setLastSyncAttemptAt(lateEvening.minus(Duration.ofHours(1)));
+        SyncCadencePolicy.Schedule quiet = policy.next(account, result(2), false, lateEvening);
+
+        assertThat(beforeQuiet.nextSyncAt()).isEqualTo(evening.plus(Duration.ofHours(1)));
+        assertThat(quiet.nextSyncAt()).isEqualTo(lateEvening.plus(Duration.ofHours(3)));
+    }
+
+    @Test
+    void quietHoursStillRespectTheMaxInterval() {
+        account.setInsertRate(0);
+        Instant night = Instant.parse("2026-03-10T02:00:00Z");
+        account.setLastSyncAttemptAt(night.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(0), false, night);
+
+        assertThat(next.nextSyncAt()).isEqualTo(night.plus(props.getMaxInterval()));
+    }
+
+    @Test
+    void jitterStaysWithinItsFraction() {
+        props.setJitter(0.1);
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        for (int i = 0; i < 100; i++) {
+            Duration interval = Duration.between(NOON, policy.next(account, result(2), false, NOON).nextSyncAt());
+            assertThat(interval).isBetween(Duration.ofMinutes(54), Duration.ofMinutes(66));
+        }
+    }
+
+    @Test
+    void exhaustedQuotaMovesTheSyncPastTheReset() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+        when(quotaRepository.remainingScheduledCalls("acc-1")).thenReturn(0);
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(2), false, NOON);
+
+        assertThat(next.nextSyncAt()).isBetween(RESET, RESET.plusSeconds(1));
+    }
+
+    @Test
+    void fewAccessesLeftAreSpreadUntilTheReset() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+        when(quotaRepository.remainingScheduledCalls("acc-1")).thenReturn(3);
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(2), false, NOON);
+
+        // 12 hours to the reset over 3 accesses and the one after it
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(Duration.ofHours(3)));
+    }
+
+    @Test
+    void ampleQuotaKeepsThePlannedSync() {
+        account.setInsertRate(2.0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+        when(quotaRepository.remainingScheduledCalls("acc-1")).thenReturn(100);
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(2), false, NOON);
+
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    void syncPlannedAfterTheResetIgnoresTodaysQuota() {
+        account.setInsertRate(0);
+        account.setLastSyncAttemptAt(NOON.minus(Duration.ofHours(1)));
+
+        SyncCadencePolicy.Schedule next = policy.next(account, result(0), false, NOON);
+
+        assertThat(next.nextSyncAt()).isEqualTo(NOON.plus(props.getMaxInterval()));
+        verify(quotaRepository, never()).remainingScheduledCalls(any());
+    }
+
+    @Test
+    void quotaExhaustedMidSyncIsNotAFailure() {
+        account.setInsertRate(1.5);
+        account.setSyncFailures(2);
+
+        SyncCadencePolicy.Schedule next = policy.afterQuotaExhausted(account, NOON);
+
+        assertThat(next.nextSyncAt()).isBetween(RESET, RESET.plusSeconds(1));
+        assertThat(next.insertRate()).isEqualTo(1.5);
+        assertThat(next.failures()).isEqualTo(2);
+    }
+
+    private static AccountSyncResult result(int inserted) {
+        return new AccountSyncResult(inserted, 0, 0, 1, false);
+    }
+}
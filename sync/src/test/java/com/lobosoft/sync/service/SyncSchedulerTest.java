@@ -0,0 +1,143 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.config.SyncSchedulerProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.AccountLeaseRepository;
+import com.lobosoft.sync.domain.AccountRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyncSchedulerTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final TransactionSyncService transactionSyncService = mock(TransactionSyncService.class);
+    private final AccountLeaseRepository leaseRepository = mock(AccountLeaseRepository.class);
+    private final SyncCadencePolicy cadencePolicy = mock(SyncCadencePolicy.class);
+
+    private final Account account = new Account();
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private SyncScheduler scheduler;
+    private AccountLeaseManager leaseManager;
+
+    @BeforeEach
+    void setUp() {
+        account.setId(1L);
+        account.setAspspName("Bank");
+
+        SyncSchedulerProperties props = new SyncSchedulerProperties();
+        leaseManager = new AccountLeaseManager(leaseRepository, props, cadencePolicy);
+        scheduler = new SyncScheduler(accountRepository, transactionSyncService, props, leaseManager,
+                new SyncShutdown(), new SyncSingleFlight(new SimpleMeterRegistry()));
+
+        when(leaseRepository.claimDue(anyString(), any(), anyInt())).thenReturn(List.of(1L), List.of());
+        when(accountRepository.findAllById(any())).thenReturn(List.of(account));
+        when(cadencePolicy.next(any(), any(), anyBoolean(), any()))
+                .thenReturn(new SyncCadencePolicy.Schedule(Instant.now(), 0, 0));
+
+        // Spring's default: every @Scheduled method shares one thread
+        taskScheduler.setPoolSize(1);
+        taskScheduler.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskScheduler.shutdown();
+        scheduler.stopDraining();
+    }
+
+    @Test
+    void heartbeatKeepsRunningDuringALongSync() throws Exception {
+        CountDownLatch syncStarted = new CountDownLatch(1);
+        CountDownLatch finishSync = new CountDownLatch(1);
+        CountDownLatch heartbeats = new CountDownLatch(3);
+
+        when(transactionSyncService.syncAccountTransactions(account)).thenAnswer(inv -> {
+            syncStarted.countDown();
+            finishSync.await();
+            return new AccountSyncResult(1, 0, 0, 1, false);
+        });
+        when(leaseRepository.heartbeat(anyString(), any(), anyCollection())).thenAnswer(inv -> {
+            heartbeats.countDown();
+            return new ArrayList<>(inv.<Collection<Long>>getArgument(2));
+        });
+
+        taskScheduler.scheduleWithFixedDelay(scheduler::runPeriodicSync, Duration.ofMillis(10));
+        taskScheduler.scheduleWithFixedDelay(leaseManager::heartbeat, Duration.ofMillis(10));
+
+        assertThat(syncStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(heartbeats.await(5, TimeUnit.SECONDS))
+                .as("leases are heartbeated while the sync runs")
+                .isTrue();
+
+        finishSync.countDown();
+        verify(leaseRepository, timeout(5000)).release(eq(1L), anyString(), any(), anyDouble(), eq(0));
+    }
+
+    @Test
+    void syncStopsAfterItsLeaseIsTakenOver() throws Exception {
+        CountDownLatch syncStarted = new CountDownLatch(1);
+        CountDownLatch leaseLost = new CountDownLatch(1);
+
+        when(transactionSyncService.syncAccountTransactions(account)).thenAnswer(inv -> {
+            syncStarted.countDown();
+            leaseLost.await();
+            // what the sync does before storing its next page
+            leaseManager.checkHeld(account.getId());
+            return new AccountSyncResult(1, 0, 0, 1, false);
+        });
+        when(leaseRepository.heartbeat(anyString(), any(), anyCollection())).thenReturn(List.of());
+
+        scheduler.runPeriodicSync();
+        assertThat(syncStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        leaseManager.heartbeat();
+        leaseLost.countDown();
+
+        verify(leaseRepository, timeout(5000).times(2)).claimDue(anyString(), any(), anyInt());
+        verify(leaseRepository, never())
+                .release(anyLong(), anyString(), any(), anyDouble(), anyInt());
+        verify(leaseRepository, never())
+                .releaseFailed(anyLong(), anyString(), any(), anyInt(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void syncNowOfAnUnknownAccountIsNotFound() {
+        when(accountRepository.findById(404L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> scheduler.syncNow(404L))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        verify(leaseRepository, never()).tryAcquire(anyLong(), anyString(), any());
+    }
+}
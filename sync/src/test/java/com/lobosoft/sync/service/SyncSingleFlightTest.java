@@ -0,0 +1,191 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.sync.dto.AccountSyncResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyncSingleFlightTest {
+
+    private static final AccountSyncResult RESULT = new AccountSyncResult(3, 1, 0, 1, false);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SyncSingleFlight singleFlight = new SyncSingleFlight(meterRegistry);
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch finish = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        finish.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneRun() throws Exception {
+        Future<AccountSyncResult> first = callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, this::blockingSync));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<AccountSyncResult>> joined = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            joined.add(callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, this::blockingSync)));
+        }
+        awaitCount("joined", 10);
+        finish.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(RESULT);
+        for (Future<AccountSyncResult> f : joined) {
+            assertThat(f.get(5, TimeUnit.SECONDS)).isSameAs(RESULT);
+        }
+        assertThat(runs).hasValue(1);
+        assertThat(count("executed")).isEqualTo(1);
+    }
+
+    @Test
+    void failureReachesEveryWaiter() throws Exception {
+        IllegalStateException failure = new IllegalStateException("provider down");
+        Future<AccountSyncResult> first = callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, () -> {
+            blockingSync();
+            throw failure;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<AccountSyncResult>> joined = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            joined.add(callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, this::blockingSync)));
+        }
+        awaitCount("joined", 5);
+        finish.countDown();
+
+        for (Future<AccountSyncResult> f : concat(first, joined)) {
+            assertThatThrownBy(() -> f.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseReference(failure);
+        }
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void entryIsClearedAfterTheRun() throws Exception {
+        finish.countDown();
+
+        singleFlight.execute(1L, Duration.ZERO, this::blockingSync);
+        assertThat(inFlight()).isEmpty();
+
+        assertThatThrownBy(() -> singleFlight.execute(1L, Duration.ZERO, () -> {
+            throw new IllegalStateException("provider down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(inFlight()).isEmpty();
+
+        // neither run is joined by the next one
+        singleFlight.execute(1L, Duration.ZERO, this::blockingSync);
+        assertThat(runs).hasValue(2);
+        assertThat(count("joined")).isZero();
+    }
+
+    @Test
+    void recentResultIsReusedWithinItsFreshness() throws Exception {
+        finish.countDown();
+
+        singleFlight.execute(1L, Duration.ofMinutes(1), this::blockingSync);
+        assertThat(singleFlight.execute(1L, Duration.ofMinutes(1), this::blockingSync)).isSameAs(RESULT);
+        singleFlight.execute(1L, Duration.ZERO, this::blockingSync);
+
+        assertThat(runs).hasValue(2);
+        assertThat(count("fresh")).isEqualTo(1);
+    }
+
+    @Test
+    void fullRecentMapDropsOnlyTheOldestResult() throws Exception {
+        finish.countDown();
+        int maxRecent = 10_000;
+        for (long id = 1; id <= maxRecent + 1; id++) {
+            singleFlight.execute(id, Duration.ofMinutes(1), this::blockingSync);
+        }
+
+        singleFlight.execute(2L, Duration.ofMinutes(1), this::blockingSync);
+        singleFlight.execute(maxRecent + 1, Duration.ofMinutes(1), this::blockingSync);
+        assertThat(runs).hasValue(maxRecent + 1);
+
+        singleFlight.execute(1L, Duration.ofMinutes(1), this::blockingSync);
+        assertThat(runs).hasValue(maxRecent + 2);
+    }
+
+    @Test
+    void otherAccountsRunOnTheirOwn() throws Exception {
+        Future<AccountSyncResult> first = callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, this::blockingSync));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AccountSyncResult other = new AccountSyncResult(0, 0, 0, 1, false);
+        assertThat(singleFlight.execute(2L, Duration.ZERO, () -> other)).isSameAs(other);
+
+        finish.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(RESULT);
+    }
+
+    @Test
+    void scheduledSyncWaitsOutARunningSyncAndRunsItsOwn() throws Exception {
+        Future<AccountSyncResult> running = callers.submit(() -> singleFlight.execute(1L, Duration.ZERO, this::blockingSync));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AccountSyncResult own = new AccountSyncResult(0, 0, 0, 0, false);
+        Future<AccountSyncResult> scheduled = callers.submit(() -> singleFlight.executeScheduled(1L, () -> {
+            runs.incrementAndGet();
+            return own;
+        }));
+        Thread.sleep(100);
+        assertThat(scheduled).isNotDone();
+
+        finish.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isSameAs(RESULT);
+        assertThat(scheduled.get(5, TimeUnit.SECONDS)).isSameAs(own);
+        assertThat(runs).hasValue(2);
+    }
+
+    private AccountSyncResult blockingSync() throws InterruptedException {
+        runs.incrementAndGet();
+        started.countDown();
+        assertThat(finish.await(5, TimeUnit.SECONDS)).isTrue();
+        return RESULT;
+    }
+
+    private void awaitCount(String outcome, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(outcome) < expected) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("sync.singleflight.requests").tag("outcome", outcome).counter().count();
+    }
+
+    private Map<?, ?> inFlight() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(singleFlight, "inFlight");
+    }
+
+    private static <T> List<T> concat(T first, List<T> rest) {
+        List<T> all = new ArrayList<>(List.of(first));
+        all.addAll(rest);
+        return all;
+    }
+}
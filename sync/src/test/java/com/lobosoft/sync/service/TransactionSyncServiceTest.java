@@ -0,0 +1,237 @@
+package com.lobosoft.sync.service;
+
+import com.lobosoft.enablebanking.grpc.AccountTransactionsEvent;
+import com.lobosoft.enablebanking.grpc.EnableBankingGrpcServiceGrpc.EnableBankingGrpcServiceBlockingStub;
+import com.lobosoft.enablebanking.grpc.GetAccountTransactionsRequest;
+import com.lobosoft.enablebanking.grpc.PageEnd;
+import com.lobosoft.enablebanking.grpc.Transaction;
+import com.lobosoft.sync.config.SyncBackfillProperties;
+import com.lobosoft.sync.domain.Account;
+import com.lobosoft.sync.domain.AccountRepository;
+import com.lobosoft.sync.domain.BankTransaction;
+import com.lobosoft.sync.domain.OutboxRepository;
+import com.lobosoft.sync.domain.ProviderQuotaRepository;
+import com.lobosoft.sync.domain.SyncCheckpoint;
+import com.lobosoft.sync.domain.SyncCheckpointRepository;
+import com.lobosoft.sync.domain.TransactionBatchRepository;
+import com.lobosoft.sync.domain.TransactionRepository;
+import com.lobosoft.sync.dto.AccountSyncResult;
+import com.lobosoft.sync.dto.OutboxMessage;
+import com.lobosoft.sync.dto.UpsertResult;
+import com.lobosoft.sync.events.TransactionEventEncoder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionSyncServiceTest {
+
+    private static final long ACCOUNT_ID = 1L;
+
+    // pages the fake provider serves per window; a continuation key is the index of the next page
+    private static final int PAGES = 3;
+
+    private final TransactionBatchRepository batchRepository = mock(TransactionBatchRepository.class);
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final SyncCheckpointRepository checkpointRepository = mock(SyncCheckpointRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final TransactionEventEncoder eventEncoder = mock(TransactionEventEncoder.class);
+    private final EnableBankingGrpcServiceBlockingStub ebStub = mock(EnableBankingGrpcServiceBlockingStub.class);
+
+    private final Account account = new Account();
+    private TransactionSyncService service;
+
+    @BeforeEach
+    void setUp() {
+        account.setId(ACCOUNT_ID);
+        account.setUserId("user-1");
+        account.setProviderAccountId("provider-1");
+
+        service = new TransactionSyncService(mock(AccountRepository.class), mock(TransactionRepository.class),
+                batchRepository, outboxRepository, transactionTemplate, eventEncoder, new SyncBackfillProperties(),
+                checkpointRepository, new SyncShutdown(), mock(ProviderQuotaRepository.class),
+                mock(AccountLeaseManager.class));
+        ReflectionTestUtils.setField(service, "ebStub", ebStub);
+
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(eventEncoder.encode(any(), any()))
+                .thenAnswer(inv -> new OutboxMessage(0L, inv.getArgument(0), null, null, new byte[0]));
+    }
+
+    @Test
+    void pageCountsRowsTheDatabaseSkippedAsUnchanged() {
+        when(ebStub.streamAccountTransactions(any())).thenReturn(List.of(
+                tx("a"), tx("b"), tx("c"), tx("d"), tx("e"), pageEnd(null)).iterator());
+        // d and e matched their stored hash, so the upsert leaves them out
+        when(batchRepository.upsertAll(any())).thenAnswer(inv -> {
+            Collection<BankTransaction> rows = inv.getArgument(0);
+            assertThat(rows).extracting(BankTransaction::getProviderTransactionId)
+                    .containsExactly("a", "b", "c", "d", "e");
+            return Map.of(
+                    "a", new UpsertResult(11L, true),
+                    "b", new UpsertResult(12L, true),
+                    "c", new UpsertResult(13L, false));
+        });
+        List<OutboxMessage> appended = new ArrayList<>();
+        doAnswer(inv -> appended.addAll(inv.getArgument(0)))
+                .when(outboxRepository).appendAll(any());
+
+        AccountSyncResult result = service.syncAccountTransactions(account);
+
+        assertThat(result).isEqualTo(new AccountSyncResult(2, 1, 2, 1, false));
+        assertThat(appended).hasSize(3);
+        verify(checkpointRepository).advance(anyLong(), any(), any());
+    }
+
+    @Test
+    void interruptedBackfillResumesFromItsCheckpoints() {
+        NavigableMap<LocalDate, SyncCheckpoint> checkpoints = storeCheckpointsInMemory();
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean interrupt = new AtomicBoolean(true);
+
+        // the newest shard's stream breaks after its first page, once
+        when(ebStub.streamAccountTransactions(any())).thenAnswer(inv -> {
+            GetAccountTransactionsRequest request = inv.getArgument(0);
+            boolean breaks = request.getFromDate().equals(checkpoints.lastKey().toString())
+                    && interrupt.getAndSet(false);
+            return pages(request, breaks ? 1 : PAGES, fetched);
+        });
+        when(batchRepository.upsertAll(any())).thenAnswer(inv -> {
+            Map<String, UpsertResult> results = new LinkedHashMap<>();
+            for (BankTransaction row : inv.<Collection<BankTransaction>>getArgument(0)) {
+                stored.add(row.getProviderTransactionId());
+                results.put(row.getProviderTransactionId(), new UpsertResult((long) stored.size(), true));
+            }
+            return results;
+        });
+
+        assertThatThrownBy(() -> service.backfillAccountTransactions(account, false, progress -> { }))
+                .isInstanceOf(StatusRuntimeException.class);
+
+        assertThat(checkpoints).hasSize(2);
+        assertThat(checkpoints.firstEntry().getValue().done()).isTrue();
+        assertThat(checkpoints.lastEntry().getValue().continuationKey()).isEqualTo("1");
+        assertThat(checkpoints.lastEntry().getValue().pagesDone()).isEqualTo(1);
+        assertThat(service.hasInterruptedBackfill(account)).isTrue();
+        String oldest = checkpoints.firstKey().toString();
+        String newest = checkpoints.lastKey().toString();
+
+        // the next sync of the account picks the backfill up instead of syncing forward
+        AccountSyncResult result = service.syncAccountTransactions(account);
+
+        assertThat(result).isEqualTo(new AccountSyncResult(4, 0, 0, 2, true));
+        assertThat(fetched).containsExactlyInAnyOrder(
+                oldest + "#0", oldest + "#1", oldest + "#2",
+                newest + "#0", newest + "#1", newest + "#2");
+        assertThat(stored).hasSize(2 * PAGES * 2).doesNotHaveDuplicates();
+        assertThat(checkpoints).isEmpty();
+    }
+
+    // the checkpoint table, keyed by window start
+    private NavigableMap<LocalDate, SyncCheckpoint> storeCheckpointsInMemory() {
+        NavigableMap<LocalDate, SyncCheckpoint> checkpoints = new ConcurrentSkipListMap<>();
+        when(checkpointRepository.findAll(ACCOUNT_ID)).thenAnswer(inv -> List.copyOf(checkpoints.values()));
+        doAnswer(inv -> {
+            checkpoints.clear();
+            for (SyncCheckpoint w : inv.<List<SyncCheckpoint>>getArgument(1)) {
+                checkpoints.put(w.windowFrom(), w);
+            }
+            return null;
+        }).when(checkpointRepository).startAll(eq(ACCOUNT_ID), any());
+        doAnswer(inv -> {
+            String key = inv.getArgument(2);
+            checkpoints.computeIfPresent(inv.<SyncCheckpoint>getArgument(1).windowFrom(), (from, w) ->
+                    new SyncCheckpoint(w.accountId(), w.kind(), w.windowFrom(), w.windowTo(), key,
+                            w.pagesDone() + 1, key == null));
+            return null;
+        }).when(checkpointRepository).advance(eq(ACCOUNT_ID), any(), any());
+        doAnswer(inv -> {
+            checkpoints.clear();
+            return null;
+        }).when(checkpointRepository).deleteAll(ACCOUNT_ID);
+        return checkpoints;
+    }
+
+    // streams the window's pages from its continuation key up to, not including, page `until`,
+    // then breaks off like a dropped connection if that is before the window's last page
+    private static Iterator<AccountTransactionsEvent> pages(GetAccountTransactionsRequest request, int until,
+                                                            List<String> fetched) {
+        String window = request.getFromDate();
+        int first = request.getContinuationKey().isEmpty() ? 0 : Integer.parseInt(request.getContinuationKey());
+        List<AccountTransactionsEvent> events = new ArrayList<>();
+        for (int page = first; page < until; page++) {
+            fetched.add(window + "#" + page);
+            events.add(tx(window + "-" + page + "-a"));
+            events.add(tx(window + "-" + page + "-b"));
+            events.add(pageEnd(page + 1 < PAGES ? String.valueOf(page + 1) : null));
+        }
+        Iterator<AccountTransactionsEvent> served = events.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (!served.hasNext() && until < PAGES) {
+                    throw Status.UNAVAILABLE.withDescription("connection reset").asRuntimeException();
+                }
+                return served.hasNext();
+            }
+
+            @Override
+            public AccountTransactionsEvent next() {
+                return served.next();
+            }
+        };
+    }
+
+    private static AccountTransactionsEvent tx(String id) {
+        return AccountTransactionsEvent.newBuilder()
+                .setTransaction(Transaction.newBuilder()
+                        .setProviderTransactionId(id)
+                        .setAmount("1.00")
+                        .setCurrency("EUR")
+                        .setDirection("DEBIT")
+                        .setBookingDate("2025-01-01")
+                        .setValueDate("2025-01-01")
+                        .setRawJson("{}"))
+                .build();
+    }
+
+    private static AccountTransactionsEvent pageEnd(String continuationKey) {
+        return AccountTransactionsEvent.newBuilder()
+                .setPageEnd(PageEnd.newBuilder()
+                        .setContinuationKey(continuationKey == null ? "" : continuationKey))
+                .build();
+    }
+}